@@ -0,0 +1,61 @@
+package org.apache.maven.doxia.site.decoration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures bytes allocated by the current thread, with the HotSpot <code>com.sun.management.ThreadMXBean</code>
+ * extension.
+ */
+public final class AllocationMeter
+{
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private AllocationMeter()
+    {
+        // no op
+    }
+
+    /**
+     * @return <code>true</code> if the JVM measures allocated bytes per thread
+     */
+    public static boolean isSupported()
+    {
+        return THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+            && ( (com.sun.management.ThreadMXBean) THREAD_MX_BEAN ).isThreadAllocatedMemorySupported()
+            && ( (com.sun.management.ThreadMXBean) THREAD_MX_BEAN ).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread since it started, or <code>-1</code> if not supported
+     */
+    public static long getAllocatedBytes()
+    {
+        if ( !isSupported() )
+        {
+            return -1;
+        }
+        return ( (com.sun.management.ThreadMXBean) THREAD_MX_BEAN ).getThreadAllocatedBytes( Thread.currentThread()
+            .getId() );
+    }
+}
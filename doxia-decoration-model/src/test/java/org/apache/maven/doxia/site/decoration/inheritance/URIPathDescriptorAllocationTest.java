@@ -0,0 +1,92 @@
+package org.apache.maven.doxia.site.decoration.inheritance;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.site.decoration.AllocationMeter;
+
+/**
+ * Allocation regression test of link rebasing with {@link URIPathDescriptor}, done for every link of every menu
+ * during decoration model inheritance: bytes allocated per rebased link are checked against the threshold recorded
+ * in <code>allocation-budget.properties</code>.
+ */
+public class URIPathDescriptorAllocationTest
+    extends TestCase
+{
+    private static final int WARMUP = 20000;
+
+    private static final int ITERATIONS = 20000;
+
+    private static final String[] LINKS =
+        { "index.html", "doxia/index.html", "../sibling/page.html", "./sub/dir/page.html#anchor", "/absolute.html" };
+
+    public void testRebaseLink()
+        throws Exception
+    {
+        if ( !AllocationMeter.isSupported() )
+        {
+            return;
+        }
+
+        Properties budget = new Properties();
+        InputStream in = getClass().getResourceAsStream( "allocation-budget.properties" );
+        try
+        {
+            budget.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+
+        rebaseLinks( WARMUP );
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        int count = rebaseLinks( ITERATIONS );
+        long bytesPerLink = ( AllocationMeter.getAllocatedBytes() - allocated ) / ITERATIONS;
+
+        assertEquals( ITERATIONS, count );
+        long threshold = Long.parseLong( budget.getProperty( "rebaseLink.bytes" ) );
+        assertTrue( "rebaseLink allocated " + bytesPerLink + " bytes per link, threshold is " + threshold,
+                    bytesPerLink <= threshold );
+    }
+
+    private static int rebaseLinks( int iterations )
+    {
+        int count = 0;
+        for ( int i = 0; i < iterations; i++ )
+        {
+            URIPathDescriptor path =
+                new URIPathDescriptor( "http://maven.apache.org/parent/", LINKS[i % LINKS.length] );
+            URI rebased = path.rebaseLink( "http://maven.apache.org/parent/child/" );
+            if ( rebased != null )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -19,7 +19,6 @@ package org.apache.maven.doxia.docrenderer;
  * under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
@@ -39,13 +38,16 @@ import org.apache.maven.doxia.Doxia;
 import org.apache.maven.doxia.document.DocumentModel;
 import org.apache.maven.doxia.document.io.xpp3.DocumentXpp3Reader;
 import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.parser.AbstractXmlParser.CachedFileEntityResolver;
 import org.apache.maven.doxia.parser.ParseException;
 import org.apache.maven.doxia.parser.Parser;
 import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
 import org.apache.maven.doxia.logging.PlexusLoggerWrapper;
 import org.apache.maven.doxia.parser.module.ParserModule;
 import org.apache.maven.doxia.parser.module.ParserModuleManager;
-import org.apache.maven.doxia.util.XmlValidator;
+import org.apache.maven.doxia.sitetools.FlightRecorderEvent;
+import org.apache.maven.doxia.sitetools.ParserPool;
+import org.apache.maven.doxia.sitetools.ValidatingReader;
 
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
@@ -73,6 +75,9 @@ public abstract class AbstractDocumentRenderer
     extends AbstractLogEnabled
     implements DocumentRenderer
 {
+    private static final FlightRecorderEvent.Type PARSE_EVENT =
+        new FlightRecorderEvent.Type( "DocumentParse", "Document Parse" );
+
     @Requirement
     protected ParserModuleManager parserModuleManager;
 
@@ -87,6 +92,8 @@ public abstract class AbstractDocumentRenderer
      */
     private String baseDir;
 
+    private ParserPool parserPool;
+
       //--------------------------------------------
      //
     //--------------------------------------------
@@ -491,18 +498,33 @@ public abstract class AbstractDocumentRenderer
      */
     protected void parse( String fullDocPath, String parserId, Sink sink, DocumentRendererContext context )
         throws DocumentRendererException, IOException
+    {
+        FlightRecorderEvent event = PARSE_EVENT.begin( fullDocPath, parserId );
+        try
+        {
+            parseDocument( fullDocPath, parserId, sink, context );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private void parseDocument( String fullDocPath, String parserId, Sink sink, DocumentRendererContext context )
+        throws DocumentRendererException, IOException
     {
         if ( getLogger().isDebugEnabled() )
         {
             getLogger().debug( "Parsing file " + fullDocPath );
         }
 
+        Parser parser = null;
         Reader reader = null;
         try
         {
             File f = new File( fullDocPath );
 
-            Parser parser = doxia.getParser( parserId );
+            parser = getParserPool().acquire( parserId );
             switch ( parser.getType() )
             {
                 case Parser.XML_TYPE:
@@ -542,7 +564,26 @@ public abstract class AbstractDocumentRenderer
 
             sink.enableLogging( new PlexusLoggerWrapper( getLogger() ) );
 
-            doxia.parse( reader, parserId, sink );
+            ParseException parseError = null;
+            try
+            {
+                parser.parse( reader, sink );
+            }
+            catch ( ParseException e )
+            {
+                parseError = e;
+            }
+
+            if ( reader instanceof ValidatingReader )
+            {
+                // validation errors first: they are more precise than parse errors on invalid content
+                ( (ValidatingReader) reader ).finish();
+            }
+
+            if ( parseError != null )
+            {
+                throw parseError;
+            }
         }
         catch ( ParserNotFoundException e )
         {
@@ -553,12 +594,38 @@ public abstract class AbstractDocumentRenderer
         {
             throw new DocumentRendererException( "Error parsing " + fullDocPath + ": " + e.getMessage(), e );
         }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new DocumentRendererException( "Interrupted while waiting for parser '" + parserId + "' for "
+                + fullDocPath, e );
+        }
         finally
         {
             IOUtil.close( reader );
 
             sink.flush();
+
+            if ( parser != null )
+            {
+                getParserPool().release( parserId, parser );
+            }
+        }
+    }
+
+    /**
+     * Get the pool of parsers used to parse documents, created once.
+     *
+     * @return the parser pool
+     */
+    private synchronized ParserPool getParserPool()
+    {
+        if ( parserPool == null )
+        {
+            parserPool = new ParserPool( doxia, true, new PlexusLoggerWrapper( getLogger() ) );
         }
+        return parserPool;
     }
 
     /**
@@ -706,22 +773,11 @@ public abstract class AbstractDocumentRenderer
         return FileUtils.getExtension( f.getAbsolutePath() ).toLowerCase( Locale.ENGLISH ).endsWith( "vm" );
     }
 
-    private Reader validate( Reader source, String resource )
-            throws ParseException, IOException
+    private ValidatingReader validate( Reader source, String resource )
     {
         getLogger().debug( "Validating: " + resource );
 
-        try
-        {
-            String content = IOUtil.toString( new BufferedReader( source ) );
-
-            new XmlValidator( new PlexusLoggerWrapper( getLogger() ) ).validate( content );
-
-            return new StringReader( content );
-        }
-        finally
-        {
-            IOUtil.close( source );
-        }
+        return new ValidatingReader( source, resource, new CachedFileEntityResolver(),
+                                     new PlexusLoggerWrapper( getLogger() ) );
     }
 }
@@ -41,6 +41,7 @@ import org.apache.maven.doxia.module.fo.FoSink;
 import org.apache.maven.doxia.module.fo.FoSinkFactory;
 import org.apache.maven.doxia.module.fo.FoUtils;
 import org.apache.maven.doxia.parser.module.ParserModule;
+import org.apache.maven.doxia.sitetools.FlightRecorderEvent;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.util.IOUtil;
@@ -59,6 +60,9 @@ import org.xml.sax.SAXParseException;
 public class FoPdfRenderer
     extends AbstractPdfRenderer
 {
+    private static final FlightRecorderEvent.Type PDF_GENERATION_EVENT =
+        new FlightRecorderEvent.Type( "PdfGeneration", "PDF Generation" );
+
     /**
      * {@inheritDoc}
      * @see org.apache.maven.doxia.module.fo.FoUtils#convertFO2PDF(File, File, String)
@@ -336,6 +340,20 @@ public class FoPdfRenderer
      */
     private void generatePdf( File inputFile, File pdfFile, DocumentModel documentModel )
         throws DocumentRendererException
+    {
+        FlightRecorderEvent event = PDF_GENERATION_EVENT.begin( inputFile.getPath(), null );
+        try
+        {
+            convertFo2Pdf( inputFile, pdfFile, documentModel );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private void convertFo2Pdf( File inputFile, File pdfFile, DocumentModel documentModel )
+        throws DocumentRendererException
     {
         if ( getLogger().isDebugEnabled() )
         {
@@ -60,6 +60,7 @@ import org.apache.maven.doxia.module.itext.ITextSink;
 import org.apache.maven.doxia.module.itext.ITextSinkFactory;
 import org.apache.maven.doxia.module.itext.ITextUtil;
 import org.apache.maven.doxia.parser.module.ParserModule;
+import org.apache.maven.doxia.sitetools.FlightRecorderEvent;
 import org.apache.xml.utils.DefaultErrorHandler;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.util.IOUtil;
@@ -86,6 +87,12 @@ public class ITextPdfRenderer
     /** The xslt style sheet used to transform a Document to an iText file. */
     private static final String XSLT_RESOURCE = "TOC.xslt";
 
+    private static final FlightRecorderEvent.Type TRANSFORM_EVENT =
+        new FlightRecorderEvent.Type( "ITextTransform", "iText TOC Transformation" );
+
+    private static final FlightRecorderEvent.Type PDF_GENERATION_EVENT =
+        new FlightRecorderEvent.Type( "PdfGeneration", "PDF Generation" );
+
     /** The TransformerFactory. */
     private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
 
@@ -118,6 +125,7 @@ public class ITextPdfRenderer
             getLogger().debug( "Generating : " + pdfFile );
         }
 
+        FlightRecorderEvent event = PDF_GENERATION_EVENT.begin( inputFile.getPath(), null );
         try
         {
             ITextUtil.writePdf( new FileInputStream( inputFile ), new FileOutputStream( pdfFile ) );
@@ -130,6 +138,10 @@ public class ITextPdfRenderer
         {
             throw new DocumentRendererException( "Error creating PDF from " + inputFile + ": " + e.getMessage(), e );
         }
+        finally
+        {
+            event.commit();
+        }
     }
 
     /** {@inheritDoc} */
@@ -510,6 +522,8 @@ public class ITextPdfRenderer
 
         addTransformerParameters( transformer, documentModel, iTextFile, generateTOC );
 
+        FlightRecorderEvent event = TRANSFORM_EVENT.begin( iTextFile.getPath(), null );
+
         // need a writer for StreamResult to prevent FileNotFoundException when iTextFile contains spaces
         Writer writer = null;
         try
@@ -532,6 +546,8 @@ public class ITextPdfRenderer
         finally
         {
             IOUtil.close( writer );
+
+            event.commit();
         }
     }
 
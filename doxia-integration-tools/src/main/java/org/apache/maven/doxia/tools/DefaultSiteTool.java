@@ -55,6 +55,7 @@ import org.apache.maven.doxia.site.decoration.Skin;
 import org.apache.maven.doxia.site.decoration.inheritance.DecorationModelInheritanceAssembler;
 import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
 import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Writer;
+import org.apache.maven.doxia.sitetools.FlightRecorderEvent;
 import org.apache.maven.model.DistributionManagement;
 import org.apache.maven.model.Site;
 import org.apache.maven.project.MavenProject;
@@ -87,6 +88,9 @@ public class DefaultSiteTool
     extends AbstractLogEnabled
     implements SiteTool
 {
+    private static final FlightRecorderEvent.Type DECORATION_MODEL_EVENT =
+        new FlightRecorderEvent.Type( "DecorationModel", "Decoration Model Assembly" );
+
     // ----------------------------------------------------------------------
     // Components
     // ----------------------------------------------------------------------
@@ -434,6 +438,25 @@ public class DefaultSiteTool
 
         final Locale llocale = ( locale == null ) ? Locale.getDefault() : locale;
 
+        FlightRecorderEvent event =
+            DECORATION_MODEL_EVENT.begin( ( siteDirectory == null ) ? project.getId() : siteDirectory.getPath(), null );
+        try
+        {
+            return computeDecorationModel( siteDirectory, llocale, project, reactorProjects, localRepository,
+                                           repositories );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private DecorationModel computeDecorationModel( File siteDirectory, Locale llocale, MavenProject project,
+                                                    List<MavenProject> reactorProjects,
+                                                    ArtifactRepository localRepository,
+                                                    List<ArtifactRepository> repositories )
+        throws SiteToolException
+    {
         getLogger().debug( "Computing decoration model of " + project.getId() + " for locale " + llocale );
 
         Map.Entry<DecorationModel, MavenProject> result =
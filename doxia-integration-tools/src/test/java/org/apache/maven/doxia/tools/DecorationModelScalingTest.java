@@ -0,0 +1,96 @@
+package org.apache.maven.doxia.tools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.DefaultArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.doxia.site.decoration.AllocationMeter;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Scaling test: computes the decoration model of the deepest child of a generated parent/child hierarchy, and fails
+ * when wall-clock time or allocated bytes per inheritance level go over the budget recorded in
+ * <code>decoration-budget.properties</code>.
+ * <p>The hierarchy has 10 levels by default, set the <code>doxia.scaling.levels</code> system property to test
+ * deeper hierarchies.</p>
+ */
+public class DecorationModelScalingTest
+    extends PlexusTestCase
+{
+    public void testDecorationModelInheritance()
+        throws Exception
+    {
+        Properties budget = new Properties();
+        InputStream in = getClass().getResourceAsStream( "decoration-budget.properties" );
+        try
+        {
+            budget.load( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        int levels = Integer.getInteger( "doxia.scaling.levels", 10 );
+        List<MavenProject> projects =
+            new SiteHierarchyGenerator().setLevels( levels ).generate( getTestFile( "target/scaling" ) );
+        MavenProject child = projects.get( levels - 1 );
+
+        SiteTool tool = (SiteTool) lookup( SiteTool.ROLE );
+        ArtifactRepository localRepository =
+            new DefaultArtifactRepository( "local", getTestFile( "target/local-repo" ).toURI().toURL().toString(),
+                                           new DefaultRepositoryLayout() );
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        long start = System.nanoTime();
+        DecorationModel model =
+            tool.getDecorationModel( new File( child.getBasedir(), "src/site" ), Locale.ENGLISH, child, projects,
+                                     localRepository, child.getRemoteArtifactRepositories() );
+        long time = System.nanoTime() - start;
+        allocated = AllocationMeter.getAllocatedBytes() - allocated;
+
+        assertEquals( "Level " + ( levels - 1 ), model.getName() );
+        assertTrue( model.getBody().getBreadcrumbs().size() >= levels );
+
+        long millisPerLevel = time / 1000000L / levels;
+        long millisBudget = Long.parseLong( budget.getProperty( "decoration.millisPerLevel" ) );
+        assertTrue( "decoration model took " + millisPerLevel + " ms per level, budget is " + millisBudget,
+                    millisPerLevel <= millisBudget );
+
+        if ( AllocationMeter.isSupported() )
+        {
+            long bytesPerLevel = allocated / levels;
+            long bytesBudget = Long.parseLong( budget.getProperty( "decoration.bytesPerLevel" ) );
+            assertTrue( "decoration model allocated " + bytesPerLevel + " bytes per level, budget is " + bytesBudget,
+                        bytesPerLevel <= bytesBudget );
+        }
+    }
+}
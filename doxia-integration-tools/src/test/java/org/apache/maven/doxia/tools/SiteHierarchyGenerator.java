@@ -0,0 +1,158 @@
+package org.apache.maven.doxia.tools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.tools.stubs.SiteToolMavenProjectStub;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Generates multi-level parent/child project hierarchies, each project with a <code>site.xml</code> site descriptor
+ * containing menus, links and breadcrumbs to inherit, for scaling tests.
+ */
+public class SiteHierarchyGenerator
+{
+    private static final String GROUP_ID = "org.apache.maven.doxia.scaling";
+
+    private int levels = 5;
+
+    private int menus = 3;
+
+    private int items = 20;
+
+    /**
+     * @param levels the number of levels, root parent included, default 5
+     * @return this generator
+     */
+    public SiteHierarchyGenerator setLevels( int levels )
+    {
+        this.levels = levels;
+        return this;
+    }
+
+    /**
+     * @param menus the number of menus in each site descriptor, default 3
+     * @return this generator
+     */
+    public SiteHierarchyGenerator setMenus( int menus )
+    {
+        this.menus = menus;
+        return this;
+    }
+
+    /**
+     * @param items the number of items in each menu and links, default 20
+     * @return this generator
+     */
+    public SiteHierarchyGenerator setItems( int items )
+    {
+        this.items = items;
+        return this;
+    }
+
+    /**
+     * Generate the hierarchy, each child project in a subdirectory of its parent, replacing previous content of the
+     * directory.
+     *
+     * @param directory the root parent project directory
+     * @return the projects, from root parent to deepest child, with their parent set
+     * @throws IOException if a file can't be written
+     */
+    public List<MavenProject> generate( File directory )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( directory );
+
+        List<MavenProject> projects = new ArrayList<MavenProject>( levels );
+        SiteToolMavenProjectStub parent = null;
+        File basedir = directory;
+        String path = "";
+        for ( int level = 0; level < levels; level++ )
+        {
+            if ( level > 0 )
+            {
+                basedir = new File( basedir, "level" + level );
+                path += "/level" + level;
+            }
+            new File( basedir, "src/site" ).mkdirs();
+            FileUtils.fileWrite( new File( basedir, "pom.xml" ), "UTF-8", createPom( level, path ) );
+            FileUtils.fileWrite( new File( basedir, "src/site/site.xml" ), "UTF-8", createSiteDescriptor( level ) );
+
+            SiteToolMavenProjectStub project = new SiteToolMavenProjectStub( basedir );
+            project.setDistgributionManagementSiteUrl( "scp://example.org/site" + path );
+            project.setParent( parent );
+            projects.add( project );
+            parent = project;
+        }
+
+        return projects;
+    }
+
+    private static String createPom( int level, String path )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<project>\n  <modelVersion>4.0.0</modelVersion>\n" );
+        if ( level > 0 )
+        {
+            sb.append( "  <parent>\n    <groupId>" ).append( GROUP_ID ).append( "</groupId>\n    <artifactId>level" )
+                .append( level - 1 ).append( "</artifactId>\n    <version>1.0</version>\n"
+                    + "    <relativePath>../pom.xml</relativePath>\n  </parent>\n" );
+        }
+        sb.append( "  <groupId>" ).append( GROUP_ID ).append( "</groupId>\n  <artifactId>level" ).append( level )
+            .append( "</artifactId>\n  <version>1.0</version>\n  <packaging>pom</packaging>\n  <name>Level " )
+            .append( level ).append( "</name>\n  <url>https://example.org" ).append( path ).append( "/</url>\n" );
+        sb.append( "</project>\n" );
+        return sb.toString();
+    }
+
+    private String createSiteDescriptor( int level )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project name=\"${project.name}\">\n" );
+        sb.append( "  <bannerLeft>\n    <name>${this.name}</name>\n    <href>index.html</href>\n  </bannerLeft>\n" );
+        sb.append( "  <body>\n    <breadcrumbs>\n      <item name=\"Level " ).append( level )
+            .append( "\" href=\"index.html\"/>\n    </breadcrumbs>\n    <links>\n" );
+        for ( int i = 0; i < items; i++ )
+        {
+            sb.append( "      <item name=\"Link " ).append( level ).append( '-' ).append( i )
+                .append( "\" href=\"links/link" ).append( i ).append( ".html\"/>\n" );
+        }
+        sb.append( "    </links>\n" );
+        for ( int m = 0; m < menus; m++ )
+        {
+            sb.append( "    <menu name=\"Menu " ).append( level ).append( '-' ).append( m ).append( "\" inherit=\"" )
+                .append( ( m % 2 == 0 ) ? "top" : "bottom" ).append( "\">\n" );
+            for ( int i = 0; i < items; i++ )
+            {
+                sb.append( "      <item name=\"Item " ).append( i ).append( "\" href=\"menu" ).append( m )
+                    .append( "/item" ).append( i ).append( ".html\"/>\n" );
+            }
+            sb.append( "    </menu>\n" );
+        }
+        sb.append( "  </body>\n</project>\n" );
+        return sb.toString();
+    }
+}
@@ -52,7 +52,23 @@ public class SiteToolMavenProjectStub
 
     public SiteToolMavenProjectStub( String projectName )
     {
-        basedir = new File( super.getBasedir() + "/src/test/resources/unit/" + projectName );
+        init( new File( super.getBasedir() + "/src/test/resources/unit/" + projectName ),
+              super.getBasedir() + "/target/test/unit/" + projectName + "/target" );
+    }
+
+    /**
+     * Project stub for a generated project.
+     *
+     * @param basedir the project directory, containing the <code>pom.xml</code>
+     */
+    public SiteToolMavenProjectStub( File basedir )
+    {
+        init( basedir, basedir + "/target" );
+    }
+
+    private void init( File basedir, String buildDirectory )
+    {
+        this.basedir = basedir;
 
         Model model = null;
 
@@ -76,7 +92,7 @@ public class SiteToolMavenProjectStub
 
         build = new Build();
         build.setFinalName( model.getArtifactId() );
-        build.setDirectory( super.getBasedir() + "/target/test/unit/" + projectName + "/target" );
+        build.setDirectory( buildDirectory );
         build.setSourceDirectory( getBasedir() + "/src/main/java" );
         build.setOutputDirectory( build.getDirectory() + "/classes" );
         build.setTestSourceDirectory( getBasedir() + "/src/test/java" );
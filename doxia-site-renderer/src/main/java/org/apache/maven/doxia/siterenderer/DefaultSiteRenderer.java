@@ -19,8 +19,8 @@ package org.apache.maven.doxia.siterenderer;
  * under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,8 +28,6 @@ import java.io.InputStream;
 import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.MalformedURLException;
@@ -37,18 +35,32 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -56,11 +68,6 @@ import java.util.zip.ZipFile;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.versioning.ArtifactVersion;
-import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
-import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
-import org.apache.maven.artifact.versioning.Restriction;
-import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.doxia.Doxia;
 import org.apache.maven.doxia.logging.PlexusLoggerWrapper;
 import org.apache.maven.doxia.parser.ParseException;
@@ -69,18 +76,21 @@ import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
 import org.apache.maven.doxia.site.decoration.DecorationModel;
 import org.apache.maven.doxia.site.decoration.PublishDate;
 import org.apache.maven.doxia.site.skin.SkinModel;
-import org.apache.maven.doxia.site.skin.io.xpp3.SkinXpp3Reader;
 import org.apache.maven.doxia.parser.module.ParserModule;
 import org.apache.maven.doxia.parser.module.ParserModuleManager;
 import org.apache.maven.doxia.parser.module.ParserModuleNotFoundException;
 import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
-import org.apache.maven.doxia.util.XmlValidator;
+import org.apache.maven.doxia.siterenderer.sink.SiteRendererSinkPool;
+import org.apache.maven.doxia.sitetools.FlightRecorderEvent;
+import org.apache.maven.doxia.sitetools.ParserPool;
+import org.apache.maven.doxia.sitetools.ValidatingReader;
 import org.apache.velocity.Template;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.tools.Scope;
+import org.apache.velocity.tools.ToolContext;
 import org.apache.velocity.tools.ToolManager;
 import org.apache.velocity.tools.config.ConfigurationUtils;
 import org.apache.velocity.tools.config.EasyFactoryConfiguration;
@@ -115,7 +125,6 @@ import org.codehaus.plexus.util.PropertyUtils;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.WriterFactory;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.codehaus.plexus.velocity.VelocityComponent;
 
 /**
@@ -149,14 +158,65 @@ public class DefaultSiteRenderer
     @Requirement
     private PlexusContainer plexus;
 
+    @Requirement
+    private SkinRegistry skinRegistry;
+
+    private EntityCatalog entityCatalog;
+
     private static final String RESOURCE_DIR = "org/apache/maven/doxia/siterenderer/resources";
 
+    /** Time idle worker threads are kept */
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private static final String RENDER_REPORT_SUFFIX = "-render-report.json";
+
+    private static final FlightRecorderEvent.Type LOCATE_DOCUMENTS_EVENT =
+        new FlightRecorderEvent.Type( "LocateDocuments", "Locate Documents" );
+
+    private static final FlightRecorderEvent.Type RENDER_DOCUMENT_EVENT =
+        new FlightRecorderEvent.Type( "RenderDocument", "Render Document" );
+
+    private static final FlightRecorderEvent.Type PARSE_DOCUMENT_EVENT =
+        new FlightRecorderEvent.Type( "ParseDocument", "Parse Document" );
+
+    private static final FlightRecorderEvent.Type MERGE_DOCUMENT_EVENT =
+        new FlightRecorderEvent.Type( "MergeDocumentIntoSite", "Merge Document Into Site" );
+
+    private static final FlightRecorderEvent.Type COPY_SKIN_RESOURCES_EVENT =
+        new FlightRecorderEvent.Type( "CopySkinResources", "Copy Skin Resources" );
+
     private static final String DEFAULT_TEMPLATE = RESOURCE_DIR + "/default-site.vm";
 
     private static final String SKIN_TEMPLATE_LOCATION = "META-INF/maven/site.vm";
 
     private static final String TOOLS_LOCATION = "META-INF/maven/site-tools.xml";
 
+    /**
+     * Velocity tools configured for a site rendering context, weakly referenced to not outlive the context.
+     */
+    private final Map<SiteRenderingContext, SiteToolManager> toolManagers =
+        new WeakHashMap<SiteRenderingContext, SiteToolManager>();
+
+    /**
+     * Site-wide Velocity data of the site rendering contexts being rendered, computed once per
+     * {@link #render(Collection, SiteRenderingContext, SiteOutput) render} call: <code>null</code> until first used.
+     */
+    private final Map<SiteRenderingContext, SiteVelocityData> siteVelocityData =
+        new WeakHashMap<SiteRenderingContext, SiteVelocityData>();
+
+    private String siteRendererVersion;
+
+    private boolean siteRendererVersionLoaded;
+
+    private ExecutorService workerExecutor;
+
+    private ParserPool parserPool;
+
+    /**
+     * Sinks of documents parsed then merged into the site template during rendering, for their buffers to be reused.
+     */
+    private final SiteRendererSinkPool sinkPool = new SiteRendererSinkPool();
+
     // ----------------------------------------------------------------------
     // Renderer implementation
     // ----------------------------------------------------------------------
@@ -173,25 +233,47 @@ public class DefaultSiteRenderer
                                                               boolean editable )
         throws IOException, RendererException
     {
-        Map<String, DocumentRenderer> files = new LinkedHashMap<String, DocumentRenderer>();
+        FlightRecorderEvent event =
+            LOCATE_DOCUMENTS_EVENT.begin( String.valueOf( siteRenderingContext.getSiteDirectories() ), null );
+        try
+        {
+            return scanDocumentFiles( siteRenderingContext, editable );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private Map<String, DocumentRenderer> scanDocumentFiles( SiteRenderingContext siteRenderingContext,
+                                                             boolean editable )
+        throws IOException, RendererException
+    {
         Map<String, String> moduleExcludes = siteRenderingContext.getModuleExcludes();
 
-        // look in every site directory (in general src/site or target/generated-site)
+        // one file tree walk for every site directory (in general src/site or target/generated-site), for every
+        // Doxia parser module
+        List<DocumentFilesScanner> scanners = new ArrayList<DocumentFilesScanner>();
+        Collection<ParserModule> modules = parserModuleManager.getParserModules();
         for ( File siteDirectory : siteRenderingContext.getSiteDirectories() )
         {
             if ( siteDirectory.exists() )
             {
-                Collection<ParserModule> modules = parserModuleManager.getParserModules();
-                // use every Doxia parser module
+                DocumentFilesScanner scanner = new DocumentFilesScanner( siteDirectory );
+
                 for ( ParserModule module : modules )
                 {
-                    File moduleBasedir = new File( siteDirectory, module.getSourceDirectory() );
-
-                    String excludes = ( moduleExcludes == null ) ? null : moduleExcludes.get( module.getParserId() );
+                    if ( ArrayUtils.isNotEmpty( module.getExtensions() ) )
+                    {
+                        String excludes =
+                            ( moduleExcludes == null ) ? null : moduleExcludes.get( module.getParserId() );
 
-                    addModuleFiles( siteRenderingContext.getRootDirectory(), moduleBasedir, module, excludes, files,
-                                    editable );
+                        scanner.addModule( module, new File( siteDirectory, module.getSourceDirectory() ),
+                                           excludes );
+                    }
                 }
+
+                scanners.add( scanner );
             }
         }
 
@@ -202,40 +284,125 @@ public class DefaultSiteRenderer
             {
                 ParserModule parserModule = parserModuleManager.getParserModule( module.getParserId() );
 
-                String excludes = ( moduleExcludes == null ) ? null : moduleExcludes.get( module.getParserId() );
+                if ( ArrayUtils.isNotEmpty( parserModule.getExtensions() ) )
+                {
+                    String excludes = ( moduleExcludes == null ) ? null : moduleExcludes.get( module.getParserId() );
 
-                addModuleFiles( siteRenderingContext.getRootDirectory(), module.getBasedir(), parserModule, excludes,
-                                files, editable );
+                    DocumentFilesScanner scanner = new DocumentFilesScanner( module.getBasedir() );
+                    scanner.addModule( parserModule, module.getBasedir(), excludes );
+                    scanners.add( scanner );
+                }
             }
             catch ( ParserModuleNotFoundException e )
             {
                 throw new RendererException( "Unable to find module: " + e.getMessage(), e );
             }
         }
+
+        scanDocumentFiles( scanners );
+
+        Map<String, DocumentRenderer> files = new LinkedHashMap<String, DocumentRenderer>();
+        // index of files keys by case-folded key, to detect case clashes without scanning every file
+        Map<String, List<String>> caseFoldedKeys = new HashMap<String, List<String>>();
+
+        for ( DocumentFilesScanner scanner : scanners )
+        {
+            for ( DocumentFilesScanner.ModuleFiles moduleFiles : scanner.getModules() )
+            {
+                addModuleFiles( siteRenderingContext.getRootDirectory(), moduleFiles, files, caseFoldedKeys,
+                                editable );
+            }
+        }
+
         return files;
     }
 
-    private List<String> filterExtensionIgnoreCase( List<String> fileNames, String extension )
+    /**
+     * Walk site directories, concurrently if there are more than one.
+     */
+    private void scanDocumentFiles( List<DocumentFilesScanner> scanners )
+        throws RendererException, IOException
     {
-        List<String> filtered = new LinkedList<String>( fileNames );
-        for ( Iterator<String> it = filtered.iterator(); it.hasNext(); )
+        int threads = Math.min( scanners.size(), Runtime.getRuntime().availableProcessors() );
+
+        if ( threads <= 1 )
         {
-            String name = it.next();
+            for ( DocumentFilesScanner scanner : scanners )
+            {
+                scanner.scan();
+            }
+            return;
+        }
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>( scanners.size() );
+        try
+        {
+            ExecutorService executor = getWorkerExecutor();
+
+            for ( final DocumentFilesScanner scanner : scanners )
+            {
+                tasks.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws IOException
+                    {
+                        scanner.scan();
+                        return null;
+                    }
+                } ) );
+            }
 
-            // Take care of extension case
-            if ( !endsWithIgnoreCase( name, extension ) )
+            for ( Future<?> task : tasks )
             {
-                it.remove();
+                waitFor( task, "locating documents" );
             }
         }
-        return filtered;
+        finally
+        {
+            cancel( tasks );
+        }
     }
 
-    private void addModuleFiles( File rootDir, File moduleBasedir, ParserModule module, String excludes,
-                                 Map<String, DocumentRenderer> files, boolean editable )
-            throws IOException, RendererException
+    /**
+     * Cancel tasks that are not completed yet, after a failure.
+     */
+    private static void cancel( List<Future<?>> tasks )
+    {
+        for ( Future<?> task : tasks )
+        {
+            task.cancel( true );
+        }
+    }
+
+    /**
+     * Get the executor running short I/O tasks concurrently: walking site directories and extracting skin resources.
+     * It is created once, with one thread per processor at most, and idle threads are stopped.
+     *
+     * @return the worker executor
+     */
+    private synchronized ExecutorService getWorkerExecutor()
+    {
+        if ( workerExecutor == null )
+        {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor =
+                new ThreadPoolExecutor( threads, threads, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<Runnable>(), new RenderingThreadFactory( "worker" ) );
+            executor.allowCoreThreadTimeOut( true );
+            workerExecutor = executor;
+        }
+        return workerExecutor;
+    }
+
+    private void addModuleFiles( File rootDir, DocumentFilesScanner.ModuleFiles moduleFiles,
+                                 Map<String, DocumentRenderer> files, Map<String, List<String>> caseFoldedKeys,
+                                 boolean editable )
+            throws RendererException
     {
-        if ( !moduleBasedir.exists() || ArrayUtils.isEmpty( module.getExtensions() ) )
+        ParserModule module = moduleFiles.getModule();
+        File moduleBasedir = moduleFiles.getBasedir();
+
+        if ( !moduleBasedir.exists() )
         {
             return;
         }
@@ -243,18 +410,12 @@ public class DefaultSiteRenderer
         String moduleRelativePath =
             PathTool.getRelativeFilePath( rootDir.getAbsolutePath(), moduleBasedir.getAbsolutePath() );
 
-        List<String> allFiles = FileUtils.getFileNames( moduleBasedir, "**/*.*", excludes, false );
-
         for ( String extension : module.getExtensions() )
         {
-            String fullExtension = "." + extension;
-
-            List<String> docs = filterExtensionIgnoreCase( allFiles, fullExtension );
+            List<String> docs = new ArrayList<String>( moduleFiles.getDocuments( extension ) );
 
             // *.<extension>.vm
-            List<String> velocityFiles = filterExtensionIgnoreCase( allFiles, fullExtension + ".vm" );
-
-            docs.addAll( velocityFiles );
+            docs.addAll( moduleFiles.getVelocityDocuments( extension ) );
 
             for ( String doc : docs )
             {
@@ -284,230 +445,833 @@ public class DefaultSiteRenderer
                 // -----------------------------------------------------------------------
                 // Handle key without case differences
                 // -----------------------------------------------------------------------
-                for ( Map.Entry<String, DocumentRenderer> entry : files.entrySet() )
+                String caseFoldedKey = caseFold( key );
+                List<String> sameCaseFoldedKeys = caseFoldedKeys.get( caseFoldedKey );
+                if ( sameCaseFoldedKeys == null )
                 {
-                    if ( entry.getKey().equalsIgnoreCase( key ) )
-                    {
-                        RenderingContext originalContext = entry.getValue().getRenderingContext();
+                    sameCaseFoldedKeys = new ArrayList<String>( 1 );
+                    caseFoldedKeys.put( caseFoldedKey, sameCaseFoldedKeys );
+                }
+
+                for ( String existingKey : sameCaseFoldedKeys )
+                {
+                    RenderingContext originalContext = files.get( existingKey ).getRenderingContext();
 
-                        File originalDoc = new File( originalContext.getBasedir(), originalContext.getInputName() );
+                    File originalDoc = new File( originalContext.getBasedir(), originalContext.getInputName() );
 
-                        if ( Os.isFamily( Os.FAMILY_WINDOWS ) )
-                        {
-                            throw new RendererException( "File '" + module.getSourceDirectory() + File.separator
-                                + doc + "' clashes with existing '" + originalDoc + "'." );
-                        }
+                    if ( Os.isFamily( Os.FAMILY_WINDOWS ) )
+                    {
+                        throw new RendererException( "File '" + module.getSourceDirectory() + File.separator
+                            + doc + "' clashes with existing '" + originalDoc + "'." );
+                    }
 
-                        if ( getLogger().isWarnEnabled() )
-                        {
-                            getLogger().warn( "File '" + module.getSourceDirectory() + File.separator + doc
-                                + "' could clash with existing '" + originalDoc + "'." );
-                        }
+                    if ( getLogger().isWarnEnabled() )
+                    {
+                        getLogger().warn( "File '" + module.getSourceDirectory() + File.separator + doc
+                            + "' could clash with existing '" + originalDoc + "'." );
                     }
                 }
 
+                sameCaseFoldedKeys.add( key );
                 files.put( key, new DoxiaDocumentRenderer( context ) );
             }
         }
     }
 
+    /**
+     * Fold the case of a string: two strings are equal ignoring case if and only if their case-folded values are equal.
+     *
+     * @param key the key
+     * @return the case-folded key
+     * @see String#equalsIgnoreCase(String)
+     */
+    static String caseFold( String key )
+    {
+        char[] folded = new char[key.length()];
+        for ( int i = 0; i < folded.length; i++ )
+        {
+            // same per-character comparison as String.equalsIgnoreCase()
+            folded[i] = Character.toLowerCase( Character.toUpperCase( key.charAt( i ) ) );
+        }
+        return new String( folded );
+    }
+
     /** {@inheritDoc} */
     public void render( Collection<DocumentRenderer> documents, SiteRenderingContext siteRenderingContext,
                         File outputDirectory )
         throws RendererException, IOException
     {
-        for ( DocumentRenderer docRenderer : documents )
-        {
-            RenderingContext renderingContext = docRenderer.getRenderingContext();
-
-            File outputFile = new File( outputDirectory, docRenderer.getOutputName() );
+        render( documents, siteRenderingContext, new FileSiteOutput( outputDirectory ) );
+    }
 
-            File inputFile = new File( renderingContext.getBasedir(), renderingContext.getInputName() );
+    /** {@inheritDoc} */
+    public void render( Collection<DocumentRenderer> documents, SiteRenderingContext siteRenderingContext,
+                        SiteOutput output )
+        throws RendererException, IOException
+    {
+        File outputDirectory = output.getDirectory();
 
-            boolean modified = !outputFile.exists() || ( inputFile.lastModified() > outputFile.lastModified() )
-                || ( siteRenderingContext.getDecoration().getLastModified() > outputFile.lastModified() );
+        // incremental rendering relies on previously rendered files
+        RenderManifest manifest = null;
+        if ( outputDirectory != null )
+        {
+            manifest = RenderManifest.load( RenderManifest.getStateDirectory( siteRenderingContext, outputDirectory ),
+                                            RenderManifest.getSiteInputs( siteRenderingContext ) );
+        }
 
-            if ( modified || docRenderer.isOverwrite() )
-            {
-                if ( !outputFile.getParentFile().exists() )
-                {
-                    outputFile.getParentFile().mkdirs();
-                }
+        int threads = Math.min( siteRenderingContext.getRenderingThreads(), documents.size() );
 
-                if ( getLogger().isDebugEnabled() )
-                {
-                    getLogger().debug( "Generating " + outputFile );
-                }
+        synchronized ( siteVelocityData )
+        {
+            // computed on first use, then shared by every document rendered by this call
+            siteVelocityData.put( siteRenderingContext, null );
+        }
 
-                Writer writer = null;
-                try
-                {
-                    if ( !docRenderer.isExternalReport() )
-                    {
-                        writer = WriterFactory.newWriter( outputFile, siteRenderingContext.getOutputEncoding() );
-                    }
-                    docRenderer.renderDocument( writer, this, siteRenderingContext );
-                }
-                finally
-                {
-                    IOUtil.close( writer );
-                }
+        try
+        {
+            if ( threads > 1 )
+            {
+                renderConcurrently( documents, siteRenderingContext, output, manifest, threads );
             }
             else
             {
-                if ( getLogger().isDebugEnabled() )
+                for ( DocumentRenderer docRenderer : documents )
                 {
-                    getLogger().debug( inputFile + " unchanged, not regenerating..." );
+                    renderDocumentFile( docRenderer, siteRenderingContext, output, manifest );
                 }
             }
         }
-    }
-
-    /** {@inheritDoc} */
-    public void renderDocument( Writer writer, RenderingContext docRenderingContext, SiteRenderingContext siteContext )
-            throws RendererException, FileNotFoundException, UnsupportedEncodingException
-    {
-        SiteRendererSink sink = new SiteRendererSink( docRenderingContext );
-
-        File doc = new File( docRenderingContext.getBasedir(), docRenderingContext.getInputName() );
-
-        Reader reader = null;
-        try
+        finally
         {
-            String resource = doc.getAbsolutePath();
-
-            Parser parser = doxia.getParser( docRenderingContext.getParserId() );
-            // DOXIASITETOOLS-146 don't render comments from source markup
-            parser.setEmitComments( false );
-
-            // TODO: DOXIA-111: the filter used here must be checked generally.
-            if ( docRenderingContext.getAttribute( "velocity" ) != null )
+            // the site rendering context may be updated before being rendered again
+            synchronized ( siteVelocityData )
             {
-                getLogger().debug( "Processing Velocity for " + docRenderingContext.getDoxiaSourcePath() );
-                try
-                {
-                    Context vc = createDocumentVelocityContext( docRenderingContext, siteContext );
-
-                    StringWriter sw = new StringWriter();
+                siteVelocityData.remove( siteRenderingContext );
+            }
 
-                    velocity.getEngine().mergeTemplate( resource, siteContext.getInputEncoding(), vc, sw );
+            if ( manifest != null )
+            {
+                // keep track of successfully rendered documents, even if rendering failed for another one
+                saveRenderManifest( manifest );
+            }
 
-                    String doxiaContent = sw.toString();
+            saveRenderReport( siteRenderingContext, outputDirectory );
 
-                    if ( siteContext.getProcessedContentOutput() != null )
-                    {
-                        // save Velocity processing result, ie the Doxia content that will be parsed after
-                        saveVelocityProcessedContent( docRenderingContext, siteContext, doxiaContent );
-                    }
+            logEntityCatalogStatistics();
+        }
+    }
 
-                    reader = new StringReader( doxiaContent );
-                }
-                catch ( VelocityException e )
-                {
-                    throw new RendererException( "Error parsing " + docRenderingContext.getDoxiaSourcePath()
-                        + " as a Velocity template: " + e.getMessage(), e );
-                }
+    private void saveRenderReport( SiteRenderingContext siteRenderingContext, File outputDirectory )
+    {
+        RenderingStatistics statistics = siteRenderingContext.getRenderingStatistics();
+        if ( statistics == null )
+        {
+            return;
+        }
 
-                if ( parser.getType() == Parser.XML_TYPE && siteContext.isValidate() )
-                {
-                    reader = validate( reader, resource );
-                }
-            }
-            else
+        File reportFile = siteRenderingContext.getRenderReportFile();
+        if ( reportFile == null )
+        {
+            if ( outputDirectory == null )
             {
-                switch ( parser.getType() )
-                {
-                    case Parser.XML_TYPE:
-                        reader = ReaderFactory.newXmlReader( doc );
-                        if ( siteContext.isValidate() )
-                        {
-                            reader = validate( reader, resource );
-                        }
-                        break;
-
-                    case Parser.TXT_TYPE:
-                    case Parser.UNKNOWN_TYPE:
-                    default:
-                        reader = ReaderFactory.newReader( doc, siteContext.getInputEncoding() );
-                }
+                return;
             }
-            sink.enableLogging( new PlexusLoggerWrapper( getLogger() ) );
 
-            doxia.parse( reader, docRenderingContext.getParserId(), sink );
+            // beside the output directory, that may be published
+            File absoluteOutputDirectory = outputDirectory.getAbsoluteFile();
+            reportFile = new File( absoluteOutputDirectory.getParentFile(),
+                                   absoluteOutputDirectory.getName() + RENDER_REPORT_SUFFIX );
         }
-        catch ( ParserNotFoundException e )
-        {
-            throw new RendererException( "Error getting a parser for '" + doc + "': " + e.getMessage(), e );
-        }
-        catch ( ParseException e )
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+
+        Writer writer = null;
+        try
         {
-            throw new RendererException( "Error parsing '"
-                    + doc + "': line [" + e.getLineNumber() + "] " + e.getMessage(), e );
+            writer = WriterFactory.newWriter( reportFile, WriterFactory.UTF_8 );
+            statistics.writeJson( writer, RenderingStatistics.DEFAULT_SLOWEST_COUNT );
+            writer.close();
+            writer = null;
         }
         catch ( IOException e )
         {
-            throw new RendererException( "IOException when processing '" + doc + "'", e );
+            getLogger().warn( "Unable to write render report: " + e.getMessage() );
         }
         finally
         {
-            sink.flush();
-
-            sink.close();
-
-            IOUtil.close( reader );
+            IOUtil.close( writer );
         }
-
-        mergeDocumentIntoSite( writer, (DocumentContent) sink, siteContext );
     }
 
-    private void saveVelocityProcessedContent( RenderingContext docRenderingContext, SiteRenderingContext siteContext,
-                                               String doxiaContent )
-        throws IOException
+    private synchronized void logEntityCatalogStatistics()
     {
-        if ( !siteContext.getProcessedContentOutput().exists() )
+        if ( entityCatalog != null && getLogger().isDebugEnabled() )
         {
-            siteContext.getProcessedContentOutput().mkdirs();
+            getLogger().debug( "Entity catalog: " + entityCatalog.getHitCount() + " hits, "
+                + entityCatalog.getMissCount() + " misses" );
         }
+    }
 
-        String input = docRenderingContext.getInputName();
-        File outputFile = new File( siteContext.getProcessedContentOutput(),
-                                    input.substring( 0, input.length() - 3 ) );
-
-        File outputParent = outputFile.getParentFile();
-        if ( !outputParent.exists() )
+    private void saveRenderManifest( RenderManifest manifest )
+    {
+        try
         {
-            outputParent.mkdirs();
+            manifest.save();
+        }
+        catch ( IOException e )
+        {
+            getLogger().warn( "Unable to save render manifest: " + e.getMessage() );
         }
-
-        FileUtils.fileWrite( outputFile, siteContext.getInputEncoding(), doxiaContent );
     }
 
     /**
-     * Creates a Velocity Context with all generic tools configured wit the site rendering context.
-     *
-     * @param siteRenderingContext the site rendering context
-     * @return a Velocity tools managed context
+     * Render Doxia source documents with a pipeline of 2 pools of worker threads: documents are parsed by the first
+     * one, then merged into the site template by the second one. The number of parsed documents waiting for decoration
+     * is bounded. Other documents (in general reports) are not expected to be thread-safe: they are still rendered one
+     * after the other on the calling thread.
+     * Failures are reported in documents order, like with sequential rendering.
      */
-    protected Context createToolManagedVelocityContext( SiteRenderingContext siteRenderingContext )
+    private void renderConcurrently( Collection<DocumentRenderer> documents,
+                                     final SiteRenderingContext siteRenderingContext, final SiteOutput output,
+                                     final RenderManifest manifest, int threads )
+        throws RendererException, IOException
     {
-        Locale locale = siteRenderingContext.getLocale();
-        String dateFormat = siteRenderingContext.getDecoration().getPublishDate().getFormat();
+        ExecutorService parseExecutor = Executors.newFixedThreadPool( threads, new RenderingThreadFactory( "parse" ) );
+        final ExecutorService decorateExecutor =
+            Executors.newFixedThreadPool( threads, new RenderingThreadFactory( "decorate" ) );
+        final Semaphore pendingDecorations = new Semaphore( 2 * threads );
 
-        EasyFactoryConfiguration config = new EasyFactoryConfiguration( false );
-        config.property( "safeMode", Boolean.FALSE );
-        config.toolbox( Scope.REQUEST )
-            .tool( ContextTool.class )
-            .tool( LinkTool.class )
-            .tool( LoopTool.class )
-            .tool( RenderTool.class );
-        config.toolbox( Scope.APPLICATION ).property( "locale", locale )
-            .tool( AlternatorTool.class )
-            .tool( ClassTool.class )
-            .tool( ComparisonDateTool.class ).property( "format", dateFormat )
-            .tool( ConversionTool.class ).property( "dateFormat", dateFormat )
-            .tool( DisplayTool.class )
-            .tool( EscapeTool.class )
-            .tool( FieldTool.class )
+        try
+        {
+            Map<DocumentRenderer, Future<Future<?>>> tasks =
+                new IdentityHashMap<DocumentRenderer, Future<Future<?>>>();
+
+            for ( final DocumentRenderer docRenderer : documents )
+            {
+                if ( docRenderer instanceof DoxiaDocumentRenderer )
+                {
+                    tasks.put( docRenderer, parseExecutor.submit( new Callable<Future<?>>()
+                    {
+                        public Future<?> call()
+                            throws RendererException, IOException, InterruptedException
+                        {
+                            if ( docRenderer.getClass() != DoxiaDocumentRenderer.class )
+                            {
+                                // renderDocument() may be overridden: no separate stages
+                                renderDocumentFile( docRenderer, siteRenderingContext, output, manifest );
+                                return null;
+                            }
+
+                            final OutputDocument document = checkOutputDocument( docRenderer, output, manifest );
+                            if ( document == null )
+                            {
+                                return null;
+                            }
+
+                            pendingDecorations.acquire();
+                            try
+                            {
+                                final DocumentContent content =
+                                    parseDocument( docRenderer.getRenderingContext(), siteRenderingContext, true );
+
+                                Future<?> decoration = decorateExecutor.submit( new Callable<Void>()
+                                {
+                                    public Void call()
+                                        throws RendererException, IOException
+                                    {
+                                        try
+                                        {
+                                            writeOutputDocument( document, content, output, siteRenderingContext,
+                                                                 manifest );
+                                            return null;
+                                        }
+                                        finally
+                                        {
+                                            releaseContent( content );
+                                            pendingDecorations.release();
+                                        }
+                                    }
+                                } );
+                                return decoration;
+                            }
+                            catch ( RendererException e )
+                            {
+                                pendingDecorations.release();
+                                throw e;
+                            }
+                            catch ( RuntimeException e )
+                            {
+                                pendingDecorations.release();
+                                throw e;
+                            }
+                        }
+                    } ) );
+                }
+            }
+
+            for ( DocumentRenderer docRenderer : documents )
+            {
+                Future<Future<?>> task = tasks.get( docRenderer );
+
+                if ( task == null )
+                {
+                    renderDocumentFile( docRenderer, siteRenderingContext, output, manifest );
+                }
+                else
+                {
+                    Future<?> decoration = waitFor( task, "document parsing" );
+                    if ( decoration != null )
+                    {
+                        waitFor( decoration, "document decoration" );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            parseExecutor.shutdownNow();
+            decorateExecutor.shutdownNow();
+        }
+    }
+
+    private static <T> T waitFor( Future<T> task, String action )
+        throws RendererException, IOException
+    {
+        try
+        {
+            return task.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RendererException( "Interrupted while waiting for " + action, e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+
+            if ( cause instanceof RendererException )
+            {
+                throw (RendererException) cause;
+            }
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new RendererException( "Error during " + action + ": " + cause.getMessage(), cause );
+        }
+    }
+
+    private void renderDocumentFile( DocumentRenderer docRenderer, SiteRenderingContext siteRenderingContext,
+                                     SiteOutput output, RenderManifest manifest )
+        throws RendererException, IOException
+    {
+        OutputDocument document = checkOutputDocument( docRenderer, output, manifest );
+
+        if ( document != null )
+        {
+            writeOutputDocument( document, null, output, siteRenderingContext, manifest );
+        }
+    }
+
+    /**
+     * Check if a document needs to be rendered.
+     *
+     * @param manifest the render manifest, or <code>null</code> to always render the document
+     * @return the output document to render, or <code>null</code> if the output is up to date
+     */
+    private OutputDocument checkOutputDocument( DocumentRenderer docRenderer, SiteOutput output,
+                                                RenderManifest manifest )
+        throws IOException
+    {
+        String fingerprint = null;
+
+        if ( manifest != null && !docRenderer.isOverwrite() )
+        {
+            RenderingContext renderingContext = docRenderer.getRenderingContext();
+
+            File outputFile = new File( output.getDirectory(), docRenderer.getOutputName() );
+
+            File inputFile = new File( renderingContext.getBasedir(), renderingContext.getInputName() );
+
+            fingerprint = manifest.getFingerprint( inputFile );
+
+            if ( outputFile.exists() && manifest.isUpToDate( docRenderer.getOutputName(), fingerprint ) )
+            {
+                if ( getLogger().isDebugEnabled() )
+                {
+                    getLogger().debug( inputFile + " unchanged, not regenerating..." );
+                }
+                return null;
+            }
+
+            if ( outputFile.exists() && getLogger().isDebugEnabled() )
+            {
+                getLogger().debug( "Inputs of " + outputFile + " changed: was "
+                    + manifest.getRecordedFingerprint( docRenderer.getOutputName() ) + ", now " + fingerprint );
+            }
+        }
+
+        return new OutputDocument( docRenderer, fingerprint );
+    }
+
+    /**
+     * Render a document to its output file.
+     *
+     * @param content the already parsed document content, or <code>null</code> to let the document renderer render
+     * the document
+     */
+    private void writeOutputDocument( OutputDocument document, DocumentContent content, SiteOutput output,
+                                      SiteRenderingContext siteRenderingContext, RenderManifest manifest )
+        throws RendererException, IOException
+    {
+        DocumentRenderer docRenderer = document.docRenderer;
+
+        if ( getLogger().isDebugEnabled() )
+        {
+            getLogger().debug( "Generating " + docRenderer.getOutputName() );
+        }
+
+        RenderingStatistics statistics = siteRenderingContext.getRenderingStatistics();
+        TimingWriter timingWriter = null;
+
+        Writer writer = null;
+        try
+        {
+            if ( !docRenderer.isExternalReport() )
+            {
+                writer = WriterFactory.newWriter( output.newOutputStream( docRenderer.getOutputName() ),
+                                                  siteRenderingContext.getOutputEncoding() );
+
+                if ( statistics != null )
+                {
+                    timingWriter = new TimingWriter( writer );
+                    writer = timingWriter;
+                }
+            }
+
+            if ( content == null )
+            {
+                docRenderer.renderDocument( writer, this, siteRenderingContext );
+            }
+            else
+            {
+                mergeDocumentIntoSite( writer, content, siteRenderingContext );
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        if ( timingWriter != null )
+        {
+            RenderingStatistics.DocumentStatistics documentStatistics =
+                statistics.getDocument( docRenderer.getRenderingContext() );
+            documentStatistics.addTime( RenderingStatistics.Stage.WRITE, timingWriter.getTime() );
+            if ( output.getDirectory() != null )
+            {
+                File outputFile = new File( output.getDirectory(), docRenderer.getOutputName() );
+                documentStatistics.setBytesOut( outputFile.length() );
+            }
+        }
+
+        if ( document.fingerprint != null )
+        {
+            manifest.update( docRenderer.getOutputName(), document.fingerprint );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void renderDocument( Writer writer, RenderingContext docRenderingContext, SiteRenderingContext siteContext )
+            throws RendererException, FileNotFoundException, UnsupportedEncodingException
+    {
+        FlightRecorderEvent event = RENDER_DOCUMENT_EVENT.begin( docRenderingContext.getDoxiaSourcePath(),
+                                                                 docRenderingContext.getParserId() );
+        try
+        {
+            DocumentContent content = parseDocument( docRenderingContext, siteContext, true );
+            try
+            {
+                mergeDocumentIntoSite( writer, content, siteContext );
+            }
+            finally
+            {
+                releaseContent( content );
+            }
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public DocumentContent parseDocument( RenderingContext docRenderingContext, SiteRenderingContext siteContext )
+        throws RendererException
+    {
+        return parseDocument( docRenderingContext, siteContext, false );
+    }
+
+    /**
+     * Parse a document.
+     *
+     * @param pooled <code>true</code> to parse into a sink from the pool, when the content is used only until
+     * {@link #releaseContent(DocumentContent) released}
+     */
+    private DocumentContent parseDocument( RenderingContext docRenderingContext, SiteRenderingContext siteContext,
+                                           boolean pooled )
+        throws RendererException
+    {
+        FlightRecorderEvent event = PARSE_DOCUMENT_EVENT.begin( docRenderingContext.getDoxiaSourcePath(),
+                                                                docRenderingContext.getParserId() );
+        try
+        {
+            return parseDocumentContent( docRenderingContext, siteContext, pooled );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    /**
+     * Return the sink of a document parsed from the pool, once its content has been merged into the site template.
+     */
+    private void releaseContent( DocumentContent content )
+    {
+        if ( content instanceof SiteRendererSink )
+        {
+            sinkPool.release( (SiteRendererSink) content );
+        }
+    }
+
+    private DocumentContent parseDocumentContent( RenderingContext docRenderingContext,
+                                                  SiteRenderingContext siteContext, boolean pooled )
+        throws RendererException
+    {
+        File doc = new File( docRenderingContext.getBasedir(), docRenderingContext.getInputName() );
+
+        RenderingStatistics.DocumentStatistics statistics = ( siteContext.getRenderingStatistics() == null ) ? null
+                        : siteContext.getRenderingStatistics().getDocument( docRenderingContext );
+        if ( statistics != null )
+        {
+            statistics.setBytesIn( doc.length() );
+        }
+
+        ParseCache parseCache = null;
+        String parseCacheKey = null;
+        SiteRendererSink sink = null;
+        Parser parser = null;
+        Reader reader = null;
+        VelocityMergeReader velocityReader = null;
+        TimingReader sourceReader = null;
+        try
+        {
+            String resource = doc.getAbsolutePath();
+
+            parser = getParserPool().acquire( docRenderingContext.getParserId() );
+
+            if ( siteContext.getParseCacheDirectory() != null
+                && docRenderingContext.getAttribute( "velocity" ) == null )
+            {
+                // Velocity documents content depends on the Velocity context, not only on their source
+                parseCache = new ParseCache( siteContext.getParseCacheDirectory() );
+                parseCacheKey = ParseCache.getKey( doc, parser, siteContext.getInputEncoding(),
+                                                    siteContext.isValidate() );
+
+                DocumentContent content = loadParseResult( parseCache, parseCacheKey, docRenderingContext );
+                if ( content != null )
+                {
+                    if ( statistics != null )
+                    {
+                        statistics.setCached( true );
+                    }
+                    return content;
+                }
+            }
+
+            sink = pooled ? sinkPool.acquire( docRenderingContext ) : new SiteRendererSink( docRenderingContext );
+
+            // TODO: DOXIA-111: the filter used here must be checked generally.
+            if ( docRenderingContext.getAttribute( "velocity" ) != null )
+            {
+                getLogger().debug( "Processing Velocity for " + docRenderingContext.getDoxiaSourcePath() );
+                try
+                {
+                    Context vc = createDocumentVelocityContext( docRenderingContext, siteContext );
+
+                    // save Velocity processing result, ie the Doxia content that will be parsed after
+                    File processedContentFile = ( siteContext.getProcessedContentOutput() == null ) ? null
+                                    : getVelocityProcessedContentFile( docRenderingContext, siteContext );
+
+                    // Velocity processing result is streamed to the parser while the template is merged
+                    velocityReader = new VelocityMergeReader( velocity.getEngine(), resource,
+                                                              siteContext.getInputEncoding(), vc,
+                                                              processedContentFile );
+                    reader = velocityReader;
+                }
+                catch ( VelocityException e )
+                {
+                    throw newVelocityException( docRenderingContext, e );
+                }
+
+                if ( parser.getType() == Parser.XML_TYPE && siteContext.isValidate() )
+                {
+                    reader = validate( reader, resource );
+                }
+            }
+            else
+            {
+                switch ( parser.getType() )
+                {
+                    case Parser.XML_TYPE:
+                        reader = ReaderFactory.newXmlReader( doc );
+                        if ( statistics != null )
+                        {
+                            sourceReader = new TimingReader( reader );
+                            reader = sourceReader;
+                        }
+                        if ( siteContext.isValidate() )
+                        {
+                            reader = validate( reader, resource );
+                        }
+                        break;
+
+                    case Parser.TXT_TYPE:
+                    case Parser.UNKNOWN_TYPE:
+                    default:
+                        reader = ReaderFactory.newReader( doc, siteContext.getInputEncoding() );
+                        if ( statistics != null )
+                        {
+                            sourceReader = new TimingReader( reader );
+                            reader = sourceReader;
+                        }
+                }
+            }
+            sink.enableLogging( new PlexusLoggerWrapper( getLogger() ) );
+
+            ParseException parseError = null;
+
+            long start = System.nanoTime();
+            try
+            {
+                parser.parse( reader, sink );
+            }
+            catch ( ParseException e )
+            {
+                parseError = e;
+            }
+
+            if ( statistics != null )
+            {
+                long readTime = ( sourceReader == null ) ? 0 : sourceReader.getTime();
+                statistics.addTime( RenderingStatistics.Stage.READ, readTime );
+                statistics.addTime( RenderingStatistics.Stage.PARSE, System.nanoTime() - start - readTime );
+            }
+
+            ParseException validationError = null;
+            if ( reader instanceof ValidatingReader )
+            {
+                try
+                {
+                    ( (ValidatingReader) reader ).finish();
+                }
+                catch ( ParseException e )
+                {
+                    validationError = e;
+                }
+
+                if ( statistics != null )
+                {
+                    statistics.addTime( RenderingStatistics.Stage.VALIDATION,
+                                        ( (ValidatingReader) reader ).getValidationCpuTime() );
+                }
+            }
+
+            if ( velocityReader != null )
+            {
+                try
+                {
+                    velocityReader.finish();
+                }
+                catch ( VelocityException e )
+                {
+                    // Velocity errors first: invalid content is a consequence
+                    throw newVelocityException( docRenderingContext, e );
+                }
+
+                if ( statistics != null )
+                {
+                    statistics.addTime( RenderingStatistics.Stage.VELOCITY, velocityReader.getMergeCpuTime() );
+                }
+            }
+
+            // validation errors next: they are more precise than parse errors on invalid content
+            if ( validationError != null )
+            {
+                throw validationError;
+            }
+
+            if ( parseError != null )
+            {
+                throw parseError;
+            }
+        }
+        catch ( ParserNotFoundException e )
+        {
+            throw new RendererException( "Error getting a parser for '" + doc + "': " + e.getMessage(), e );
+        }
+        catch ( ParseException e )
+        {
+            throw new RendererException( "Error parsing '"
+                    + doc + "': line [" + e.getLineNumber() + "] " + e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new RendererException( "IOException when processing '" + doc + "'", e );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RendererException( "Interrupted while waiting for a parser for '" + doc + "'", e );
+        }
+        finally
+        {
+            if ( sink != null )
+            {
+                sink.flush();
+
+                sink.close();
+            }
+
+            IOUtil.close( reader );
+
+            if ( parser != null )
+            {
+                getParserPool().release( docRenderingContext.getParserId(), parser );
+            }
+        }
+
+        if ( parseCache != null )
+        {
+            storeParseResult( parseCache, parseCacheKey, docRenderingContext, sink );
+        }
+
+        return sink;
+    }
+
+    private DocumentContent loadParseResult( ParseCache parseCache, String parseCacheKey,
+                                             RenderingContext docRenderingContext )
+    {
+        try
+        {
+            DocumentContent content = parseCache.load( docRenderingContext, parseCacheKey );
+
+            if ( content != null && getLogger().isDebugEnabled() )
+            {
+                getLogger().debug( "Using cached parse result for " + docRenderingContext.getDoxiaSourcePath() );
+            }
+
+            return content;
+        }
+        catch ( IOException e )
+        {
+            // broken cache entry: parse the document again
+            getLogger().debug( "Unable to read cached parse result for " + docRenderingContext.getDoxiaSourcePath()
+                + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    private void storeParseResult( ParseCache parseCache, String parseCacheKey, RenderingContext docRenderingContext,
+                                   SiteRendererSink sink )
+    {
+        try
+        {
+            parseCache.store( docRenderingContext, parseCacheKey, sink );
+        }
+        catch ( IOException e )
+        {
+            // the cache is an optimization: don't fail the build
+            getLogger().warn( "Unable to cache parse result for " + docRenderingContext.getDoxiaSourcePath() + ": "
+                + e.getMessage() );
+        }
+    }
+
+    private static File getVelocityProcessedContentFile( RenderingContext docRenderingContext,
+                                                         SiteRenderingContext siteContext )
+    {
+        String input = docRenderingContext.getInputName();
+        return new File( siteContext.getProcessedContentOutput(), input.substring( 0, input.length() - 3 ) );
+    }
+
+    private static RendererException newVelocityException( RenderingContext docRenderingContext,
+                                                           VelocityException e )
+    {
+        return new RendererException( "Error parsing " + docRenderingContext.getDoxiaSourcePath()
+            + " as a Velocity template: " + e.getMessage(), e );
+    }
+
+    /**
+     * Creates a Velocity Context with all generic tools configured wit the site rendering context.
+     * Tools configuration is done once per site rendering context: every call only creates request-scoped tools.
+     *
+     * @param siteRenderingContext the site rendering context
+     * @return a Velocity tools managed context
+     */
+    protected Context createToolManagedVelocityContext( SiteRenderingContext siteRenderingContext )
+    {
+        // the manager configuration and application toolbox are not modified once created: contexts can be created
+        // from concurrent rendering threads without locking
+        return getToolManager( siteRenderingContext ).createContext();
+    }
+
+    private SiteToolManager getToolManager( SiteRenderingContext siteRenderingContext )
+    {
+        Locale locale = siteRenderingContext.getLocale();
+        String dateFormat = siteRenderingContext.getDecoration().getPublishDate().getFormat();
+
+        synchronized ( toolManagers )
+        {
+            SiteToolManager siteToolManager = toolManagers.get( siteRenderingContext );
+
+            if ( siteToolManager == null || !siteToolManager.isConfiguredFor( locale, dateFormat ) )
+            {
+                siteToolManager = createToolManager( locale, dateFormat );
+                toolManagers.put( siteRenderingContext, siteToolManager );
+            }
+
+            return siteToolManager;
+        }
+    }
+
+    private SiteToolManager createToolManager( Locale locale, String dateFormat )
+    {
+        EasyFactoryConfiguration config = new EasyFactoryConfiguration( false );
+        config.property( "safeMode", Boolean.FALSE );
+        config.toolbox( Scope.REQUEST )
+            .tool( ContextTool.class )
+            .tool( LinkTool.class )
+            .tool( LoopTool.class )
+            .tool( RenderTool.class );
+        config.toolbox( Scope.APPLICATION ).property( "locale", locale )
+            .tool( AlternatorTool.class )
+            .tool( ClassTool.class )
+            .tool( ComparisonDateTool.class ).property( "format", dateFormat )
+            .tool( ConversionTool.class ).property( "dateFormat", dateFormat )
+            .tool( DisplayTool.class )
+            .tool( EscapeTool.class )
+            .tool( FieldTool.class )
             .tool( MathTool.class )
             .tool( NumberTool.class )
             .tool( ResourceTool.class ).property( "bundles", new String[] { "site-renderer" } )
@@ -521,14 +1285,20 @@ public class DefaultSiteRenderer
             config.addConfiguration( customConfig );
         }
 
-        ToolManager manager = new ToolManager( false, false );
+        SiteToolManager manager = new SiteToolManager( locale, dateFormat );
         manager.configure( config );
 
-        return manager.createContext();
+        // instantiate application-scoped tools now: they are then shared by every document context,
+        // possibly from concurrent rendering threads
+        manager.createContext().getToolbox();
+
+        return manager;
     }
 
     /**
      * Create a Velocity Context for a Doxia document, containing every information about rendered document.
+     * Site-wide data is computed once per {@link #render(Collection, SiteRenderingContext, SiteOutput) render} call
+     * and shared by the contexts of every document: only document data is put in every context.
      *
      * @param sink the site renderer sink for the document
      * @param siteRenderingContext the site rendering context
@@ -537,50 +1307,101 @@ public class DefaultSiteRenderer
     protected Context createDocumentVelocityContext( RenderingContext renderingContext,
                                                      SiteRenderingContext siteRenderingContext )
     {
-        Context context = createToolManagedVelocityContext( siteRenderingContext );
+        SiteVelocityData siteData = getSiteVelocityData( siteRenderingContext );
+
+        // site data, including user properties and tools, is chained to the document context
+        Context context = siteData.createContext();
+        Map<String, Object> siteValues = siteData.getValues();
+
         // ----------------------------------------------------------------------
         // Data objects
         // ----------------------------------------------------------------------
 
-        context.put( "relativePath", renderingContext.getRelativePath() );
+        putDocumentValue( context, siteValues, "relativePath", renderingContext.getRelativePath() );
 
         String currentFileName = renderingContext.getOutputName().replace( '\\', '/' );
-        context.put( "currentFileName", currentFileName );
+        putDocumentValue( context, siteValues, "currentFileName", currentFileName );
 
-        context.put( "alignedFileName", PathTool.calculateLink( currentFileName, renderingContext.getRelativePath() ) );
+        putDocumentValue( context, siteValues, "alignedFileName",
+                          PathTool.calculateLink( currentFileName, renderingContext.getRelativePath() ) );
 
-        context.put( "decoration", siteRenderingContext.getDecoration() );
-
-        Locale locale = siteRenderingContext.getLocale();
-        context.put( "locale", locale );
-        context.put( "supportedLocales", Collections.unmodifiableList( siteRenderingContext.getSiteLocales() ) );
+        Date currentDate = new Date();
+        putDocumentValue( context, siteValues, "currentDate", currentDate );
 
-        context.put( "currentDate", new Date() );
+        // not site data: the site may be rendered again later, in watch or preview mode
         SimpleDateFormat sdf = new SimpleDateFormat( "yyyyMMdd" );
-        context.put( "dateRevision", sdf.format( new Date() ) );
+        putDocumentValue( context, siteValues, "dateRevision", sdf.format( currentDate ) );
 
-        context.put( "publishDate", siteRenderingContext.getPublishDate() );
+        // DateFormat is not thread-safe: every document gets its own copy
+        putDocumentValue( context, siteValues, "dateFormat", siteData.newDateFormat() );
 
-        PublishDate publishDate = siteRenderingContext.getDecoration().getPublishDate();
-        DateFormat dateFormat = new SimpleDateFormat( publishDate.getFormat(), locale );
-        context.put( "dateFormat", dateFormat );
+        return context;
+    }
 
-        // doxiaSiteRendererVersion
-        InputStream inputStream = this.getClass().getResourceAsStream( "/META-INF/"
-            + "maven/org.apache.maven.doxia/doxia-site-renderer/pom.properties" );
-        Properties properties = PropertyUtils.loadProperties( inputStream );
-        if ( inputStream == null )
+    /**
+     * Put a document value in a document context, unless a site value of the same name, like a template property,
+     * overrides it.
+     */
+    private static void putDocumentValue( Context context, Map<String, Object> siteValues, String key, Object value )
+    {
+        if ( !siteValues.containsKey( key ) )
         {
-            getLogger().debug( "pom.properties for doxia-site-renderer could not be found." );
+            context.put( key, value );
         }
-        else if ( properties == null )
+    }
+
+    /**
+     * Get the site-wide Velocity data of a site rendering context: the data computed for the current
+     * {@link #render(Collection, SiteRenderingContext, SiteOutput) render} call, or data computed for a single
+     * document when rendered on its own.
+     */
+    private SiteVelocityData getSiteVelocityData( SiteRenderingContext siteRenderingContext )
+    {
+        synchronized ( siteVelocityData )
         {
-            getLogger().debug( "Failed to load pom.properties, so doxiaVersion is not available"
-                + " in the Velocity context." );
+            SiteVelocityData siteData = siteVelocityData.get( siteRenderingContext );
+
+            if ( siteData == null )
+            {
+                siteData = createSiteVelocityData( siteRenderingContext );
+
+                if ( siteVelocityData.containsKey( siteRenderingContext ) )
+                {
+                    siteVelocityData.put( siteRenderingContext, siteData );
+                }
+            }
+
+            return siteData;
         }
-        else
+    }
+
+    private SiteVelocityData createSiteVelocityData( SiteRenderingContext siteRenderingContext )
+    {
+        return new SiteVelocityData( siteRenderingContext, createSiteVelocityValues( siteRenderingContext ),
+                                     getToolManager( siteRenderingContext ) );
+    }
+
+    /**
+     * Compute the data that is the same for every document of a site.
+     *
+     * @param siteRenderingContext the site rendering context
+     * @return site values to put in every document Velocity context, in order
+     */
+    private Map<String, Object> createSiteVelocityValues( SiteRenderingContext siteRenderingContext )
+    {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+        values.put( "decoration", siteRenderingContext.getDecoration() );
+
+        values.put( "locale", siteRenderingContext.getLocale() );
+        values.put( "supportedLocales", Collections.unmodifiableList( siteRenderingContext.getSiteLocales() ) );
+
+        values.put( "publishDate", siteRenderingContext.getPublishDate() );
+
+        String version = getSiteRendererVersion();
+        if ( version != null )
         {
-            context.put( "doxiaSiteRendererVersion", properties.getProperty( "version" ) );
+            values.put( "doxiaSiteRendererVersion", version );
         }
 
         // Add user properties
@@ -588,26 +1409,73 @@ public class DefaultSiteRenderer
 
         if ( templateProperties != null )
         {
-            for ( Map.Entry<String, ?> entry : templateProperties.entrySet() )
-            {
-                context.put( entry.getKey(), entry.getValue() );
-            }
+            values.putAll( templateProperties );
         }
 
         // ----------------------------------------------------------------------
         // Tools
         // ----------------------------------------------------------------------
 
-        context.put( "PathTool", new PathTool() );
+        values.put( "PathTool", new PathTool() );
 
-        context.put( "FileUtils", new FileUtils() );
+        values.put( "FileUtils", new FileUtils() );
 
-        context.put( "StringUtils", new StringUtils() );
+        values.put( "StringUtils", new StringUtils() );
 
-        context.put( "i18n", i18n );
+        values.put( "i18n", i18n );
 
-        context.put( "plexus", plexus );
-        return context;
+        values.put( "plexus", plexus );
+
+        return Collections.unmodifiableMap( values );
+    }
+
+    /**
+     * Get doxia-site-renderer version, read once from <code>pom.properties</code>.
+     *
+     * @return the version, or <code>null</code> if not available
+     */
+    private synchronized String getSiteRendererVersion()
+    {
+        if ( siteRendererVersionLoaded )
+        {
+            return siteRendererVersion;
+        }
+        siteRendererVersionLoaded = true;
+
+        // doxiaSiteRendererVersion
+        InputStream inputStream = this.getClass().getResourceAsStream( "/META-INF/"
+            + "maven/org.apache.maven.doxia/doxia-site-renderer/pom.properties" );
+        Properties properties = PropertyUtils.loadProperties( inputStream );
+        if ( inputStream == null )
+        {
+            getLogger().debug( "pom.properties for doxia-site-renderer could not be found." );
+        }
+        else if ( properties == null )
+        {
+            getLogger().debug( "Failed to load pom.properties, so doxiaVersion is not available"
+                + " in the Velocity context." );
+        }
+        else
+        {
+            siteRendererVersion = properties.getProperty( "version" );
+        }
+
+        return siteRendererVersion;
+    }
+
+    /**
+     * Get the pool of parsers used to parse documents, created once.
+     *
+     * @return the parser pool
+     */
+    private synchronized ParserPool getParserPool()
+    {
+        if ( parserPool == null )
+        {
+            // DOXIASITETOOLS-146 don't render comments from source markup
+            parserPool = new ParserPool( doxia, false, new PlexusLoggerWrapper( getLogger() ) );
+        }
+        return parserPool;
     }
 
     /**
@@ -698,24 +1566,44 @@ public class DefaultSiteRenderer
     public void mergeDocumentIntoSite( Writer writer, DocumentContent content,
                                            SiteRenderingContext siteRenderingContext )
         throws RendererException
+    {
+        RenderingContext renderingContext = content.getRenderingContext();
+        FlightRecorderEvent event = ( renderingContext == null ) ? MERGE_DOCUMENT_EVENT.begin( null, null )
+                        : MERGE_DOCUMENT_EVENT.begin( renderingContext.getDoxiaSourcePath(),
+                                                      renderingContext.getParserId() );
+        try
+        {
+            mergeIntoTemplate( writer, content, siteRenderingContext );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private void mergeIntoTemplate( Writer writer, DocumentContent content, SiteRenderingContext siteRenderingContext )
+        throws RendererException
     {
         String templateName = siteRenderingContext.getTemplateName();
 
         getLogger().debug( "Processing Velocity for template " + templateName + " on "
             + content.getRenderingContext().getInputName() );
 
-        Context context = createSiteTemplateVelocityContext( content, siteRenderingContext );
+        long start = System.nanoTime();
+        long writeStart = ( writer instanceof TimingWriter ) ? ( (TimingWriter) writer ).getTime() : 0;
 
-        ClassLoader old = null;
+        Context context = createSiteTemplateVelocityContext( content, siteRenderingContext );
 
-        if ( siteRenderingContext.getTemplateClassLoader() != null )
-        {
-            // -------------------------------------------------------------------------
-            // If no template classloader was set we'll just use the context classloader
-            // -------------------------------------------------------------------------
+        // -------------------------------------------------------------------------
+        // If no template classloader was set we'll just use the context classloader
+        // -------------------------------------------------------------------------
+        boolean switchClassLoader = siteRenderingContext.getTemplateClassLoader() != null;
 
-            old = Thread.currentThread().getContextClassLoader();
+        // the context classloader is switched for current thread only, and restored even if it was null
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
 
+        if ( switchClassLoader )
+        {
             Thread.currentThread().setContextClassLoader( siteRenderingContext.getTemplateClassLoader() );
         }
 
@@ -747,9 +1635,10 @@ public class DefaultSiteRenderer
 
             try
             {
-                StringWriter sw = new StringWriter();
-                template.merge( context, sw );
-                writer.write( sw.toString().replaceAll( "\r?\n", SystemUtils.LINE_SEPARATOR ) );
+                // merge directly into the writer, with newlines unified on the fly
+                Writer out = new NewlineNormalizingWriter( writer, SystemUtils.LINE_SEPARATOR );
+                template.merge( context, out );
+                out.close();
             }
             catch ( VelocityException ve )
             {
@@ -764,10 +1653,19 @@ public class DefaultSiteRenderer
         {
             IOUtil.close( writer );
 
-            if ( old != null )
+            if ( switchClassLoader )
             {
                 Thread.currentThread().setContextClassLoader( old );
             }
+
+            if ( siteRenderingContext.getRenderingStatistics() != null && content.getRenderingContext() != null )
+            {
+                // output write time is recorded separately
+                long writeTime = ( writer instanceof TimingWriter ) ? ( (TimingWriter) writer ).getTime() - writeStart
+                                : 0;
+                siteRenderingContext.getRenderingStatistics().getDocument( content.getRenderingContext() )
+                    .addTime( RenderingStatistics.Stage.MERGE, System.nanoTime() - start - writeTime );
+            }
         }
     }
 
@@ -794,101 +1692,24 @@ public class DefaultSiteRenderer
 
         context.setSkin( skin );
 
-        ZipFile zipFile = getZipFile( skin.getFile() );
-        InputStream in = null;
-
-        try
-        {
-            if ( zipFile.getEntry( SKIN_TEMPLATE_LOCATION ) != null )
-            {
-                context.setTemplateName( SKIN_TEMPLATE_LOCATION );
-                context.setTemplateClassLoader( new URLClassLoader( new URL[]{skin.getFile().toURI().toURL()} ) );
-            }
-            else
-            {
-                context.setTemplateName( DEFAULT_TEMPLATE );
-                context.setTemplateClassLoader( getClass().getClassLoader() );
-                context.setUsingDefaultTemplate( true );
-            }
-
-            ZipEntry skinDescriptorEntry = zipFile.getEntry( SkinModel.SKIN_DESCRIPTOR_LOCATION );
-            if ( skinDescriptorEntry != null )
-            {
-                in = zipFile.getInputStream( skinDescriptorEntry );
-
-                SkinModel skinModel = new SkinXpp3Reader().read( in );
-                context.setSkinModel( skinModel );
+        RegisteredSkin registeredSkin = skinRegistry.getSkin( skin );
 
-                String toolsPrerequisite =
-                    skinModel.getPrerequisites() == null ? null : skinModel.getPrerequisites().getDoxiaSitetools();
-
-                Package p = DefaultSiteRenderer.class.getPackage();
-                String current = ( p == null ) ? null : p.getImplementationVersion();
-
-                if ( StringUtils.isNotBlank( toolsPrerequisite ) && ( current != null )
-                    && !matchVersion( current, toolsPrerequisite ) )
-                {
-                    throw new RendererException( "Cannot use skin: has " + toolsPrerequisite
-                        + " Doxia Sitetools prerequisite, but current is " + current );
-                }
-            }
-        }
-        catch ( XmlPullParserException e )
+        if ( registeredSkin.hasTemplate() )
         {
-            throw new RendererException( "Failed to parse " + SkinModel.SKIN_DESCRIPTOR_LOCATION
-                + " skin descriptor from " + skin.getId() + " skin", e );
+            context.setTemplateName( SKIN_TEMPLATE_LOCATION );
+            // same classloader for every site rendering context using the skin: Velocity templates cache stays valid
+            context.setTemplateClassLoader( registeredSkin.getTemplateClassLoader() );
         }
-        finally
+        else
         {
-            IOUtil.close( in );
-            closeZipFile( zipFile );
+            context.setTemplateName( DEFAULT_TEMPLATE );
+            context.setTemplateClassLoader( getClass().getClassLoader() );
+            context.setUsingDefaultTemplate( true );
         }
 
-        return context;
-    }
-
-    boolean matchVersion( String current, String prerequisite )
-        throws RendererException
-    {
-        try
-        {
-            ArtifactVersion v = new DefaultArtifactVersion( current );
-            VersionRange vr = VersionRange.createFromVersionSpec( prerequisite );
-
-            boolean matched = false;
-            ArtifactVersion recommendedVersion = vr.getRecommendedVersion();
-            if ( recommendedVersion == null )
-            {
-                List<Restriction> restrictions = vr.getRestrictions();
-                for ( Restriction restriction : restrictions )
-                {
-                    if ( restriction.containsVersion( v ) )
-                    {
-                        matched = true;
-                        break;
-                    }
-                }
-            }
-            else
-            {
-                // only singular versions ever have a recommendedVersion
-                @SuppressWarnings( "unchecked" )
-                int compareTo = recommendedVersion.compareTo( v );
-                matched = ( compareTo <= 0 );
-            }
-
-            if ( getLogger().isDebugEnabled() )
-            {
-                getLogger().debug( "Skin doxia-sitetools prerequisite: " + prerequisite + ", current: " + current
-                    + ", matched = " + matched );
-            }
+        context.setSkinModel( registeredSkin.getSkinModel() );
 
-            return matched;
-        }
-        catch ( InvalidVersionSpecificationException e )
-        {
-            throw new RendererException( "Invalid skin doxia-sitetools prerequisite: " + prerequisite, e );
-        }
+        return context;
     }
 
     /** {@inheritDoc} */
@@ -916,110 +1737,51 @@ public class DefaultSiteRenderer
 
     /** {@inheritDoc} */
     public void copyResources( SiteRenderingContext siteRenderingContext, File outputDirectory )
-        throws IOException
-    {
-        if ( siteRenderingContext.getSkin() != null )
-        {
-            ZipFile file = getZipFile( siteRenderingContext.getSkin().getFile() );
-
-            try
-            {
-                for ( Enumeration<? extends ZipEntry> e = file.entries(); e.hasMoreElements(); )
-                {
-                    ZipEntry entry = e.nextElement();
-
-                    if ( !entry.getName().startsWith( "META-INF/" ) )
-                    {
-                        File destFile = new File( outputDirectory, entry.getName() );
-                        if ( !entry.isDirectory() )
-                        {
-                            if ( destFile.exists() )
-                            {
-                                // don't override existing content: avoids extra rewrite with same content or extra site
-                                // resource
-                                continue;
-                            }
-
-                            destFile.getParentFile().mkdirs();
-
-                            copyFileFromZip( file, entry, destFile );
-                        }
-                        else
-                        {
-                            destFile.mkdirs();
-                        }
-                    }
-                }
-            }
-            finally
-            {
-                closeZipFile( file );
-            }
-        }
-
-        if ( siteRenderingContext.isUsingDefaultTemplate() )
-        {
-            InputStream resourceList = getClass().getClassLoader()
-                    .getResourceAsStream( RESOURCE_DIR + "/resources.txt" );
-
-            if ( resourceList != null )
-            {
-                Reader r = null;
-                LineNumberReader reader = null;
-                try
-                {
-                    r = ReaderFactory.newReader( resourceList, ReaderFactory.UTF_8 );
-                    reader = new LineNumberReader( r );
-
-                    String line;
-
-                    while ( ( line = reader.readLine() ) != null )
-                    {
-                        if ( line.startsWith( "#" ) || line.trim().length() == 0 )
-                        {
-                            continue;
-                        }
-
-                        InputStream is = getClass().getClassLoader().getResourceAsStream( RESOURCE_DIR + "/" + line );
+        throws IOException
+    {
+        if ( siteRenderingContext.getSkin() != null )
+        {
+            copySkinResources( siteRenderingContext.getSkin(), outputDirectory,
+                               RenderManifest.getStateDirectory( siteRenderingContext, outputDirectory ) );
+        }
 
-                        if ( is == null )
-                        {
-                            throw new IOException( "The resource " + line + " doesn't exist." );
-                        }
+        if ( siteRenderingContext.isUsingDefaultTemplate() )
+        {
+            for ( String line : getDefaultTemplateResources() )
+            {
+                InputStream is = getClass().getClassLoader().getResourceAsStream( RESOURCE_DIR + "/" + line );
 
-                        File outputFile = new File( outputDirectory, line );
+                if ( is == null )
+                {
+                    throw new IOException( "The resource " + line + " doesn't exist." );
+                }
 
-                        if ( outputFile.exists() )
-                        {
-                            // don't override existing content: avoids extra rewrite with same content or extra site
-                            // resource
-                            continue;
-                        }
+                File outputFile = new File( outputDirectory, line );
 
-                        if ( !outputFile.getParentFile().exists() )
-                        {
-                            outputFile.getParentFile().mkdirs();
-                        }
+                if ( outputFile.exists() )
+                {
+                    // don't override existing content: avoids extra rewrite with same content or extra site
+                    // resource
+                    IOUtil.close( is );
+                    continue;
+                }
 
-                        OutputStream os = null;
-                        try
-                        {
-                            // for the images
-                            os = new FileOutputStream( outputFile );
-                            IOUtil.copy( is, os );
-                        }
-                        finally
-                        {
-                            IOUtil.close( os );
-                        }
+                if ( !outputFile.getParentFile().exists() )
+                {
+                    outputFile.getParentFile().mkdirs();
+                }
 
-                        IOUtil.close( is );
-                    }
+                OutputStream os = null;
+                try
+                {
+                    // for the images
+                    os = new FileOutputStream( outputFile );
+                    IOUtil.copy( is, os );
                 }
                 finally
                 {
-                    IOUtil.close( reader );
-                    IOUtil.close( r );
+                    IOUtil.close( os );
+                    IOUtil.close( is );
                 }
             }
         }
@@ -1068,18 +1830,251 @@ public class DefaultSiteRenderer
         }
     }
 
-    private static void copyFileFromZip( ZipFile file, ZipEntry entry, File destFile )
-            throws IOException
+    /** {@inheritDoc} */
+    public void copyResources( SiteRenderingContext siteRenderingContext, SiteOutput output )
+        throws IOException
+    {
+        if ( output.getDirectory() != null )
+        {
+            // incremental skin resources extraction
+            copyResources( siteRenderingContext, output.getDirectory() );
+            return;
+        }
+
+        // files can't be replaced in every output: copy resources in precedence order, skipping existing files
+
+        // Copy extra site resources
+        for ( File siteDirectory : siteRenderingContext.getSiteDirectories() )
+        {
+            File resourcesDirectory = new File( siteDirectory, "resources" );
+
+            if ( resourcesDirectory.exists() )
+            {
+                DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setIncludes( new String[] { "**/**" } );
+                scanner.addDefaultExcludes();
+                scanner.setBasedir( resourcesDirectory );
+                scanner.scan();
+
+                for ( String name : scanner.getIncludedFiles() )
+                {
+                    String path = name.replace( File.separatorChar, '/' );
+
+                    if ( !output.exists( path ) )
+                    {
+                        copyToOutput( new FileInputStream( new File( resourcesDirectory, name ) ), output, path );
+                    }
+                }
+            }
+        }
+
+        if ( siteRenderingContext.getSkin() != null )
+        {
+            RegisteredSkin skin;
+            try
+            {
+                skin = skinRegistry.getSkin( siteRenderingContext.getSkin() );
+            }
+            catch ( RendererException e )
+            {
+                throw new IOException( e.getMessage(), e );
+            }
+
+            for ( ZipEntry entry : skin.getResourceEntries() )
+            {
+                if ( !entry.isDirectory() && !output.exists( entry.getName() ) )
+                {
+                    copyToOutput( skin.getZipFile().getInputStream( entry ), output, entry.getName() );
+                }
+            }
+        }
+
+        if ( siteRenderingContext.isUsingDefaultTemplate() )
+        {
+            for ( String line : getDefaultTemplateResources() )
+            {
+                InputStream is = getClass().getClassLoader().getResourceAsStream( RESOURCE_DIR + "/" + line );
+
+                if ( is == null )
+                {
+                    throw new IOException( "The resource " + line + " doesn't exist." );
+                }
+
+                if ( output.exists( line ) )
+                {
+                    IOUtil.close( is );
+                    continue;
+                }
+
+                copyToOutput( is, output, line );
+            }
+        }
+
+        if ( !output.exists( "css/site.css" ) )
+        {
+            // If the file is not there - create a file that is not 0 bytes, DOXIA-86 and DOXIA-290
+            Writer writer = null;
+            try
+            {
+                writer = WriterFactory.newWriter( output.newOutputStream( "css/site.css" ),
+                                                  siteRenderingContext.getOutputEncoding() );
+                writer.write( "/* You can override this file with your own styles */"  );
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
+        }
+    }
+
+    /**
+     * Copy a stream to a site output file, then close it.
+     */
+    private static void copyToOutput( InputStream is, SiteOutput output, String path )
+        throws IOException
+    {
+        OutputStream os = null;
+        try
+        {
+            os = output.newOutputStream( path );
+            IOUtil.copy( is, os );
+            os.close();
+            os = null;
+        }
+        finally
+        {
+            IOUtil.close( os );
+            IOUtil.close( is );
+        }
+    }
+
+    /**
+     * Read the list of resources used by the default site template.
+     *
+     * @return the resources paths, relative to the resources directory
+     */
+    private List<String> getDefaultTemplateResources()
+        throws IOException
+    {
+        List<String> resources = new ArrayList<String>();
+
+        InputStream resourceList = getClass().getClassLoader().getResourceAsStream( RESOURCE_DIR + "/resources.txt" );
+
+        if ( resourceList != null )
+        {
+            Reader r = null;
+            LineNumberReader reader = null;
+            try
+            {
+                r = ReaderFactory.newReader( resourceList, ReaderFactory.UTF_8 );
+                reader = new LineNumberReader( r );
+
+                String line;
+
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    if ( !line.startsWith( "#" ) && line.trim().length() != 0 )
+                    {
+                        resources.add( line );
+                    }
+                }
+            }
+            finally
+            {
+                IOUtil.close( reader );
+                IOUtil.close( r );
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * Extract skin resources that changed since last extraction to the output directory, concurrently.
+     */
+    private void copySkinResources( Artifact skin, File outputDirectory, File stateDirectory )
+        throws IOException
+    {
+        FlightRecorderEvent event = COPY_SKIN_RESOURCES_EVENT.begin( skin.getId(), null );
+        try
+        {
+            extractSkinResources( skin, outputDirectory, stateDirectory );
+        }
+        finally
+        {
+            event.commit();
+        }
+    }
+
+    private void extractSkinResources( Artifact skin, File outputDirectory, File stateDirectory )
+        throws IOException
     {
-        FileOutputStream fos = new FileOutputStream( destFile );
+        final SkinResourcesExtractor extractor;
+        try
+        {
+            extractor = new SkinResourcesExtractor( skinRegistry.getSkin( skin ), outputDirectory, stateDirectory );
+        }
+        catch ( RendererException e )
+        {
+            throw new IOException( e.getMessage(), e );
+        }
+
+        List<ZipEntry> entries = extractor.getModifiedEntries();
+
+        if ( getLogger().isDebugEnabled() )
+        {
+            getLogger().debug( "Extracting " + entries.size() + " modified resources from skin " + skin.getId() );
+        }
+
+        int threads = Math.min( entries.size(), Runtime.getRuntime().availableProcessors() );
 
         try
         {
-            IOUtil.copy( file.getInputStream( entry ), fos );
+            if ( threads <= 1 )
+            {
+                for ( ZipEntry entry : entries )
+                {
+                    extractor.extract( entry );
+                }
+                return;
+            }
+
+            List<Future<?>> tasks = new ArrayList<Future<?>>( entries.size() );
+            try
+            {
+                ExecutorService executor = getWorkerExecutor();
+
+                for ( final ZipEntry entry : entries )
+                {
+                    tasks.add( executor.submit( new Callable<Void>()
+                    {
+                        public Void call()
+                            throws IOException
+                        {
+                            extractor.extract( entry );
+                            return null;
+                        }
+                    } ) );
+                }
+
+                for ( Future<?> task : tasks )
+                {
+                    waitFor( task, "skin resources extraction" );
+                }
+            }
+            catch ( RendererException e )
+            {
+                throw new IOException( e.getMessage(), e );
+            }
+            finally
+            {
+                cancel( tasks );
+            }
         }
         finally
         {
-            IOUtil.close( fos );
+            // record entries extracted, even on failure
+            extractor.save();
         }
     }
 
@@ -1120,23 +2115,29 @@ public class DefaultSiteRenderer
         }
     }
 
-    private Reader validate( Reader source, String resource )
-            throws ParseException, IOException
+    private ValidatingReader validate( Reader source, String resource )
+        throws IOException
     {
         getLogger().debug( "Validating: " + resource );
 
-        try
-        {
-            String content = IOUtil.toString( new BufferedReader( source ) );
-
-            new XmlValidator( new PlexusLoggerWrapper( getLogger() ) ).validate( content );
+        return new ValidatingReader( source, resource, getEntityCatalog(), new PlexusLoggerWrapper( getLogger() ) );
+    }
 
-            return new StringReader( content );
-        }
-        finally
+    /**
+     * Get the offline catalog of DTDs and schemas used for validation, shared by every rendered document.
+     *
+     * @return the entity catalog
+     * @throws IOException if the catalog can't be loaded
+     * @since 1.8.2
+     */
+    protected synchronized EntityCatalog getEntityCatalog()
+        throws IOException
+    {
+        if ( entityCatalog == null )
         {
-            IOUtil.close( source );
+            entityCatalog = new EntityCatalog();
         }
+        return entityCatalog;
     }
 
     // TODO replace with StringUtils.endsWithIgnoreCase() from maven-shared-utils 0.7
@@ -1150,7 +2151,7 @@ public class DefaultSiteRenderer
         return str.regionMatches( true, str.length() - searchStr.length(), searchStr, 0, searchStr.length() );
     }
 
-    private static ZipFile getZipFile( File file )
+    static ZipFile getZipFile( File file )
         throws IOException
     {
         if ( file == null )
@@ -1171,7 +2172,7 @@ public class DefaultSiteRenderer
         }
     }
 
-    private static void closeZipFile( ZipFile zipFile )
+    static void closeZipFile( ZipFile zipFile )
     {
         // TODO: move to plexus utils
         try
@@ -1183,4 +2184,147 @@ public class DefaultSiteRenderer
             // ignore
         }
     }
+
+    /**
+     * Velocity tool manager configured for a site, with the site values used in tools configuration.
+     */
+    private static class SiteToolManager
+        extends ToolManager
+    {
+        private final Locale locale;
+
+        private final String dateFormat;
+
+        SiteToolManager( Locale locale, String dateFormat )
+        {
+            super( false, false );
+            this.locale = locale;
+            this.dateFormat = dateFormat;
+        }
+
+        boolean isConfiguredFor( Locale locale, String dateFormat )
+        {
+            return Objects.equals( this.locale, locale ) && Objects.equals( this.dateFormat, dateFormat );
+        }
+
+        /**
+         * Create the context of a document, chained to site values.
+         *
+         * @param siteValues values shared by every document of the site
+         * @return a context with request-scoped tools of its own
+         */
+        ToolContext createDocumentContext( Map<String, Object> siteValues )
+        {
+            ToolContext context = new DocumentToolContext( siteValues );
+            prepareContext( context );
+            return context;
+        }
+    }
+
+    /**
+     * Velocity tools context of a document: values put in the context are looked up first, then site values shared
+     * by every document of the site, then tools, without copying site values to every document context.
+     */
+    private static class DocumentToolContext
+        extends ToolContext
+    {
+        private final Map<String, Object> siteValues;
+
+        DocumentToolContext( Map<String, Object> siteValues )
+        {
+            this.siteValues = siteValues;
+        }
+
+        @Override
+        protected Object internalGet( String key )
+        {
+            Object value = super.internalGet( key );
+            return ( value == null ) ? siteValues.get( key ) : value;
+        }
+
+        @Override
+        public Set<String> keySet()
+        {
+            Set<String> keys = super.keySet();
+            keys.addAll( siteValues.keySet() );
+            return keys;
+        }
+    }
+
+    /**
+     * Velocity data that is the same for every document of a site, computed once per rendering of the site.
+     */
+    private static class SiteVelocityData
+    {
+        private final Map<String, Object> values;
+
+        private final SiteToolManager toolManager;
+
+        private final DateFormat dateFormat;
+
+        SiteVelocityData( SiteRenderingContext siteRenderingContext, Map<String, Object> values,
+                          SiteToolManager toolManager )
+        {
+            this.values = values;
+            this.toolManager = toolManager;
+
+            PublishDate publishDate = siteRenderingContext.getDecoration().getPublishDate();
+            this.dateFormat = new SimpleDateFormat( publishDate.getFormat(), siteRenderingContext.getLocale() );
+        }
+
+        Map<String, Object> getValues()
+        {
+            return values;
+        }
+
+        Context createContext()
+        {
+            return toolManager.createDocumentContext( values );
+        }
+
+        DateFormat newDateFormat()
+        {
+            return (DateFormat) dateFormat.clone();
+        }
+    }
+
+    /**
+     * Creates daemon rendering threads. New threads inherit the context classloader of the thread creating them,
+     * ie the one calling {@link #render(Collection, SiteRenderingContext, File)}.
+     */
+    private static class RenderingThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final String prefix;
+
+        RenderingThreadFactory( String stage )
+        {
+            this.prefix = "doxia-site-renderer-" + stage + "-";
+        }
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, prefix + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+    /**
+     * A document to render, with its inputs fingerprint.
+     */
+    private static class OutputDocument
+    {
+        private final DocumentRenderer docRenderer;
+
+        private final String fingerprint;
+
+        OutputDocument( DocumentRenderer docRenderer, String fingerprint )
+        {
+            this.docRenderer = docRenderer;
+            this.fingerprint = fingerprint;
+        }
+    }
 }
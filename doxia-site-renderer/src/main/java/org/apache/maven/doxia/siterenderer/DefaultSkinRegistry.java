@@ -0,0 +1,254 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.Restriction;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.doxia.site.skin.SkinModel;
+import org.apache.maven.doxia.site.skin.io.xpp3.SkinXpp3Reader;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * <p>DefaultSkinRegistry class.</p>
+ *
+ * @since 1.8.2
+ */
+@Component( role = SkinRegistry.class )
+public class DefaultSkinRegistry
+    extends AbstractLogEnabled
+    implements SkinRegistry, Disposable
+{
+    private static final String SKIN_TEMPLATE_LOCATION = "META-INF/maven/site.vm";
+
+    /**
+     * Registered skins, by absolute file path.
+     */
+    private final Map<String, RegisteredSkin> skins = new HashMap<String, RegisteredSkin>();
+
+    /**
+     * Skins replaced by a new content, that may still be used by previously created site rendering contexts.
+     */
+    private final List<RegisteredSkin> replacedSkins = new ArrayList<RegisteredSkin>();
+
+    /** {@inheritDoc} */
+    public synchronized RegisteredSkin getSkin( Artifact skin )
+        throws IOException, RendererException
+    {
+        File file = skin.getFile();
+        if ( file == null )
+        {
+            throw new IOException( "Error opening ZipFile: null" );
+        }
+
+        String key = file.getAbsolutePath();
+        RegisteredSkin registeredSkin = skins.get( key );
+
+        if ( registeredSkin != null && !registeredSkin.isSameFileStamp() )
+        {
+            if ( RenderManifest.digest( file ).equals( registeredSkin.getChecksum() ) )
+            {
+                registeredSkin.updateFileStamp();
+            }
+            else
+            {
+                if ( getLogger().isDebugEnabled() )
+                {
+                    getLogger().debug( "Skin " + skin.getId() + " content changed, opening it again" );
+                }
+
+                skins.remove( key );
+                replacedSkins.add( registeredSkin );
+                registeredSkin = null;
+            }
+        }
+
+        if ( registeredSkin == null )
+        {
+            registeredSkin = openSkin( skin );
+            skins.put( key, registeredSkin );
+        }
+
+        if ( registeredSkin.getPrerequisiteError() != null )
+        {
+            throw new RendererException( registeredSkin.getPrerequisiteError() );
+        }
+
+        return registeredSkin;
+    }
+
+    private RegisteredSkin openSkin( Artifact skin )
+        throws IOException, RendererException
+    {
+        File file = skin.getFile();
+
+        if ( getLogger().isDebugEnabled() )
+        {
+            getLogger().debug( "Opening skin " + skin.getId() + " from " + file );
+        }
+
+        String checksum = RenderManifest.digest( file );
+        ZipFile zipFile = DefaultSiteRenderer.getZipFile( file );
+        URLClassLoader templateClassLoader = null;
+        InputStream in = null;
+        boolean registered = false;
+
+        try
+        {
+            if ( zipFile.getEntry( SKIN_TEMPLATE_LOCATION ) != null )
+            {
+                templateClassLoader = new URLClassLoader( new URL[]{file.toURI().toURL()} );
+            }
+
+            SkinModel skinModel = null;
+            String prerequisiteError = null;
+
+            ZipEntry skinDescriptorEntry = zipFile.getEntry( SkinModel.SKIN_DESCRIPTOR_LOCATION );
+            if ( skinDescriptorEntry != null )
+            {
+                in = zipFile.getInputStream( skinDescriptorEntry );
+
+                skinModel = new SkinXpp3Reader().read( in );
+
+                String toolsPrerequisite =
+                    skinModel.getPrerequisites() == null ? null : skinModel.getPrerequisites().getDoxiaSitetools();
+
+                Package p = DefaultSiteRenderer.class.getPackage();
+                String current = ( p == null ) ? null : p.getImplementationVersion();
+
+                if ( StringUtils.isNotBlank( toolsPrerequisite ) && ( current != null )
+                    && !matchVersion( current, toolsPrerequisite ) )
+                {
+                    prerequisiteError = "Cannot use skin: has " + toolsPrerequisite
+                        + " Doxia Sitetools prerequisite, but current is " + current;
+                }
+            }
+
+            RegisteredSkin registeredSkin =
+                new RegisteredSkin( file, checksum, zipFile, skinModel, templateClassLoader, prerequisiteError );
+            registered = true;
+            return registeredSkin;
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new RendererException( "Failed to parse " + SkinModel.SKIN_DESCRIPTOR_LOCATION
+                + " skin descriptor from " + skin.getId() + " skin", e );
+        }
+        finally
+        {
+            IOUtil.close( in );
+
+            if ( !registered )
+            {
+                DefaultSiteRenderer.closeZipFile( zipFile );
+                if ( templateClassLoader != null )
+                {
+                    templateClassLoader.close();
+                }
+            }
+        }
+    }
+
+    boolean matchVersion( String current, String prerequisite )
+        throws RendererException
+    {
+        try
+        {
+            ArtifactVersion v = new DefaultArtifactVersion( current );
+            VersionRange vr = VersionRange.createFromVersionSpec( prerequisite );
+
+            boolean matched = false;
+            ArtifactVersion recommendedVersion = vr.getRecommendedVersion();
+            if ( recommendedVersion == null )
+            {
+                List<Restriction> restrictions = vr.getRestrictions();
+                for ( Restriction restriction : restrictions )
+                {
+                    if ( restriction.containsVersion( v ) )
+                    {
+                        matched = true;
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                // only singular versions ever have a recommendedVersion
+                @SuppressWarnings( "unchecked" )
+                int compareTo = recommendedVersion.compareTo( v );
+                matched = ( compareTo <= 0 );
+            }
+
+            if ( getLogger().isDebugEnabled() )
+            {
+                getLogger().debug( "Skin doxia-sitetools prerequisite: " + prerequisite + ", current: " + current
+                    + ", matched = " + matched );
+            }
+
+            return matched;
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            throw new RendererException( "Invalid skin doxia-sitetools prerequisite: " + prerequisite, e );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void close()
+    {
+        for ( RegisteredSkin registeredSkin : skins.values() )
+        {
+            registeredSkin.close();
+        }
+        skins.clear();
+
+        for ( RegisteredSkin registeredSkin : replacedSkins )
+        {
+            registeredSkin.close();
+        }
+        replacedSkins.clear();
+    }
+
+    /** {@inheritDoc} */
+    public void dispose()
+    {
+        close();
+    }
+}
@@ -0,0 +1,391 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.doxia.parser.module.ParserModule;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Scanner of Doxia source documents in a directory, in one file tree walk for every parser module source directory
+ * inside it. Every file is dispatched to its parser module with a precomputed lookup of the modules extensions, and
+ * excludes (with default excludes) are applied during the walk: excluded subtrees are not even visited.
+ * <p>
+ * Found documents are the same as <code>FileUtils.getFileNames( moduleBasedir, "**&#47;*.*", excludes, false )</code>
+ * filtered by extension, ignoring case, for every module.
+ * </p>
+ *
+ * @since 1.8.2
+ */
+class DocumentFilesScanner
+{
+    private static final String VELOCITY_EXTENSION = "vm";
+
+    private final File directory;
+
+    private final List<ModuleFiles> modules = new ArrayList<ModuleFiles>();
+
+    /**
+     * Create a scanner.
+     *
+     * @param directory the directory to walk
+     */
+    DocumentFilesScanner( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the directory to walk.
+     *
+     * @return the directory
+     */
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Add a parser module to scan documents for.
+     *
+     * @param module the parser module
+     * @param moduleBasedir the module source directory, inside the directory to walk
+     * @param excludes comma separated exclude patterns, relative to the module source directory, or <code>null</code>
+     * @return the module documents, available once scanned
+     */
+    ModuleFiles addModule( ParserModule module, File moduleBasedir, String excludes )
+    {
+        ModuleFiles moduleFiles = new ModuleFiles( module, moduleBasedir, excludes );
+        modules.add( moduleFiles );
+        return moduleFiles;
+    }
+
+    /**
+     * Get the modules, in the order they were added.
+     *
+     * @return the modules
+     */
+    List<ModuleFiles> getModules()
+    {
+        return modules;
+    }
+
+    /**
+     * Walk the directory to find the documents of every module.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void scan()
+        throws IOException
+    {
+        final Map<Path, List<ModuleFiles>> basedirs = new HashMap<Path, List<ModuleFiles>>();
+        for ( ModuleFiles moduleFiles : modules )
+        {
+            Path basedir = moduleFiles.basedir.toPath().toAbsolutePath().normalize();
+
+            List<ModuleFiles> basedirModules = basedirs.get( basedir );
+            if ( basedirModules == null )
+            {
+                basedirModules = new ArrayList<ModuleFiles>( 1 );
+                basedirs.put( basedir, basedirModules );
+            }
+            basedirModules.add( moduleFiles );
+        }
+
+        Path start = directory.toPath().toAbsolutePath().normalize();
+        if ( basedirs.isEmpty() || !Files.isDirectory( start ) )
+        {
+            return;
+        }
+
+        Files.walkFileTree( start, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                            new ScanningVisitor( basedirs ) );
+    }
+
+    /**
+     * File visitor that dispatches files to the modules whose source directory is being walked.
+     */
+    private static class ScanningVisitor
+        extends SimpleFileVisitor<Path>
+    {
+        private final Map<Path, List<ModuleFiles>> basedirs;
+
+        /** modules whose source directory contains the current directory, with that source directory */
+        private final LinkedList<ActiveModule> activeModules = new LinkedList<ActiveModule>();
+
+        ScanningVisitor( Map<Path, List<ModuleFiles>> basedirs )
+        {
+            this.basedirs = basedirs;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+        {
+            List<ModuleFiles> dirModules = basedirs.get( dir );
+            if ( dirModules != null )
+            {
+                for ( ModuleFiles moduleFiles : dirModules )
+                {
+                    activeModules.add( new ActiveModule( dir, moduleFiles ) );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            for ( ActiveModule active : activeModules )
+            {
+                if ( !active.moduleFiles.isExcludedDirectory( active.basedir.relativize( dir ).toString() ) )
+                {
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+
+            // no module needs files from this directory: only walk it if it leads to a module source directory
+            for ( Path basedir : basedirs.keySet() )
+            {
+                if ( basedir.startsWith( dir ) )
+                {
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+        {
+            for ( ActiveModule active : activeModules )
+            {
+                active.moduleFiles.addFile( active.basedir.relativize( file ).toString() );
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed( Path file, IOException exc )
+            throws IOException
+        {
+            if ( exc instanceof FileSystemLoopException )
+            {
+                // symbolic link loop: the directory was already walked
+                return FileVisitResult.CONTINUE;
+            }
+            throw exc;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory( Path dir, IOException exc )
+            throws IOException
+        {
+            if ( exc != null )
+            {
+                throw exc;
+            }
+
+            while ( !activeModules.isEmpty() && activeModules.getLast().basedir.equals( dir ) )
+            {
+                activeModules.removeLast();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * A module whose source directory is being walked.
+     */
+    private static class ActiveModule
+    {
+        private final Path basedir;
+
+        private final ModuleFiles moduleFiles;
+
+        ActiveModule( Path basedir, ModuleFiles moduleFiles )
+        {
+            this.basedir = basedir;
+            this.moduleFiles = moduleFiles;
+        }
+    }
+
+    /**
+     * Documents of a parser module, by extension.
+     */
+    static class ModuleFiles
+    {
+        private final ParserModule module;
+
+        private final File basedir;
+
+        private final String[] excludes;
+
+        /** module extensions, by case-folded extension */
+        private final Map<String, String> extensions = new HashMap<String, String>();
+
+        private final Map<String, List<String>> documents = new LinkedHashMap<String, List<String>>();
+
+        private final Map<String, List<String>> velocityDocuments = new LinkedHashMap<String, List<String>>();
+
+        ModuleFiles( ParserModule module, File basedir, String excludes )
+        {
+            this.module = module;
+            this.basedir = basedir;
+            this.excludes = getExcludes( excludes );
+
+            for ( String extension : module.getExtensions() )
+            {
+                extensions.put( DefaultSiteRenderer.caseFold( extension ), extension );
+                documents.put( extension, new ArrayList<String>() );
+                velocityDocuments.put( extension, new ArrayList<String>() );
+            }
+        }
+
+        private static String[] getExcludes( String excludes )
+        {
+            List<String> patterns = new ArrayList<String>();
+            Collections.addAll( patterns, FileUtils.getDefaultExcludes() );
+            if ( excludes != null )
+            {
+                Collections.addAll( patterns, StringUtils.split( excludes, "," ) );
+            }
+
+            // same normalization as DirectoryScanner
+            String[] normalized = new String[patterns.size()];
+            for ( int i = 0; i < normalized.length; i++ )
+            {
+                String pattern = patterns.get( i ).trim().replace( '/', File.separatorChar )
+                    .replace( '\\', File.separatorChar );
+                if ( pattern.endsWith( File.separator ) )
+                {
+                    pattern += "**";
+                }
+                normalized[i] = pattern;
+            }
+            return normalized;
+        }
+
+        ParserModule getModule()
+        {
+            return module;
+        }
+
+        File getBasedir()
+        {
+            return basedir;
+        }
+
+        /**
+         * Get the documents found for an extension, in walk order.
+         *
+         * @param extension the module extension
+         * @return the documents names, relative to the module source directory
+         */
+        List<String> getDocuments( String extension )
+        {
+            return documents.get( extension );
+        }
+
+        /**
+         * Get the Velocity documents found for an extension, ie with an additional <code>.vm</code> extension.
+         *
+         * @param extension the module extension
+         * @return the documents names, relative to the module source directory
+         */
+        List<String> getVelocityDocuments( String extension )
+        {
+            return velocityDocuments.get( extension );
+        }
+
+        /**
+         * Check if every path in a directory is excluded, ie the directory doesn't need to be walked.
+         */
+        boolean isExcludedDirectory( String path )
+        {
+            for ( String exclude : excludes )
+            {
+                if ( exclude.endsWith( File.separator + "**" ) && SelectorUtils.matchPath( exclude, path, true ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isExcluded( String path )
+        {
+            for ( String exclude : excludes )
+            {
+                if ( SelectorUtils.matchPath( exclude, path, true ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addFile( String path )
+        {
+            String name = path.substring( path.lastIndexOf( File.separatorChar ) + 1 );
+            String foldedName = DefaultSiteRenderer.caseFold( name );
+
+            // try every suffix, from the longest one: extensions may contain dots
+            for ( int dot = foldedName.indexOf( '.' ); dot >= 0; dot = foldedName.indexOf( '.', dot + 1 ) )
+            {
+                String suffix = foldedName.substring( dot + 1 );
+
+                String extension = extensions.get( suffix );
+                List<String> target = documents.get( extension );
+
+                if ( extension == null && suffix.endsWith( "." + VELOCITY_EXTENSION ) )
+                {
+                    extension =
+                        extensions.get( suffix.substring( 0, suffix.length() - VELOCITY_EXTENSION.length() - 1 ) );
+                    target = velocityDocuments.get( extension );
+                }
+
+                if ( extension != null )
+                {
+                    if ( !isExcluded( path ) )
+                    {
+                        target.add( path );
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>Offline catalog of the DTDs, entities and XSDs used to validate XML sources. Entities are mapped by public or
+ * system identifier to a location, and their content is kept in memory once loaded: every document and every thread
+ * gets it from memory afterwards.</p>
+ * <p>The catalog is made of every <code>META-INF/doxia/entity-catalog.properties</code> found in the classpath, that
+ * map identifiers to classpath resources: Doxia Sitetools bundles XHTML 1.0 Transitional DTD and entities and maps
+ * Doxia modules schemas, other jars can add their own entries. Entries can also be added with
+ * {@link #addEntity(String, URL)}.</p>
+ * <p>An identifier that is not in the catalog is searched in the classpath by file name, then read if local.
+ * The catalog never downloads: a remote entity that can't be found fails immediately.</p>
+ *
+ * @since 1.8.2
+ */
+public class EntityCatalog
+    implements EntityResolver
+{
+    /**
+     * Location of catalog files in the classpath.
+     */
+    public static final String CATALOG_LOCATION = "META-INF/doxia/entity-catalog.properties";
+
+    private final ClassLoader classLoader;
+
+    /** Entity locations, by public or system identifier. */
+    private final Map<String, URL> locations = new ConcurrentHashMap<String, URL>();
+
+    /** Loaded entities content, by location. */
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create a catalog from the catalog files found in the classpath of this class.
+     *
+     * @throws IOException if a catalog file can't be read
+     */
+    public EntityCatalog()
+        throws IOException
+    {
+        this( EntityCatalog.class.getClassLoader() );
+    }
+
+    /**
+     * Create a catalog from the catalog files found in a classpath.
+     *
+     * @param classLoader the classloader to load catalog files and entities from
+     * @throws IOException if a catalog file can't be read
+     */
+    public EntityCatalog( ClassLoader classLoader )
+        throws IOException
+    {
+        this.classLoader = classLoader;
+
+        for ( Enumeration<URL> e = classLoader.getResources( CATALOG_LOCATION ); e.hasMoreElements(); )
+        {
+            URL catalog = e.nextElement();
+
+            Properties entries = new Properties();
+            InputStream in = null;
+            try
+            {
+                in = catalog.openStream();
+                entries.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+
+            for ( String id : entries.stringPropertyNames() )
+            {
+                URL location = classLoader.getResource( entries.getProperty( id ) );
+                if ( location != null && !locations.containsKey( id ) )
+                {
+                    // first catalog in the classpath wins
+                    locations.put( id, location );
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an entity to the catalog, replacing any previous location for the same identifier.
+     *
+     * @param id the entity public or system identifier
+     * @param location the entity location
+     */
+    public void addEntity( String id, URL location )
+    {
+        locations.put( id, location );
+    }
+
+    /**
+     * Get the number of entities resolved from memory.
+     *
+     * @return the hit count
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of entities that had to be loaded.
+     *
+     * @return the miss count
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /** {@inheritDoc} */
+    public InputSource resolveEntity( String publicId, String systemId )
+        throws SAXException, IOException
+    {
+        URL location = getLocation( publicId, systemId );
+
+        String key = location.toExternalForm();
+        byte[] content = contents.get( key );
+        if ( content == null )
+        {
+            missCount.incrementAndGet();
+
+            InputStream in = null;
+            try
+            {
+                in = location.openStream();
+                content = IOUtil.toByteArray( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+
+            contents.put( key, content );
+        }
+        else
+        {
+            hitCount.incrementAndGet();
+        }
+
+        InputSource source = new InputSource( new ByteArrayInputStream( content ) );
+        source.setPublicId( publicId );
+        // keep the system identifier: relative references are resolved from it
+        source.setSystemId( systemId );
+        return source;
+    }
+
+    private URL getLocation( String publicId, String systemId )
+        throws SAXException
+    {
+        URL location = ( publicId == null ) ? null : locations.get( publicId );
+        if ( location == null && systemId != null )
+        {
+            location = locations.get( systemId );
+        }
+        if ( location != null )
+        {
+            return location;
+        }
+
+        if ( systemId == null )
+        {
+            throw new SAXException( "Entity " + publicId + " not found in entity catalog" );
+        }
+
+        // same name lookup in the classpath as Doxia CachedFileEntityResolver
+        String name = systemId.substring( systemId.lastIndexOf( '/' ) + 1 );
+        if ( StringUtils.isNotEmpty( name ) )
+        {
+            location = classLoader.getResource( name );
+            if ( location != null )
+            {
+                return location;
+            }
+        }
+
+        String protocol = systemId.substring( 0, Math.max( 0, systemId.indexOf( ':' ) ) ).toLowerCase( Locale.ENGLISH );
+        if ( "file".equals( protocol ) || "jar".equals( protocol ) )
+        {
+            try
+            {
+                return new URL( systemId );
+            }
+            catch ( MalformedURLException e )
+            {
+                throw new SAXException( "Invalid entity system identifier " + systemId, e );
+            }
+        }
+
+        throw new SAXException( "Entity " + ( ( publicId == null ) ? systemId : publicId + " " + systemId )
+            + " not found in entity catalog, remote resolution is disabled: add it to a " + CATALOG_LOCATION
+            + " catalog file" );
+    }
+}
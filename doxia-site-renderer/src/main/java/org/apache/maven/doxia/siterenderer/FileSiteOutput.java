@@ -0,0 +1,76 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Site output to a directory of the filesystem.
+ *
+ * @since 1.8.2
+ */
+public class FileSiteOutput
+    implements SiteOutput
+{
+    private final File directory;
+
+    /**
+     * @param directory the output directory
+     */
+    public FileSiteOutput( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /** {@inheritDoc} */
+    public OutputStream newOutputStream( String path )
+        throws IOException
+    {
+        File file = new File( directory, path );
+        if ( !file.getParentFile().exists() )
+        {
+            file.getParentFile().mkdirs();
+        }
+        return new FileOutputStream( file );
+    }
+
+    /** {@inheritDoc} */
+    public boolean exists( String path )
+    {
+        return new File( directory, path ).exists();
+    }
+
+    /** {@inheritDoc} */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Nothing to close: each file is closed once written.
+     */
+    public void close()
+    {
+        // nop
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Site output kept in memory, for tests or to serve a site without writing it.
+ *
+ * @since 1.8.2
+ */
+public class MemorySiteOutput
+    implements SiteOutput
+{
+    private final Map<String, byte[]> files = new TreeMap<String, byte[]>();
+
+    /**
+     * {@inheritDoc}
+     *
+     * The file content is available once the stream is closed.
+     */
+    public OutputStream newOutputStream( final String path )
+    {
+        return new ByteArrayOutputStream()
+        {
+            @Override
+            public void close()
+            {
+                synchronized ( files )
+                {
+                    files.put( path, toByteArray() );
+                }
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    public boolean exists( String path )
+    {
+        synchronized ( files )
+        {
+            return files.containsKey( path );
+        }
+    }
+
+    /**
+     * @return <code>null</code>: files are kept in memory
+     */
+    public File getDirectory()
+    {
+        return null;
+    }
+
+    /**
+     * Get the content of a file.
+     *
+     * @param path the file path
+     * @return the file content, or <code>null</code> if the file does not exist
+     */
+    public byte[] getContent( String path )
+    {
+        synchronized ( files )
+        {
+            return files.get( path );
+        }
+    }
+
+    /**
+     * @return the paths of the files written, sorted
+     */
+    public Set<String> getPaths()
+    {
+        synchronized ( files )
+        {
+            return Collections.unmodifiableSet( new TreeSet<String>( files.keySet() ) );
+        }
+    }
+
+    /**
+     * Nothing to close: content stays available.
+     */
+    public void close()
+    {
+        // nop
+    }
+}
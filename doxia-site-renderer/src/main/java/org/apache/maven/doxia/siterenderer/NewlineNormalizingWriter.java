@@ -0,0 +1,229 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Buffered writer that replaces newlines (<code>\n</code> and <code>\r\n</code>) with a line separator while
+ * writing, ie the streaming equivalent of <code>content.replaceAll( "\r?\n", lineSeparator )</code>.
+ * A <code>\r</code> not followed by <code>\n</code> is kept as-is.
+ * <p>
+ * The last <code>\r</code> written can only be output once the next character is known:
+ * {@link #close()} must be called to output it.
+ * </p>
+ *
+ * @since 1.8.2
+ */
+class NewlineNormalizingWriter
+    extends Writer
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer out;
+
+    private final char[] lineSeparator;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int count;
+
+    private boolean pendingCarriageReturn;
+
+    /**
+     * Construct a newline normalizing writer.
+     *
+     * @param out the writer to write normalized content to
+     * @param lineSeparator the line separator to use for newlines
+     */
+    NewlineNormalizingWriter( Writer out, String lineSeparator )
+    {
+        this.out = out;
+        this.lineSeparator = lineSeparator.toCharArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( int c )
+        throws IOException
+    {
+        if ( pendingCarriageReturn )
+        {
+            pendingCarriageReturn = false;
+
+            if ( c == '\n' )
+            {
+                put( lineSeparator, 0, lineSeparator.length );
+                return;
+            }
+
+            put( '\r' );
+        }
+
+        if ( c == '\r' )
+        {
+            pendingCarriageReturn = true;
+        }
+        else if ( c == '\n' )
+        {
+            put( lineSeparator, 0, lineSeparator.length );
+        }
+        else
+        {
+            put( (char) c );
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
+        {
+            char c = cbuf[i];
+
+            if ( c == '\r' || c == '\n' || pendingCarriageReturn )
+            {
+                put( cbuf, start, i - start );
+                write( c );
+                start = i + 1;
+            }
+        }
+
+        put( cbuf, start, end - start );
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( String str, int off, int len )
+        throws IOException
+    {
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
+        {
+            char c = str.charAt( i );
+
+            if ( c == '\r' || c == '\n' || pendingCarriageReturn )
+            {
+                put( str, start, i - start );
+                write( c );
+                start = i + 1;
+            }
+        }
+
+        put( str, start, end - start );
+    }
+
+    private void put( char c )
+        throws IOException
+    {
+        if ( count == BUFFER_SIZE )
+        {
+            flushBuffer();
+        }
+        buffer[count++] = c;
+    }
+
+    private void put( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        if ( len >= BUFFER_SIZE )
+        {
+            // large block: no need to copy it to buffer
+            flushBuffer();
+            out.write( cbuf, off, len );
+            return;
+        }
+
+        if ( len > BUFFER_SIZE - count )
+        {
+            flushBuffer();
+        }
+        System.arraycopy( cbuf, off, buffer, count, len );
+        count += len;
+    }
+
+    private void put( String str, int off, int len )
+        throws IOException
+    {
+        if ( len >= BUFFER_SIZE )
+        {
+            flushBuffer();
+            out.write( str, off, len );
+            return;
+        }
+
+        if ( len > BUFFER_SIZE - count )
+        {
+            flushBuffer();
+        }
+        str.getChars( off, off + len, buffer, count );
+        count += len;
+    }
+
+    private void flushBuffer()
+        throws IOException
+    {
+        if ( count > 0 )
+        {
+            out.write( buffer, 0, count );
+            count = 0;
+        }
+    }
+
+    /**
+     * Flush buffered content. A pending <code>\r</code> is not written, since it may be followed by a
+     * <code>\n</code>.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Write a pending <code>\r</code> and buffered content, then close the underlying writer.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( pendingCarriageReturn )
+        {
+            pendingCarriageReturn = false;
+            put( '\r' );
+        }
+        flushBuffer();
+        out.close();
+    }
+}
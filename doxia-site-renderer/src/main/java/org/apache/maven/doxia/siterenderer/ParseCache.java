@@ -0,0 +1,313 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Persistent cache of parsed Doxia documents: the content of the {@link SiteRendererSink} used to parse a document
+ * (title, authors, date, head and body) is stored in a cache directory, with a key made of the source content digest,
+ * the parser and the Doxia versions. As long as the key doesn't change, the document doesn't need to be parsed again
+ * to be merged into the site template, whatever other site inputs changed.
+ * Body <code>$relativePath</code> placeholders are stored unresolved.
+ *
+ * @since 1.8.2
+ */
+class ParseCache
+{
+    private static final String FORMAT = "doxia-parse-cache-1";
+
+    private static final String RELATIVE_PATH = "$relativePath";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File directory;
+
+    /**
+     * Create a parse cache.
+     *
+     * @param directory the cache directory
+     */
+    ParseCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Compute the cache key of a document.
+     *
+     * @param source the document source file
+     * @param parser the parser of the document
+     * @param inputEncoding the source encoding
+     * @param validate whether the document is validated while parsed: a result parsed without validation must not
+     *            hide validation errors
+     * @return the cache key
+     * @throws IOException if the source can't be read
+     */
+    static String getKey( File source, Parser parser, String inputEncoding, boolean validate )
+        throws IOException
+    {
+        return RenderManifest.digest( "source:" + RenderManifest.digest( source ) + " encoding:" + inputEncoding
+            + " validate:" + validate + " parser:" + parser.getClass().getName() + '|' + getVersion( parser.getClass() )
+            + " doxia:" + getVersion( Doxia.class ) + " sitetools:" + getVersion( SiteRendererSink.class ) );
+    }
+
+    private static String getVersion( Class<?> clazz )
+    {
+        Package p = clazz.getPackage();
+        String version = ( p == null ) ? null : p.getImplementationVersion();
+        if ( version != null )
+        {
+            return version;
+        }
+
+        // not a released jar: identify the code location and date instead
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if ( codeSource == null || codeSource.getLocation() == null )
+        {
+            return "unknown";
+        }
+        File file = FileUtils.toFile( codeSource.getLocation() );
+        return codeSource.getLocation().toExternalForm() + ( ( file == null ) ? "" : "@" + file.lastModified() );
+    }
+
+    private File getEntryFile( RenderingContext renderingContext )
+    {
+        File source = new File( renderingContext.getBasedir(), renderingContext.getInputName() );
+        return new File( directory, RenderManifest.digest( source.getAbsolutePath() ) + ".cache" );
+    }
+
+    /**
+     * Load the cached content of a document.
+     *
+     * @param renderingContext the document rendering context
+     * @param key the current cache key of the document
+     * @return the cached document content, or <code>null</code> if none was stored for this key
+     * @throws IOException if the cache entry is not readable
+     */
+    DocumentContent load( RenderingContext renderingContext, String key )
+        throws IOException
+    {
+        File entry = getEntryFile( renderingContext );
+        if ( !entry.isFile() )
+        {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( entry ) ) );
+
+            if ( !FORMAT.equals( in.readUTF() ) || !key.equals( in.readUTF() ) )
+            {
+                return null;
+            }
+
+            String title = readString( in );
+            String date = readString( in );
+            List<String> authors = new ArrayList<String>();
+            for ( int i = in.readInt(); i > 0; i-- )
+            {
+                authors.add( readString( in ) );
+            }
+            String head = readString( in );
+            // body is the rest of the entry
+            String body = IOUtil.toString( in, UTF_8 );
+
+            return new CachedDocumentContent( title, date, Collections.unmodifiableList( authors ), head, body,
+                                              renderingContext );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Store the content of a parsed document.
+     *
+     * @param renderingContext the document rendering context
+     * @param key the cache key of the document
+     * @param sink the sink the document was parsed to
+     * @throws IOException if the cache entry can't be written
+     */
+    void store( RenderingContext renderingContext, String key, SiteRendererSink sink )
+        throws IOException
+    {
+        File entry = getEntryFile( renderingContext );
+        directory.mkdirs();
+
+        // write to a temporary file first: a concurrent or interrupted build never sees a partial entry
+        File temp = File.createTempFile( entry.getName(), ".tmp", directory );
+        try
+        {
+            DataOutputStream out = null;
+            try
+            {
+                out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+
+                out.writeUTF( FORMAT );
+                out.writeUTF( key );
+                writeString( out, sink.getTitle() );
+                writeString( out, sink.getDate() );
+                List<String> authors = sink.getAuthors();
+                out.writeInt( ( authors == null ) ? 0 : authors.size() );
+                if ( authors != null )
+                {
+                    for ( String author : authors )
+                    {
+                        writeString( out, author );
+                    }
+                }
+                writeString( out, sink.getHead() );
+
+                Writer body = new OutputStreamWriter( out, UTF_8 );
+                sink.writeUnresolvedBody( body );
+                body.close();
+                out = null;
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+
+            if ( !temp.renameTo( entry ) && !( entry.delete() && temp.renameTo( entry ) ) )
+            {
+                throw new IOException( "Unable to write parse cache entry " + entry );
+            }
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    private static void writeString( DataOutputStream out, String value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            out.writeInt( -1 );
+        }
+        else
+        {
+            byte[] bytes = value.getBytes( UTF_8 );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    private static String readString( DataInputStream in )
+        throws IOException
+    {
+        int length = in.readInt();
+        if ( length < 0 )
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+
+    /**
+     * Document content loaded from the cache.
+     */
+    private static class CachedDocumentContent
+        implements DocumentContent
+    {
+        private final String title;
+
+        private final String date;
+
+        private final List<String> authors;
+
+        private final String head;
+
+        private final String body;
+
+        private final RenderingContext renderingContext;
+
+        CachedDocumentContent( String title, String date, List<String> authors, String head, String body,
+                               RenderingContext renderingContext )
+        {
+            this.title = title;
+            this.date = date;
+            this.authors = authors;
+            this.head = head;
+            this.body = body;
+            this.renderingContext = renderingContext;
+        }
+
+        public String getTitle()
+        {
+            return title;
+        }
+
+        public String getDate()
+        {
+            return date;
+        }
+
+        public List<String> getAuthors()
+        {
+            return authors;
+        }
+
+        public String getHead()
+        {
+            return head;
+        }
+
+        public String getBody()
+        {
+            String relativePath = renderingContext.getRelativePath();
+
+            return StringUtils.replace( body, RELATIVE_PATH, ( relativePath == null ) ? "." : relativePath );
+        }
+
+        public RenderingContext getRenderingContext()
+        {
+            return renderingContext;
+        }
+    }
+}
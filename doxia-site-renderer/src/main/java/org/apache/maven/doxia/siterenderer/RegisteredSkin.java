@@ -0,0 +1,197 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.doxia.site.skin.SkinModel;
+
+/**
+ * A skin opened by the {@link SkinRegistry}, shared by every site rendering context using it.
+ * Content is valid until the registry is closed.
+ *
+ * @since 1.8.2
+ */
+public class RegisteredSkin
+{
+    private final File file;
+
+    private final String checksum;
+
+    private final ZipFile zipFile;
+
+    private final SkinModel skinModel;
+
+    private final URLClassLoader templateClassLoader;
+
+    private final String prerequisiteError;
+
+    private List<ZipEntry> resourceEntries;
+
+    private long length;
+
+    private long lastModified;
+
+    RegisteredSkin( File file, String checksum, ZipFile zipFile, SkinModel skinModel,
+                    URLClassLoader templateClassLoader, String prerequisiteError )
+    {
+        this.file = file;
+        this.checksum = checksum;
+        this.zipFile = zipFile;
+        this.skinModel = skinModel;
+        this.templateClassLoader = templateClassLoader;
+        this.prerequisiteError = prerequisiteError;
+        updateFileStamp();
+    }
+
+    /**
+     * Get the skin artifact file.
+     *
+     * @return the skin file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Get the checksum of the skin file content.
+     *
+     * @return the SHA-1 checksum, in hexadecimal
+     */
+    public String getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Get the opened skin file. It must not be closed by callers.
+     *
+     * @return the skin zip file
+     */
+    public ZipFile getZipFile()
+    {
+        return zipFile;
+    }
+
+    /**
+     * Get the skin resources entries, ie every entry outside <code>META-INF/</code>. The list is computed once and
+     * shared by every site using the skin.
+     *
+     * @return the skin resources entries, including directories
+     */
+    public synchronized List<ZipEntry> getResourceEntries()
+    {
+        if ( resourceEntries == null )
+        {
+            List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            for ( Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); )
+            {
+                ZipEntry entry = e.nextElement();
+
+                if ( !entry.getName().startsWith( "META-INF/" ) )
+                {
+                    entries.add( entry );
+                }
+            }
+            resourceEntries = Collections.unmodifiableList( entries );
+        }
+        return resourceEntries;
+    }
+
+    /**
+     * Get the skin model, read from the skin descriptor.
+     *
+     * @return the skin model, or <code>null</code> if the skin has no descriptor
+     */
+    public SkinModel getSkinModel()
+    {
+        return skinModel;
+    }
+
+    /**
+     * Check if the skin contains a site template.
+     *
+     * @return <code>true</code> if the skin contains a site template
+     */
+    public boolean hasTemplate()
+    {
+        return templateClassLoader != null;
+    }
+
+    /**
+     * Get the classloader to load the skin site template from.
+     *
+     * @return the template classloader, or <code>null</code> if the skin doesn't contain a site template
+     */
+    public ClassLoader getTemplateClassLoader()
+    {
+        return templateClassLoader;
+    }
+
+    /**
+     * Get the reason why the skin can't be used with current Doxia Sitetools.
+     *
+     * @return the Doxia Sitetools prerequisite error, or <code>null</code> if the skin can be used
+     */
+    String getPrerequisiteError()
+    {
+        return prerequisiteError;
+    }
+
+    /**
+     * Check if the skin file length and modification date are the ones seen when its checksum was last computed.
+     */
+    boolean isSameFileStamp()
+    {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    void updateFileStamp()
+    {
+        length = file.length();
+        lastModified = file.lastModified();
+    }
+
+    void close()
+    {
+        DefaultSiteRenderer.closeZipFile( zipFile );
+
+        if ( templateClassLoader != null )
+        {
+            try
+            {
+                templateClassLoader.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Writer;
+import org.apache.maven.doxia.site.skin.SkinModel;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Render manifest, stored in the state directory of the output directory: records for every generated page digests
+ * of the inputs used to render it, ie the document source and the site-wide inputs (decoration model, skin, template
+ * and template properties). A page needs to be rendered again only if one of these inputs changed, whatever the files
+ * timestamps.
+ *
+ * @since 1.8.2
+ */
+class RenderManifest
+{
+    /**
+     * Location of the manifest, relative to the state directory.
+     */
+    static final String MANIFEST_LOCATION = "render-manifest.properties";
+
+    /**
+     * Name of the default state directory, beside the output directory.
+     */
+    static final String DEFAULT_STATE_DIRECTORY = "doxia-site-renderer-state";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String NONE = "none";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+
+    private final String siteInputs;
+
+    // Properties is synchronized: entries can be updated by concurrent rendering threads
+    private final Properties entries = new Properties();
+
+    private volatile boolean modified;
+
+    private RenderManifest( File file, String siteInputs )
+    {
+        this.file = file;
+        this.siteInputs = siteInputs;
+    }
+
+    /**
+     * Get the directory where incremental rendering state of an output directory is kept. It is outside the output
+     * directory, not to be published with the site.
+     *
+     * @param siteRenderingContext the site rendering context, with an optional configured state directory
+     * @param outputDirectory the output directory
+     * @return the configured state directory, or by default a directory beside the output directory, like
+     * <code>target/doxia-site-renderer-state/site</code> for <code>target/site</code>
+     * @see SiteRenderingContext#getStateDirectory()
+     */
+    static File getStateDirectory( SiteRenderingContext siteRenderingContext, File outputDirectory )
+    {
+        if ( siteRenderingContext.getStateDirectory() != null )
+        {
+            return siteRenderingContext.getStateDirectory();
+        }
+
+        // one sub-directory per output directory, for sites rendered to sibling output directories
+        File stateDirectory = new File( outputDirectory.getAbsoluteFile().getParentFile(), DEFAULT_STATE_DIRECTORY );
+        return new File( stateDirectory, outputDirectory.getName() );
+    }
+
+    /**
+     * Load the render manifest from a state directory, or create an empty one if none was saved yet.
+     *
+     * @param stateDirectory the state directory, as returned by
+     * {@link #getStateDirectory(SiteRenderingContext, File)}
+     * @param siteInputs digests of site-wide inputs, as returned by {@link #getSiteInputs(SiteRenderingContext)}
+     * @return the render manifest
+     * @throws IOException if an existing manifest can't be read
+     */
+    static RenderManifest load( File stateDirectory, String siteInputs )
+        throws IOException
+    {
+        RenderManifest manifest = new RenderManifest( new File( stateDirectory, MANIFEST_LOCATION ), siteInputs );
+
+        if ( manifest.file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( manifest.file );
+                manifest.entries.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Save the manifest, if it was updated since loaded.
+     *
+     * @throws IOException if the manifest can't be written
+     */
+    void save()
+        throws IOException
+    {
+        if ( !modified )
+        {
+            return;
+        }
+
+        file.getParentFile().mkdirs();
+
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( file );
+            entries.store( out, "Doxia Sitetools render manifest: inputs digests for every generated page" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        modified = false;
+    }
+
+    /**
+     * Compute the fingerprint of a page, ie the digests of every input used to render it.
+     *
+     * @param source the document source file
+     * @return the page fingerprint
+     * @throws IOException if the source can't be read
+     */
+    String getFingerprint( File source )
+        throws IOException
+    {
+        return "source:" + ( source.isFile() ? digest( source ) : NONE ) + ' ' + siteInputs;
+    }
+
+    /**
+     * Check if a page was rendered from the same inputs.
+     *
+     * @param outputName the page output name
+     * @param fingerprint the current fingerprint of the page
+     * @return <code>true</code> if the manifest recorded the same fingerprint
+     */
+    boolean isUpToDate( String outputName, String fingerprint )
+    {
+        return fingerprint.equals( entries.getProperty( outputName ) );
+    }
+
+    /**
+     * Get the recorded fingerprint of a page.
+     *
+     * @param outputName the page output name
+     * @return the recorded fingerprint, or <code>null</code> if none
+     */
+    String getRecordedFingerprint( String outputName )
+    {
+        return entries.getProperty( outputName );
+    }
+
+    /**
+     * Record the fingerprint of a page that was just rendered.
+     *
+     * @param outputName the page output name
+     * @param fingerprint the fingerprint of the page
+     */
+    void update( String outputName, String fingerprint )
+    {
+        entries.setProperty( outputName, fingerprint );
+        modified = true;
+    }
+
+    /**
+     * Compute digests of the site-wide inputs of a site rendering context.
+     *
+     * @param siteRenderingContext the site rendering context
+     * @return the site inputs digests
+     * @throws IOException if an input can't be read
+     */
+    static String getSiteInputs( SiteRenderingContext siteRenderingContext )
+        throws IOException
+    {
+        StringBuilder template = new StringBuilder();
+        template.append( siteRenderingContext.getTemplateName() );
+        SkinModel skinModel = siteRenderingContext.getSkinModel();
+        template.append( '|' ).append( ( skinModel == null ) ? null : skinModel.getEncoding() );
+        template.append( '|' ).append( siteRenderingContext.getInputEncoding() );
+        template.append( '|' ).append( siteRenderingContext.getOutputEncoding() );
+        template.append( '|' ).append( siteRenderingContext.getLocale() );
+        template.append( '|' ).append( siteRenderingContext.getSiteLocales() );
+        template.append( '|' ).append( siteRenderingContext.getPublishDate() );
+        // pages rendered without validation must be validated once enabled
+        template.append( '|' ).append( siteRenderingContext.isValidate() );
+        template.append( '|' ).append( getTemplateDigest( siteRenderingContext ) );
+
+        StringBuilder properties = new StringBuilder();
+        if ( siteRenderingContext.getTemplateProperties() != null )
+        {
+            for ( Map.Entry<String, ?> entry
+                : new TreeMap<String, Object>( siteRenderingContext.getTemplateProperties() ).entrySet() )
+            {
+                properties.append( entry.getKey() ).append( '=' ).append( entry.getValue() ).append( '\n' );
+            }
+        }
+
+        File skinFile = ( siteRenderingContext.getSkin() == null ) ? null : siteRenderingContext.getSkin().getFile();
+
+        return "decoration:" + getDecorationDigest( siteRenderingContext.getDecoration() )
+            + " skin:" + ( ( skinFile != null && skinFile.isFile() ) ? digest( skinFile ) : NONE )
+            + " template:" + digest( template.toString() )
+            + " properties:" + digest( properties.toString() );
+    }
+
+    private static String getDecorationDigest( DecorationModel decoration )
+        throws IOException
+    {
+        if ( decoration == null )
+        {
+            return NONE;
+        }
+
+        StringWriter writer = new StringWriter();
+        new DecorationXpp3Writer().write( writer, decoration );
+        return digest( writer.toString() );
+    }
+
+    private static String getTemplateDigest( SiteRenderingContext siteRenderingContext )
+        throws IOException
+    {
+        ClassLoader templateClassLoader = siteRenderingContext.getTemplateClassLoader();
+        String templateName = siteRenderingContext.getTemplateName();
+
+        if ( templateClassLoader == null || templateName == null || siteRenderingContext.getSkin() != null )
+        {
+            // skin template content is covered by the skin digest
+            return NONE;
+        }
+
+        URL template = templateClassLoader.getResource( templateName );
+        if ( template == null )
+        {
+            return NONE;
+        }
+
+        InputStream in = null;
+        try
+        {
+            in = template.openStream();
+            return digest( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Compute the hexadecimal SHA-1 digest of a file content.
+     *
+     * @param file the file
+     * @return the digest
+     * @throws IOException if the file can't be read
+     */
+    static String digest( File file )
+        throws IOException
+    {
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( file );
+            return digest( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    private static String digest( InputStream in )
+        throws IOException
+    {
+        MessageDigest md = newMessageDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ( ( n = in.read( buffer ) ) >= 0 )
+        {
+            md.update( buffer, 0, n );
+        }
+        return toHex( md.digest() );
+    }
+
+    /**
+     * Compute the hexadecimal SHA-1 digest of a string, encoded in UTF-8.
+     *
+     * @param content the string
+     * @return the digest
+     */
+    static String digest( String content )
+    {
+        try
+        {
+            return toHex( newMessageDigest().digest( content.getBytes( "UTF-8" ) ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static MessageDigest newMessageDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-1 is required in every Java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        char[] hex = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            hex[2 * i] = HEX[( bytes[i] >> 4 ) & 0x0f];
+            hex[2 * i + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String( hex );
+    }
+}
@@ -36,6 +36,11 @@ import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
 /**
  * <p>Site Renderer interface: render a collection of documents into a site, ie decored with a site template
  * (eventually packaged as skin).</p>
+ * <p><b>Note:</b> methods were added to this interface in 1.8.2:
+ * {@link #parseDocument(RenderingContext, SiteRenderingContext)},
+ * {@link #render(Collection, SiteRenderingContext, SiteOutput)} and
+ * {@link #copyResources(SiteRenderingContext, SiteOutput)} among others. This breaks implementations written for
+ * previous versions. Implementations should extend {@link DefaultSiteRenderer} to get new methods.</p>
  *
  * @author <a href="mailto:evenisse@codehaus.org">Emmanuel Venisse</a>
  */
@@ -59,6 +64,21 @@ public interface Renderer // TODO rename to SiteRenderer
                  File outputDirectory )
         throws RendererException, IOException;
 
+    /**
+     * Render a collection of documents into a site output, which may not be the filesystem: documents are rendered
+     * incrementally only into an output directory.
+     * <p>New abstract method in 1.8.2: implementations written for previous versions must add it.</p>
+     *
+     * @param documents the documents to render.
+     * @param siteRenderingContext the SiteRenderingContext to use.
+     * @param output the site output to write results, not closed.
+     * @throws RendererException if it bombs.
+     * @throws IOException if it bombs.
+     * @since 1.8.2
+     */
+    void render( Collection<DocumentRenderer> documents, SiteRenderingContext siteRenderingContext, SiteOutput output )
+        throws RendererException, IOException;
+
     /**
      * Generate a document output from a Doxia SiteRenderer Sink, i.e. merge the document content into
      * the site template.
@@ -144,6 +164,19 @@ public interface Renderer // TODO rename to SiteRenderer
     void copyResources( SiteRenderingContext siteRenderingContext, File outputDirectory )
         throws IOException;
 
+    /**
+     * Copy resource files from skin, template, and site resources into a site output. Site resources take
+     * precedence over skin and template resources.
+     * <p>New abstract method in 1.8.2: implementations written for previous versions must add it.</p>
+     *
+     * @param siteRenderingContext the SiteRenderingContext to use.
+     * @param output the site output to copy resources to, not closed.
+     * @throws IOException if it bombs.
+     * @since 1.8.2
+     */
+    void copyResources( SiteRenderingContext siteRenderingContext, SiteOutput output )
+        throws IOException;
+
     /**
      * Locate Doxia document source files in the site source context.
      *
@@ -182,4 +215,19 @@ public interface Renderer // TODO rename to SiteRenderer
      */
     void renderDocument( Writer writer, RenderingContext docRenderingContext, SiteRenderingContext siteContext )
         throws RendererException, FileNotFoundException, UnsupportedEncodingException;
+
+    /**
+     * Parse a document written in a Doxia markup language, without merging it into the site template: this is the
+     * first stage of {@link #renderDocument(Writer, RenderingContext, SiteRenderingContext)}, the second one being
+     * {@link #mergeDocumentIntoSite(Writer, DocumentContent, SiteRenderingContext)}. The resulting content can be
+     * merged into the site template multiple times.
+     *
+     * @param docRenderingContext the document's rendering context, which is expected to have a non-null parser id.
+     * @param siteContext the site's rendering context
+     * @return the document content
+     * @throws RendererException if it bombs.
+     * @since 1.8.2
+     */
+    DocumentContent parseDocument( RenderingContext docRenderingContext, SiteRenderingContext siteContext )
+        throws RendererException;
 }
@@ -0,0 +1,426 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-document rendering statistics, recorded by the site renderer when set in the
+ * {@link SiteRenderingContext#setRenderingStatistics(RenderingStatistics) site rendering context}.
+ * <p>Velocity preprocessing and XML validation run in background threads while the document is parsed: their CPU time
+ * is recorded, when supported by the JVM. Other stages are measured in elapsed time: parse time excludes source read
+ * time, template merge time excludes output write time.</p>
+ *
+ * @since 1.8.2
+ */
+public class RenderingStatistics
+{
+    /** Default number of slowest documents in the JSON report. */
+    public static final int DEFAULT_SLOWEST_COUNT = 20;
+
+    /**
+     * Document rendering stages.
+     */
+    public enum Stage
+    {
+        /** Reading the document source. */
+        READ,
+        /** Velocity preprocessing of the source, in CPU time. */
+        VELOCITY,
+        /** XML validation of the source, in CPU time. */
+        VALIDATION,
+        /** Parsing the source. */
+        PARSE,
+        /** Merging the parsed content into the site template. */
+        MERGE,
+        /** Writing the output. */
+        WRITE
+    }
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final ConcurrentMap<String, DocumentStatistics> documents =
+        new ConcurrentHashMap<String, DocumentStatistics>();
+
+    /**
+     * Get the statistics of a document, creating them if they were not recorded yet.
+     *
+     * @param renderingContext the document rendering context
+     * @return the document statistics
+     */
+    DocumentStatistics getDocument( RenderingContext renderingContext )
+    {
+        String outputName = renderingContext.getOutputName();
+
+        DocumentStatistics document = documents.get( outputName );
+        if ( document == null )
+        {
+            DocumentStatistics created = new DocumentStatistics( outputName, renderingContext.getDoxiaSourcePath(),
+                                                                 renderingContext.getParserId() );
+            document = documents.putIfAbsent( outputName, created );
+            if ( document == null )
+            {
+                document = created;
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Get the statistics of a document.
+     *
+     * @param outputName the document output name
+     * @return the document statistics, or <code>null</code> if the document was not rendered
+     */
+    public DocumentStatistics getDocument( String outputName )
+    {
+        return documents.get( outputName );
+    }
+
+    /**
+     * @return the statistics of every rendered document, in no particular order
+     */
+    public Collection<DocumentStatistics> getDocuments()
+    {
+        return Collections.unmodifiableCollection( documents.values() );
+    }
+
+    /**
+     * Get the documents that took the longest to render.
+     *
+     * @param count the maximum number of documents
+     * @return the slowest documents, slowest first
+     */
+    public List<DocumentStatistics> getSlowestDocuments( int count )
+    {
+        List<DocumentStatistics> sorted = new ArrayList<DocumentStatistics>( documents.values() );
+        Collections.sort( sorted, new Comparator<DocumentStatistics>()
+        {
+            public int compare( DocumentStatistics d1, DocumentStatistics d2 )
+            {
+                long t1 = d1.getTotalTime();
+                long t2 = d2.getTotalTime();
+                return ( t1 < t2 ) ? 1 : ( ( t1 == t2 ) ? d1.getOutputName().compareTo( d2.getOutputName() ) : -1 );
+            }
+        } );
+        return sorted.subList( 0, Math.min( count, sorted.size() ) );
+    }
+
+    /**
+     * Aggregate statistics per parser id.
+     *
+     * @return aggregated statistics keyed by parser id, documents without parser being under <code>none</code>
+     */
+    public Map<String, DocumentStatistics> getParserStatistics()
+    {
+        Map<String, DocumentStatistics> parsers = new TreeMap<String, DocumentStatistics>();
+
+        for ( DocumentStatistics document : documents.values() )
+        {
+            String parserId = ( document.getParserId() == null ) ? "none" : document.getParserId();
+
+            DocumentStatistics parser = parsers.get( parserId );
+            if ( parser == null )
+            {
+                parser = new DocumentStatistics( null, null, parserId );
+                parsers.put( parserId, parser );
+            }
+            parser.add( document );
+        }
+
+        return parsers;
+    }
+
+    /**
+     * Write a JSON report: totals, per-parser aggregates and slowest documents. Times are in milliseconds.
+     *
+     * @param writer the writer to write the report to
+     * @param slowestCount the number of slowest documents to report
+     * @throws IOException if the report can't be written
+     */
+    public void writeJson( Writer writer, int slowestCount )
+        throws IOException
+    {
+        DocumentStatistics total = new DocumentStatistics( null, null, null );
+        for ( DocumentStatistics document : documents.values() )
+        {
+            total.add( document );
+        }
+
+        writer.write( "{\n  \"total\": " );
+        writeJson( writer, total );
+
+        writer.write( ",\n  \"parsers\": {" );
+        String separator = "\n    ";
+        for ( Map.Entry<String, DocumentStatistics> parser : getParserStatistics().entrySet() )
+        {
+            writer.write( separator );
+            writeString( writer, parser.getKey() );
+            writer.write( ": " );
+            writeJson( writer, parser.getValue() );
+            separator = ",\n    ";
+        }
+
+        writer.write( "\n  },\n  \"slowest\": [" );
+        separator = "\n    ";
+        for ( DocumentStatistics document : getSlowestDocuments( slowestCount ) )
+        {
+            writer.write( separator );
+            writeJson( writer, document );
+            separator = ",\n    ";
+        }
+        writer.write( "\n  ]\n}\n" );
+    }
+
+    private static void writeJson( Writer writer, DocumentStatistics statistics )
+        throws IOException
+    {
+        writer.write( '{' );
+        if ( statistics.getOutputName() != null )
+        {
+            writer.write( "\"output\": " );
+            writeString( writer, statistics.getOutputName() );
+            writer.write( ", \"source\": " );
+            writeString( writer, statistics.getSourcePath() );
+            writer.write( ", \"parser\": " );
+            writeString( writer, statistics.getParserId() );
+            writer.write( ", \"cached\": " + statistics.isCached() + ", " );
+        }
+        writer.write( "\"documents\": " + statistics.getDocumentCount() );
+        writer.write( ", \"bytesIn\": " + statistics.getBytesIn() );
+        writer.write( ", \"bytesOut\": " + statistics.getBytesOut() );
+        writer.write( ", \"total\": " + toMillis( statistics.getTotalTime() ) );
+        for ( Stage stage : Stage.values() )
+        {
+            writer.write( ", \"" + stage.name().toLowerCase( Locale.ENGLISH ) + "\": "
+                + toMillis( statistics.getTime( stage ) ) );
+        }
+        writer.write( '}' );
+    }
+
+    private static String toMillis( long nanos )
+    {
+        return String.format( Locale.ENGLISH, "%.3f", nanos / NANOS_PER_MILLI );
+    }
+
+    private static void writeString( Writer writer, String value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            writer.write( "null" );
+            return;
+        }
+
+        writer.write( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                writer.write( '\\' );
+                writer.write( c );
+            }
+            else if ( c < ' ' )
+            {
+                writer.write( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                writer.write( c );
+            }
+        }
+        writer.write( '"' );
+    }
+
+    /**
+     * Get the CPU time of the current thread.
+     *
+     * @return the CPU time in nanoseconds, or <code>0</code> if not supported by the JVM
+     */
+    static long getCurrentThreadCpuTime()
+    {
+        try
+        {
+            return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Rendering statistics of a document, or aggregated statistics of multiple documents.
+     */
+    public static class DocumentStatistics
+    {
+        private final String outputName;
+
+        private final String sourcePath;
+
+        private final String parserId;
+
+        private final AtomicLongArray times = new AtomicLongArray( Stage.values().length );
+
+        private volatile int documentCount;
+
+        private volatile long bytesIn;
+
+        private volatile long bytesOut;
+
+        private volatile boolean cached;
+
+        DocumentStatistics( String outputName, String sourcePath, String parserId )
+        {
+            this.outputName = outputName;
+            this.sourcePath = sourcePath;
+            this.parserId = parserId;
+            this.documentCount = ( outputName == null ) ? 0 : 1;
+        }
+
+        /**
+         * @return the document output name, <code>null</code> for aggregated statistics
+         */
+        public String getOutputName()
+        {
+            return outputName;
+        }
+
+        /**
+         * @return the document source path, <code>null</code> for aggregated statistics or generated documents
+         */
+        public String getSourcePath()
+        {
+            return sourcePath;
+        }
+
+        /**
+         * @return the parser id, <code>null</code> if the document was not parsed from a source
+         */
+        public String getParserId()
+        {
+            return parserId;
+        }
+
+        /**
+         * @return the number of documents
+         */
+        public int getDocumentCount()
+        {
+            return documentCount;
+        }
+
+        /**
+         * Get the time of a stage.
+         *
+         * @param stage the rendering stage
+         * @return the time in nanoseconds
+         */
+        public long getTime( Stage stage )
+        {
+            return times.get( stage.ordinal() );
+        }
+
+        /**
+         * @return the total time of all stages, in nanoseconds
+         */
+        public long getTotalTime()
+        {
+            long total = 0;
+            for ( int i = 0; i < times.length(); i++ )
+            {
+                total += times.get( i );
+            }
+            return total;
+        }
+
+        /**
+         * @return the source size in bytes
+         */
+        public long getBytesIn()
+        {
+            return bytesIn;
+        }
+
+        /**
+         * @return the output size in bytes
+         */
+        public long getBytesOut()
+        {
+            return bytesOut;
+        }
+
+        /**
+         * @return <code>true</code> if the document content came from the parse cache
+         */
+        public boolean isCached()
+        {
+            return cached;
+        }
+
+        void addTime( Stage stage, long time )
+        {
+            times.addAndGet( stage.ordinal(), time );
+        }
+
+        void setBytesIn( long bytesIn )
+        {
+            this.bytesIn = bytesIn;
+        }
+
+        void setBytesOut( long bytesOut )
+        {
+            this.bytesOut = bytesOut;
+        }
+
+        void setCached( boolean cached )
+        {
+            this.cached = cached;
+        }
+
+        private void add( DocumentStatistics document )
+        {
+            for ( Stage stage : Stage.values() )
+            {
+                addTime( stage, document.getTime( stage ) );
+            }
+            documentCount += document.documentCount;
+            bytesIn += document.bytesIn;
+            bytesOut += document.bytesOut;
+        }
+    }
+}
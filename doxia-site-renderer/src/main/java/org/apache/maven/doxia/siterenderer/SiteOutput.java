@@ -0,0 +1,66 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of the files of a rendered site: rendered documents and copied resources are written through it, to
+ * the filesystem, in memory or directly into a site archive.
+ * <p>Paths are relative to the site root, with <code>/</code> separators. Files may be written concurrently by
+ * multiple threads.</p>
+ *
+ * @since 1.8.2
+ * @see FileSiteOutput
+ * @see MemorySiteOutput
+ * @see ZipSiteOutput
+ */
+public interface SiteOutput
+    extends Closeable
+{
+    /**
+     * Create a file, or replace it when the output supports it.
+     *
+     * @param path the file path
+     * @return the stream to write the file content to, to be closed once written
+     * @throws IOException if the file can't be created
+     */
+    OutputStream newOutputStream( String path )
+        throws IOException;
+
+    /**
+     * Check if a file exists in the output.
+     *
+     * @param path the file path
+     * @return <code>true</code> if the file exists
+     */
+    boolean exists( String path );
+
+    /**
+     * Get the directory files are written to, when the output is the filesystem: incremental rendering of
+     * unchanged documents and resources relies on files of previous renderings.
+     *
+     * @return the output directory, or <code>null</code> if files are not written to the filesystem
+     */
+    File getDirectory();
+}
@@ -0,0 +1,464 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+import org.apache.maven.doxia.logging.Log;
+import org.apache.maven.doxia.logging.LogEnabled;
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server previewing a site without rendering it first: a document is rendered only when its page is
+ * requested, then kept in a LRU cache of rendered pages. Site resources and skin resources are served directly from
+ * site <code>resources</code> directories and from the skin file, without being copied.
+ *
+ * @since 1.8.2
+ */
+public class SitePreviewServer
+    implements Closeable, LogEnabled
+{
+    /** Default maximum number of rendered pages kept in the cache. */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final String DEFAULT_RESOURCES = "org/apache/maven/doxia/siterenderer/resources";
+
+    private static final int PAGES_INITIAL_CAPACITY = 16;
+
+    private static final float PAGES_LOAD_FACTOR = 0.75f;
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+    static
+    {
+        // not all known by URLConnection.guessContentTypeFromName()
+        CONTENT_TYPES.put( "css", "text/css" );
+        CONTENT_TYPES.put( "js", "application/javascript" );
+        CONTENT_TYPES.put( "svg", "image/svg+xml" );
+        CONTENT_TYPES.put( "ico", "image/x-icon" );
+        CONTENT_TYPES.put( "woff", "font/woff" );
+        CONTENT_TYPES.put( "woff2", "font/woff2" );
+    }
+
+    private final Renderer renderer;
+
+    private final SkinRegistry skinRegistry;
+
+    private final SiteRenderingContext siteContext;
+
+    private final InetSocketAddress address;
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** Documents keyed by output name. */
+    private Map<String, DocumentRenderer> documents;
+
+    /** Skin resources keyed by entry name. */
+    private final Map<String, ZipEntry> skinResources = new HashMap<String, ZipEntry>();
+
+    private RegisteredSkin skin;
+
+    private final Set<String> defaultResources = new HashSet<String>();
+
+    /** Rendered pages, least recently used first. */
+    private Map<String, byte[]> pages;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private Log log;
+
+    /**
+     * Create a preview server.
+     *
+     * @param renderer the site renderer
+     * @param skinRegistry the skin registry, to read resources of the skin of the site
+     * @param siteContext the site rendering context
+     * @param address the address to listen to, with port 0 for an ephemeral port
+     */
+    public SitePreviewServer( Renderer renderer, SkinRegistry skinRegistry, SiteRenderingContext siteContext,
+                              InetSocketAddress address )
+    {
+        this.renderer = renderer;
+        this.skinRegistry = skinRegistry;
+        this.siteContext = siteContext;
+        this.address = address;
+    }
+
+    /** {@inheritDoc} */
+    public void enableLogging( Log log )
+    {
+        this.log = log;
+    }
+
+    /**
+     * @return the current logger, or a default one if none was set
+     */
+    protected Log getLog()
+    {
+        if ( log == null )
+        {
+            log = new SystemStreamLog();
+        }
+        return log;
+    }
+
+    /**
+     * Set the maximum number of rendered pages kept in memory. Must be called before {@link #start()}.
+     *
+     * @param cacheSize the cache size, default is {@value #DEFAULT_CACHE_SIZE}
+     */
+    public void setCacheSize( int cacheSize )
+    {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Locate site documents and start serving them. Nothing is rendered yet.
+     *
+     * @throws RendererException if it bombs.
+     * @throws IOException if it bombs.
+     */
+    public void start()
+        throws RendererException, IOException
+    {
+        documents = renderer.locateDocumentFiles( siteContext, true );
+
+        final int maxPages = cacheSize;
+        pages = new LinkedHashMap<String, byte[]>( PAGES_INITIAL_CAPACITY, PAGES_LOAD_FACTOR, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, byte[]> eldest )
+            {
+                return size() > maxPages;
+            }
+        };
+
+        if ( siteContext.getSkin() != null )
+        {
+            skin = skinRegistry.getSkin( siteContext.getSkin() );
+            for ( ZipEntry entry : skin.getResourceEntries() )
+            {
+                if ( !entry.isDirectory() )
+                {
+                    skinResources.put( entry.getName(), entry );
+                }
+            }
+        }
+
+        if ( siteContext.isUsingDefaultTemplate() )
+        {
+            loadDefaultResources();
+        }
+
+        server = HttpServer.create( address, 0 );
+        server.createContext( "/", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                try
+                {
+                    serve( exchange );
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        } );
+        executor = Executors.newFixedThreadPool( Math.max( 2, siteContext.getRenderingThreads() ),
+                                                 new PreviewThreadFactory() );
+        server.setExecutor( executor );
+        server.start();
+
+        getLog().info( "Serving " + documents.size() + " documents on http://" + address.getHostString() + ':'
+            + getPort() + '/' );
+    }
+
+    private void loadDefaultResources()
+        throws IOException
+    {
+        InputStream in = getClass().getClassLoader().getResourceAsStream( DEFAULT_RESOURCES + "/resources.txt" );
+        if ( in == null )
+        {
+            return;
+        }
+
+        try
+        {
+            for ( String line : IOUtil.toString( in, "UTF-8" ).split( "\n" ) )
+            {
+                line = line.trim();
+                if ( line.length() > 0 && !line.startsWith( "#" ) )
+                {
+                    defaultResources.add( line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * @return the port the server listens to
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Forget every rendered page, for example after a site input changed.
+     */
+    public void clearCache()
+    {
+        synchronized ( pages )
+        {
+            pages.clear();
+        }
+    }
+
+    private void serve( HttpExchange exchange )
+        throws IOException
+    {
+        if ( !"GET".equals( exchange.getRequestMethod() ) && !"HEAD".equals( exchange.getRequestMethod() ) )
+        {
+            sendError( exchange, HttpURLConnection.HTTP_BAD_METHOD, "Method not allowed" );
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        if ( path.endsWith( "/" ) )
+        {
+            path += "index.html";
+        }
+        path = path.substring( 1 );
+
+        if ( path.contains( ".." ) || path.contains( "\\" ) )
+        {
+            sendError( exchange, HttpURLConnection.HTTP_FORBIDDEN, "Forbidden" );
+            return;
+        }
+
+        try
+        {
+            byte[] content = getContent( path );
+
+            if ( content == null )
+            {
+                sendError( exchange, HttpURLConnection.HTTP_NOT_FOUND, "Not found: /" + path );
+                return;
+            }
+
+            exchange.getResponseHeaders().set( "Content-Type", getContentType( path ) );
+            if ( "HEAD".equals( exchange.getRequestMethod() ) )
+            {
+                exchange.sendResponseHeaders( HttpURLConnection.HTTP_OK, -1 );
+            }
+            else
+            {
+                exchange.sendResponseHeaders( HttpURLConnection.HTTP_OK, content.length );
+                exchange.getResponseBody().write( content );
+            }
+        }
+        catch ( RendererException e )
+        {
+            getLog().error( "Error rendering /" + path + ": " + e.getMessage(), e );
+
+            sendError( exchange, HttpURLConnection.HTTP_INTERNAL_ERROR,
+                       "Error rendering /" + path + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Get the content of a site path: a rendered document, a site resource, a skin resource or a default template
+     * resource, in this order of precedence, like when the site is rendered to a directory.
+     *
+     * @return the content, or <code>null</code> if not found
+     */
+    private byte[] getContent( String path )
+        throws RendererException, IOException
+    {
+        DocumentRenderer docRenderer = documents.get( path );
+        if ( docRenderer != null )
+        {
+            return getPage( path, docRenderer );
+        }
+
+        for ( File siteDirectory : siteContext.getSiteDirectories() )
+        {
+            File resource = new File( siteDirectory, "resources/" + path );
+            if ( resource.isFile() )
+            {
+                return read( new FileInputStream( resource ) );
+            }
+        }
+
+        ZipEntry entry = skinResources.get( path );
+        if ( entry != null )
+        {
+            return read( skin.getZipFile().getInputStream( entry ) );
+        }
+
+        if ( defaultResources.contains( path ) )
+        {
+            return read( getClass().getClassLoader().getResourceAsStream( DEFAULT_RESOURCES + "/" + path ) );
+        }
+
+        if ( "css/site.css".equals( path ) )
+        {
+            // same default as when copying resources
+            return "/* You can override this file with your own styles */".getBytes( "UTF-8" );
+        }
+
+        return null;
+    }
+
+    private byte[] getPage( String path, DocumentRenderer docRenderer )
+        throws RendererException, IOException
+    {
+        synchronized ( pages )
+        {
+            byte[] page = pages.get( path );
+            if ( page != null )
+            {
+                return page;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = WriterFactory.newWriter( out, siteContext.getOutputEncoding() );
+        docRenderer.renderDocument( writer, renderer, siteContext );
+        writer.close();
+        byte[] page = out.toByteArray();
+
+        if ( getLog().isDebugEnabled() )
+        {
+            getLog().debug( "Rendered /" + path + " in " + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+
+        synchronized ( pages )
+        {
+            pages.put( path, page );
+        }
+        return page;
+    }
+
+    private static byte[] read( InputStream in )
+        throws IOException
+    {
+        try
+        {
+            return IOUtil.toByteArray( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    private String getContentType( String path )
+    {
+        if ( documents.containsKey( path ) )
+        {
+            return "text/html; charset=" + siteContext.getOutputEncoding();
+        }
+
+        String type = CONTENT_TYPES.get( path.substring( path.lastIndexOf( '.' ) + 1 ).toLowerCase() );
+        if ( type == null )
+        {
+            type = URLConnection.guessContentTypeFromName( path );
+        }
+        return ( type == null ) ? "application/octet-stream" : type;
+    }
+
+    private static void sendError( HttpExchange exchange, int status, String message )
+        throws IOException
+    {
+        byte[] body = message.getBytes( "UTF-8" );
+        exchange.getResponseHeaders().set( "Content-Type", "text/plain; charset=UTF-8" );
+        exchange.sendResponseHeaders( status, body.length );
+        OutputStream out = exchange.getResponseBody();
+        out.write( body );
+    }
+
+    /**
+     * Stop the server. The skin is left open in the skin registry.
+     */
+    public void close()
+    {
+        if ( server != null )
+        {
+            server.stop( 0 );
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Creates daemon request handling threads.
+     */
+    private static class PreviewThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "doxia-site-preview-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -78,6 +78,16 @@ public class SiteRenderingContext
 
     private File processedContentOutput;
 
+    private int renderingThreads = 1;
+
+    private File stateDirectory;
+
+    private File parseCacheDirectory;
+
+    private RenderingStatistics renderingStatistics;
+
+    private File renderReportFile;
+
     /**
      * If input documents should be validated before parsing.
      * By default no validation is performed.
@@ -470,4 +480,130 @@ public class SiteRenderingContext
     {
         this.rootDirectory = rootDirectory;
     }
+
+    /**
+     * Number of worker threads used to render Doxia source documents. With more than one thread, independent
+     * documents are parsed, merged into the site template and written concurrently.
+     * By default, documents are rendered one after the other on the calling thread.
+     *
+     * @return the number of rendering threads
+     * @since 1.8.2
+     */
+    public int getRenderingThreads()
+    {
+        return renderingThreads;
+    }
+
+    /**
+     * Set the number of worker threads used to render Doxia source documents.
+     *
+     * @param renderingThreads the number of rendering threads, values lower than 1 mean 1
+     * @since 1.8.2
+     */
+    public void setRenderingThreads( int renderingThreads )
+    {
+        this.renderingThreads = Math.max( 1, renderingThreads );
+    }
+
+    /**
+     * Directory where incremental rendering state is kept between builds, like the render manifest recording the
+     * inputs of every rendered page. The state directory must not be inside the output directory: it is not meant to
+     * be published with the site.
+     *
+     * @return the state directory, or <code>null</code> if not set: state is then kept beside the output directory,
+     * in <code>doxia-site-renderer-state/&lt;output directory name&gt;</code>
+     * @since 1.8.2
+     */
+    public File getStateDirectory()
+    {
+        return stateDirectory;
+    }
+
+    /**
+     * Set the directory where incremental rendering state is kept between builds, for example
+     * <code>target/doxia-site-renderer</code> when rendering to <code>target/site</code>.
+     *
+     * @param stateDirectory the state directory, <code>null</code> to use a directory beside the output directory
+     * @since 1.8.2
+     */
+    public void setStateDirectory( File stateDirectory )
+    {
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * Directory where parsed Doxia documents are cached between builds, keyed by source content, encoding, validation,
+     * parser and Doxia version: a document whose source didn't change is not parsed again, only merged into the site
+     * template.
+     *
+     * @return the parse cache directory, or <code>null</code> if parse results are not cached
+     * @since 1.8.2
+     */
+    public File getParseCacheDirectory()
+    {
+        return parseCacheDirectory;
+    }
+
+    /**
+     * Set the directory where parsed Doxia documents are cached between builds. Velocity documents
+     * (<code>*.vm</code>) are never cached, since their content depends on the Velocity context.
+     * Only the document source file is part of the cache key: files included while parsing, for example by the
+     * <code>snippet</code> macro, are not, so the cache must be cleared when such a file changes.
+     *
+     * @param parseCacheDirectory the parse cache directory, <code>null</code> to disable parse results caching
+     * @since 1.8.2
+     */
+    public void setParseCacheDirectory( File parseCacheDirectory )
+    {
+        this.parseCacheDirectory = parseCacheDirectory;
+    }
+
+    /**
+     * Statistics recorded while rendering documents: per-document stage timings and sizes. When set,
+     * {@link Renderer#render(java.util.Collection, SiteRenderingContext, File) rendering} also writes a JSON report to
+     * the {@link #getRenderReportFile() render report file}.
+     *
+     * @return the rendering statistics, or <code>null</code> if not recorded
+     * @since 1.8.2
+     */
+    public RenderingStatistics getRenderingStatistics()
+    {
+        return renderingStatistics;
+    }
+
+    /**
+     * Set the statistics to record document rendering to.
+     *
+     * @param renderingStatistics the rendering statistics, <code>null</code> to disable statistics
+     * @since 1.8.2
+     */
+    public void setRenderingStatistics( RenderingStatistics renderingStatistics )
+    {
+        this.renderingStatistics = renderingStatistics;
+    }
+
+    /**
+     * File where the JSON render report is written when {@link #getRenderingStatistics() statistics} are recorded.
+     *
+     * @return the render report file, or <code>null</code> to write <code>site-render-report.json</code> beside a
+     *         <code>site</code> output directory
+     * @since 1.8.2
+     */
+    public File getRenderReportFile()
+    {
+        return renderReportFile;
+    }
+
+    /**
+     * Set the file where the JSON render report is written. The default location is beside the output directory,
+     * that may be published: when rendering to <code>target/site</code>, it is
+     * <code>target/site-render-report.json</code>.
+     *
+     * @param renderReportFile the render report file, <code>null</code> to use a file beside the output directory
+     * @since 1.8.2
+     */
+    public void setRenderReportFile( File renderReportFile )
+    {
+        this.renderReportFile = renderReportFile;
+    }
 }
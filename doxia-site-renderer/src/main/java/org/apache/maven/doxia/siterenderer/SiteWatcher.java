@@ -0,0 +1,496 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.logging.Log;
+import org.apache.maven.doxia.logging.LogEnabled;
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Long-running site rendering: after an initial rendering, site directories, site resources and site context files
+ * (site descriptor, skin) are watched for changes with a {@link WatchService}, and only impacted outputs are rendered
+ * again, with the same warmed {@link Renderer}:
+ * <ul>
+ * <li>a changed document source is parsed and merged into the site template again,</li>
+ * <li>a changed site resource triggers a resources copy,</li>
+ * <li>a changed context file triggers the creation of a new site rendering context, then every document is merged
+ * again into the new site template from its parsed content kept in memory (only Velocity documents are parsed
+ * again, since their content depends on the context),</li>
+ * <li>the output of a deleted document source is deleted.</li>
+ * </ul>
+ * Rendering errors are logged without stopping the watch: they are usually fixed by a next change.
+ *
+ * @since 1.8.2
+ */
+public class SiteWatcher
+    implements Closeable, LogEnabled
+{
+    /**
+     * Factory of the site rendering context, called initially and each time a context file changed.
+     */
+    public interface ContextFactory
+    {
+        /**
+         * Create the site rendering context from current site descriptor and skin.
+         *
+         * @return the site rendering context
+         * @throws RendererException if it bombs.
+         * @throws IOException if it bombs.
+         */
+        SiteRenderingContext createSiteRenderingContext()
+            throws RendererException, IOException;
+    }
+
+    /** Time to wait for related changes before processing them, like all files saved by an editor at once. */
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Renderer renderer;
+
+    private final ContextFactory contextFactory;
+
+    private final File outputDirectory;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+
+    private final Set<Path> contextFiles = new HashSet<Path>();
+
+    private SiteRenderingContext siteContext;
+
+    /** Located documents, keyed by absolute source path. */
+    private Map<Path, DocumentRenderer> documents = new HashMap<Path, DocumentRenderer>();
+
+    /** Parsed documents content, keyed by absolute source path. */
+    private final Map<Path, DocumentContent> contents = new HashMap<Path, DocumentContent>();
+
+    private Log log;
+
+    /**
+     * Create a site watcher.
+     *
+     * @param renderer the site renderer
+     * @param contextFactory the factory of the site rendering context
+     * @param outputDirectory the output directory
+     * @throws IOException if the file system can't be watched
+     */
+    public SiteWatcher( Renderer renderer, ContextFactory contextFactory, File outputDirectory )
+        throws IOException
+    {
+        this.renderer = renderer;
+        this.contextFactory = contextFactory;
+        this.outputDirectory = outputDirectory;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /** {@inheritDoc} */
+    public void enableLogging( Log log )
+    {
+        this.log = log;
+    }
+
+    /**
+     * @return the current logger, or a default one if none was set
+     */
+    protected Log getLog()
+    {
+        if ( log == null )
+        {
+            log = new SystemStreamLog();
+        }
+        return log;
+    }
+
+    /**
+     * Add a file, like the site descriptor, that the site rendering context depends on: when it changes, a new
+     * context is created and every document is decorated again. The skin file is added automatically.
+     *
+     * @param file the context file
+     * @throws IOException if the file directory can't be watched
+     */
+    public void addContextFile( File file )
+        throws IOException
+    {
+        Path path = file.getAbsoluteFile().toPath();
+
+        if ( contextFiles.add( path ) && path.getParent() != null && Files.isDirectory( path.getParent() ) )
+        {
+            register( path.getParent() );
+        }
+    }
+
+    /**
+     * Render the whole site, then start watching its inputs.
+     *
+     * @throws RendererException if it bombs.
+     * @throws IOException if it bombs.
+     */
+    public void render()
+        throws RendererException, IOException
+    {
+        updateContext();
+
+        for ( File siteDirectory : siteContext.getSiteDirectories() )
+        {
+            if ( siteDirectory.isDirectory() )
+            {
+                registerAll( siteDirectory.getAbsoluteFile().toPath() );
+            }
+        }
+
+        renderer.copyResources( siteContext, outputDirectory );
+
+        for ( Path source : documents.keySet() )
+        {
+            renderDocument( source, true );
+        }
+    }
+
+    /**
+     * Process changes until this watcher is closed or the current thread is interrupted. Errors processing changes
+     * are logged, then next changes are processed.
+     *
+     * @throws InterruptedException if interrupted while waiting for changes
+     */
+    public void watch()
+        throws InterruptedException
+    {
+        try
+        {
+            while ( true )
+            {
+                try
+                {
+                    processChanges( 1, TimeUnit.SECONDS );
+                }
+                catch ( RendererException e )
+                {
+                    getLog().error( "Error rendering site changes: " + e.getMessage(), e );
+                }
+                catch ( IOException e )
+                {
+                    getLog().error( "Error rendering site changes: " + e.getMessage(), e );
+                }
+            }
+        }
+        catch ( ClosedWatchServiceException e )
+        {
+            // closed: stop watching
+        }
+    }
+
+    /**
+     * Wait for changes, then render impacted outputs. A document that can't be rendered is logged and skipped, other
+     * documents are still rendered.
+     *
+     * @param timeout how long to wait for a first change
+     * @param unit the timeout unit
+     * @return <code>true</code> if changes were processed, <code>false</code> if none happened before the timeout
+     * @throws RendererException if the site rendering context can't be created.
+     * @throws IOException if resources can't be copied.
+     * @throws InterruptedException if interrupted while waiting for changes
+     * @throws ClosedWatchServiceException if this watcher is closed
+     */
+    public boolean processChanges( long timeout, TimeUnit unit )
+        throws RendererException, IOException, InterruptedException
+    {
+        WatchKey key = watchService.poll( timeout, unit );
+        if ( key == null )
+        {
+            return false;
+        }
+
+        Set<Path> changed = new LinkedHashSet<Path>();
+        while ( key != null )
+        {
+            collectChanges( key, changed );
+            key = watchService.poll( SETTLE_MILLIS, TimeUnit.MILLISECONDS );
+        }
+
+        processChanges( changed );
+        return true;
+    }
+
+    private void collectChanges( WatchKey key, Set<Path> changed )
+        throws IOException
+    {
+        Path directory = watchedDirectories.get( key );
+
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW )
+            {
+                // events lost: consider every document changed
+                changed.addAll( documents.keySet() );
+                continue;
+            }
+
+            Path path = directory.resolve( (Path) event.context() );
+            changed.add( path );
+
+            if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path )
+                && isInSiteDirectory( path ) )
+            {
+                registerAll( path );
+            }
+        }
+
+        if ( !key.reset() )
+        {
+            watchedDirectories.remove( key );
+        }
+    }
+
+    private void processChanges( Set<Path> changed )
+        throws RendererException, IOException
+    {
+        Map<Path, DocumentRenderer> previousDocuments = documents;
+
+        boolean contextChanged = false;
+        boolean resourcesChanged = false;
+        for ( Path path : changed )
+        {
+            contextChanged |= contextFiles.contains( path );
+            resourcesChanged |= isResource( path );
+        }
+
+        if ( contextChanged )
+        {
+            getLog().info( "Site context changed, decorating all documents again" );
+
+            updateContext();
+            renderer.copyResources( siteContext, outputDirectory );
+        }
+        else
+        {
+            locateDocuments();
+
+            if ( resourcesChanged )
+            {
+                getLog().info( "Site resources changed, copying resources" );
+
+                renderer.copyResources( siteContext, outputDirectory );
+            }
+        }
+
+        contents.keySet().retainAll( documents.keySet() );
+
+        deleteRemovedOutputs( previousDocuments );
+
+        for ( Path source : documents.keySet() )
+        {
+            boolean sourceChanged = changed.contains( source ) || !previousDocuments.containsKey( source );
+
+            if ( sourceChanged || contextChanged )
+            {
+                String outputName = documents.get( source ).getOutputName();
+                getLog().info( "Rendering " + outputName );
+
+                try
+                {
+                    renderDocument( source, sourceChanged );
+                }
+                catch ( RendererException e )
+                {
+                    getLog().error( "Error rendering " + outputName + ": " + e.getMessage(), e );
+                }
+                catch ( IOException e )
+                {
+                    getLog().error( "Error rendering " + outputName + ": " + e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+    private void deleteRemovedOutputs( Map<Path, DocumentRenderer> previousDocuments )
+    {
+        Set<String> outputNames = new HashSet<String>();
+        for ( DocumentRenderer docRenderer : documents.values() )
+        {
+            outputNames.add( docRenderer.getOutputName() );
+        }
+
+        for ( Map.Entry<Path, DocumentRenderer> entry : previousDocuments.entrySet() )
+        {
+            String outputName = entry.getValue().getOutputName();
+
+            // the output may now be rendered from another source, like index.apt renamed to index.md
+            if ( !documents.containsKey( entry.getKey() ) && !outputNames.contains( outputName ) )
+            {
+                File outputFile = new File( outputDirectory, outputName );
+                if ( outputFile.isFile() )
+                {
+                    getLog().info( "Deleting " + outputName );
+
+                    if ( !outputFile.delete() )
+                    {
+                        getLog().warn( "Unable to delete " + outputFile );
+                    }
+                }
+            }
+        }
+    }
+
+    private void updateContext()
+        throws RendererException, IOException
+    {
+        siteContext = contextFactory.createSiteRenderingContext();
+
+        if ( siteContext.getSkin() != null && siteContext.getSkin().getFile() != null )
+        {
+            addContextFile( siteContext.getSkin().getFile() );
+        }
+
+        locateDocuments();
+    }
+
+    private void locateDocuments()
+        throws RendererException, IOException
+    {
+        Map<Path, DocumentRenderer> located = new HashMap<Path, DocumentRenderer>();
+
+        for ( DocumentRenderer docRenderer : renderer.locateDocumentFiles( siteContext, true ).values() )
+        {
+            located.put( getSource( docRenderer.getRenderingContext() ), docRenderer );
+        }
+
+        documents = located;
+    }
+
+    private void renderDocument( Path source, boolean parse )
+        throws RendererException, IOException
+    {
+        RenderingContext renderingContext = documents.get( source ).getRenderingContext();
+
+        DocumentContent content = contents.get( source );
+        if ( parse || content == null || renderingContext.getAttribute( "velocity" ) != null )
+        {
+            // no stale content kept if parsing fails
+            contents.remove( source );
+            content = renderer.parseDocument( renderingContext, siteContext );
+            contents.put( source, content );
+        }
+
+        File outputFile = new File( outputDirectory, renderingContext.getOutputName() );
+        outputFile.getParentFile().mkdirs();
+
+        Writer writer = null;
+        try
+        {
+            writer = WriterFactory.newWriter( outputFile, siteContext.getOutputEncoding() );
+            renderer.mergeDocumentIntoSite( writer, content, siteContext );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    private static Path getSource( RenderingContext renderingContext )
+    {
+        return new File( renderingContext.getBasedir(), renderingContext.getInputName() ).getAbsoluteFile().toPath();
+    }
+
+    private boolean isInSiteDirectory( Path path )
+    {
+        for ( File siteDirectory : siteContext.getSiteDirectories() )
+        {
+            if ( path.startsWith( siteDirectory.getAbsoluteFile().toPath() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isResource( Path path )
+    {
+        for ( File siteDirectory : siteContext.getSiteDirectories() )
+        {
+            if ( path.startsWith( new File( siteDirectory, "resources" ).getAbsoluteFile().toPath() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void register( Path directory )
+        throws IOException
+    {
+        if ( !watchedDirectories.containsValue( directory ) )
+        {
+            WatchKey key = directory.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                               StandardWatchEventKinds.ENTRY_DELETE,
+                                               StandardWatchEventKinds.ENTRY_MODIFY );
+            watchedDirectories.put( key, directory );
+        }
+    }
+
+    private void registerAll( Path root )
+        throws IOException
+    {
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+                throws IOException
+            {
+                register( dir );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    /**
+     * Stop watching: a thread blocked in {@link #watch()} returns.
+     *
+     * @throws IOException if it bombs.
+     */
+    public void close()
+        throws IOException
+    {
+        watchService.close();
+    }
+}
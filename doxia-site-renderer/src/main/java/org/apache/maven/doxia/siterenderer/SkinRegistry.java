@@ -0,0 +1,57 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * <p>Registry of opened skins: a skin artifact is opened, its descriptor parsed, its Doxia Sitetools prerequisite
+ * checked and its template classloader created only once, then shared by every site rendering context using it.</p>
+ * <p>Skins are registered by artifact file path and content checksum: a skin file whose content changed is opened
+ * again.</p>
+ *
+ * @since 1.8.2
+ */
+public interface SkinRegistry
+{
+    /**
+     * Plexus lookup role.
+     */
+    String ROLE = SkinRegistry.class.getName();
+
+    /**
+     * Get a skin, opening it if it was not registered yet.
+     *
+     * @param skin the skin artifact, resolved
+     * @return the registered skin
+     * @throws IOException if the skin artifact can't be read
+     * @throws RendererException if the skin descriptor is invalid or if the skin can't be used with current
+     *             Doxia Sitetools version
+     */
+    RegisteredSkin getSkin( Artifact skin )
+        throws IOException, RendererException;
+
+    /**
+     * Release every registered skin: skin files and template classloaders are closed.
+     */
+    void close();
+}
@@ -0,0 +1,211 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Incremental extraction of skin resources to an output directory. Every extracted entry is recorded in a manifest
+ * stored in the state directory, outside the output directory, with the entry size and CRC and the written file
+ * length and modification date:
+ * <ul>
+ * <li>an entry that was not extracted yet is written only if there is no file with the same name, since it may be
+ * a site resource,</li>
+ * <li>an entry that was already extracted is written again only if its content changed, ie a new skin version, and
+ * if the previously written file was not modified or replaced since.</li>
+ * </ul>
+ * Entries can be extracted concurrently.
+ *
+ * @since 1.8.2
+ */
+class SkinResourcesExtractor
+{
+    /**
+     * Location of the manifest, relative to the state directory.
+     */
+    static final String MANIFEST_LOCATION = "skin-resources.properties";
+
+    private final RegisteredSkin skin;
+
+    private final File outputDirectory;
+
+    private final File manifestFile;
+
+    // Properties is synchronized: entries are recorded by concurrent extraction threads
+    private final Properties manifest = new Properties();
+
+    private volatile boolean modified;
+
+    /**
+     * Create an extractor, loading the manifest of previous extractions to the output directory.
+     *
+     * @param skin the skin to extract resources from
+     * @param outputDirectory the output directory
+     * @param stateDirectory the state directory of the output directory, where the manifest is kept
+     * @throws IOException if an existing manifest can't be read
+     */
+    SkinResourcesExtractor( RegisteredSkin skin, File outputDirectory, File stateDirectory )
+        throws IOException
+    {
+        this.skin = skin;
+        this.outputDirectory = outputDirectory;
+        this.manifestFile = new File( stateDirectory, MANIFEST_LOCATION );
+
+        if ( manifestFile.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( manifestFile );
+                manifest.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * Create skin resources directories and find the entries that need to be extracted.
+     *
+     * @return the entries to extract
+     */
+    List<ZipEntry> getModifiedEntries()
+    {
+        List<ZipEntry> modifiedEntries = new ArrayList<ZipEntry>();
+
+        for ( ZipEntry entry : skin.getResourceEntries() )
+        {
+            File destFile = new File( outputDirectory, entry.getName() );
+
+            if ( entry.isDirectory() )
+            {
+                destFile.mkdirs();
+            }
+            else if ( isModified( entry, destFile ) )
+            {
+                modifiedEntries.add( entry );
+            }
+        }
+
+        return modifiedEntries;
+    }
+
+    private boolean isModified( ZipEntry entry, File destFile )
+    {
+        if ( !destFile.exists() )
+        {
+            return true;
+        }
+
+        String recorded = manifest.getProperty( entry.getName() );
+        int separator = ( recorded == null ) ? -1 : recorded.indexOf( ' ' );
+        if ( separator < 0 || !recorded.substring( separator + 1 ).equals( getFileStamp( destFile ) ) )
+        {
+            // don't override existing content that was not extracted from the skin, or that was modified since:
+            // extra site resource
+            return false;
+        }
+
+        // extracted from the skin and not modified since: rewrite only if content changed
+        return !recorded.substring( 0, separator + 1 ).equals( getEntryStamp( entry ) );
+    }
+
+    /**
+     * Extract an entry.
+     *
+     * @param entry the entry to extract
+     * @throws IOException if an I/O error occurs
+     */
+    void extract( ZipEntry entry )
+        throws IOException
+    {
+        File destFile = new File( outputDirectory, entry.getName() );
+        destFile.getParentFile().mkdirs();
+
+        InputStream in = null;
+        OutputStream out = null;
+        try
+        {
+            in = skin.getZipFile().getInputStream( entry );
+            out = new FileOutputStream( destFile );
+            IOUtil.copy( in, out );
+            out.close();
+            out = null;
+        }
+        finally
+        {
+            IOUtil.close( out );
+            IOUtil.close( in );
+        }
+
+        manifest.setProperty( entry.getName(), getEntryStamp( entry ) + getFileStamp( destFile ) );
+        modified = true;
+    }
+
+    /**
+     * Save the manifest of extracted entries, if entries were extracted.
+     *
+     * @throws IOException if the manifest can't be written
+     */
+    void save()
+        throws IOException
+    {
+        if ( !modified )
+        {
+            return;
+        }
+
+        manifestFile.getParentFile().mkdirs();
+
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( manifestFile );
+            manifest.store( out, "Doxia Sitetools skin resources: entry size,crc and extracted file length,date" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private static String getEntryStamp( ZipEntry entry )
+    {
+        return entry.getSize() + "," + Long.toHexString( entry.getCrc() ) + ' ';
+    }
+
+    private static String getFileStamp( File file )
+    {
+        return file.length() + "," + file.lastModified();
+    }
+}
@@ -0,0 +1,96 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader measuring the time spent reading from the underlying reader.
+ *
+ * @since 1.8.2
+ */
+class TimingReader
+    extends FilterReader
+{
+    private long time;
+
+    /**
+     * @param in the reader to measure
+     */
+    TimingReader( Reader in )
+    {
+        super( in );
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return in.read();
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return in.read( cbuf, off, len );
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return in.skip( n );
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return the time spent reading, in nanoseconds
+     */
+    long getTime()
+    {
+        return time;
+    }
+}
@@ -0,0 +1,126 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer measuring the time spent writing to the underlying writer, including flush and close.
+ *
+ * @since 1.8.2
+ */
+class TimingWriter
+    extends FilterWriter
+{
+    private long time;
+
+    /**
+     * @param out the writer to measure
+     */
+    TimingWriter( Writer out )
+    {
+        super( out );
+    }
+
+    @Override
+    public void write( int c )
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            out.write( c );
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            out.write( cbuf, off, len );
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void write( String str, int off, int len )
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            out.write( str, off, len );
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            out.flush();
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            out.close();
+        }
+        finally
+        {
+            time += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return the time spent writing, in nanoseconds
+     */
+    long getTime()
+    {
+        return time;
+    }
+}
@@ -0,0 +1,297 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.doxia.sitetools.CharPipe;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Reader of a Velocity template merge result: the template is merged by a shared pool of background threads, its
+ * output being streamed to the reader through a bounded {@link CharPipe}, then optionally copied to a processed
+ * content file by the same background thread. The merge result is never fully kept in memory.
+ *
+ * @since 1.8.2
+ */
+class VelocityMergeReader
+    extends Reader
+{
+    private static final int PIPE_CAPACITY = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final long MERGER_KEEP_ALIVE_SECONDS = 60;
+
+    private static final ExecutorService MERGERS = createMergers();
+
+    private final CharPipe pipe = new CharPipe( PIPE_CAPACITY );
+
+    private final Future<?> merge;
+
+    /** Written by the merger thread, read once the merge is done. */
+    private Throwable mergeError;
+
+    /** Written by the merger thread, read once the merge is done. */
+    private long mergeCpuTime;
+
+    /**
+     * Start merging a template.
+     *
+     * @param engine the Velocity engine
+     * @param template the template name
+     * @param encoding the template encoding
+     * @param context the Velocity context
+     * @param processedContentFile the file to copy the merge result to, or <code>null</code>
+     */
+    VelocityMergeReader( final VelocityEngine engine, final String template, final String encoding,
+                         final Context context, final File processedContentFile )
+    {
+        merge = MERGERS.submit( new Runnable()
+        {
+            public void run()
+            {
+                merge( engine, template, encoding, context, processedContentFile );
+            }
+        } );
+    }
+
+    private void merge( VelocityEngine engine, String template, String encoding, Context context,
+                        File processedContentFile )
+    {
+        long startCpuTime = RenderingStatistics.getCurrentThreadCpuTime();
+        Writer processedContent = null;
+        try
+        {
+            Writer out = pipe.getWriter();
+
+            if ( processedContentFile != null )
+            {
+                processedContentFile.getParentFile().mkdirs();
+
+                processedContent = WriterFactory.newWriter( processedContentFile, encoding );
+                out = new TeeWriter( out, processedContent );
+            }
+
+            // Velocity writes output token by token: send it by blocks
+            out = new BufferedWriter( out, BUFFER_SIZE );
+
+            engine.mergeTemplate( template, encoding, context, out );
+
+            out.flush();
+
+            if ( processedContent != null )
+            {
+                processedContent.close();
+                processedContent = null;
+            }
+        }
+        catch ( IOException e )
+        {
+            mergeError = e;
+        }
+        catch ( RuntimeException e )
+        {
+            mergeError = e;
+        }
+        catch ( Error e )
+        {
+            mergeError = e;
+        }
+        finally
+        {
+            IOUtil.close( processedContent );
+
+            if ( mergeError != null && processedContentFile != null )
+            {
+                // no partial processed content
+                processedContentFile.delete();
+            }
+
+            mergeCpuTime = RenderingStatistics.getCurrentThreadCpuTime() - startCpuTime;
+
+            pipe.closeWriter();
+        }
+    }
+
+    /**
+     * Get the CPU time used by the merge, once finished.
+     *
+     * @return the CPU time used by the merger thread, in nanoseconds, or <code>0</code> if not supported by the JVM
+     */
+    long getMergeCpuTime()
+    {
+        return mergeCpuTime;
+    }
+
+    @Override
+    public int read( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        return pipe.getReader().read( cbuf, off, len );
+    }
+
+    /**
+     * Stop reading: remaining merge output is discarded, but still copied to the processed content file. Waits for
+     * the end of the merge.
+     *
+     * @throws IOException if interrupted while waiting for the merge
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        pipe.closeReader();
+
+        try
+        {
+            merge.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for Velocity merge" );
+        }
+        catch ( ExecutionException e )
+        {
+            // merge() catches everything
+            throw new IllegalStateException( e.getCause() );
+        }
+    }
+
+    /**
+     * Close the reader and report the merge result.
+     *
+     * @throws IOException if the processed content file can't be written
+     * @throws org.apache.velocity.exception.VelocityException if the merge failed
+     */
+    void finish()
+        throws IOException
+    {
+        close();
+
+        if ( mergeError instanceof IOException )
+        {
+            throw (IOException) mergeError;
+        }
+        if ( mergeError instanceof RuntimeException )
+        {
+            throw (RuntimeException) mergeError;
+        }
+        if ( mergeError instanceof Error )
+        {
+            throw (Error) mergeError;
+        }
+    }
+
+    /**
+     * Mergers are bounded by the number of processors: extra documents wait in the queue for a free merger, which is
+     * always released once its reader is consumed or closed.
+     */
+    private static ExecutorService createMergers()
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( threads, threads, MERGER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), new MergerThreadFactory() );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    /**
+     * Daemon merger threads: an unfinished merge doesn't prevent the JVM from exiting.
+     */
+    private static class MergerThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "doxia-velocity-merge-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+    /**
+     * Writer copying content to 2 writers.
+     */
+    private static class TeeWriter
+        extends Writer
+    {
+        private final Writer first;
+
+        private final Writer second;
+
+        TeeWriter( Writer first, Writer second )
+        {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+            throws IOException
+        {
+            first.write( cbuf, off, len );
+            second.write( cbuf, off, len );
+        }
+
+        @Override
+        public void write( String str, int off, int len )
+            throws IOException
+        {
+            first.write( str, off, len );
+            second.write( str, off, len );
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            // closed by the merger
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Site output streamed into a ZIP archive, that can be deployed as-is or used as a JAR: files are deflated in
+ * parallel by worker threads, and written to the archive in the order they were closed.
+ * <p>Unlike <code>java.util.zip.ZipOutputStream</code>, which deflates entries one after the other on the writing
+ * thread, the archive is written directly: local headers and data of each entry, then the central directory, with
+ * ZIP64 end records when the archive has more than 65534 entries or is larger than 4 GB.</p>
+ * <p>Archive entries can't be replaced: creating a file that already exists fails.</p>
+ *
+ * @since 1.8.2
+ */
+public class ZipSiteOutput
+    implements SiteOutput
+{
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int ZIP64_ENTRIES_MAGIC = 0xFFFF;
+
+    private static final int VERSION = 20;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    /** general purpose flag: names are UTF-8 encoded */
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** size of the ZIP64 end of central directory record, without its signature and size fields */
+    private static final int ZIP64_END_SIZE = 44;
+
+    private static final int BYTE_MASK = 0xff;
+
+    private static final int SHORT_MASK = 0xffff;
+
+    /** MS-DOS dates count years from 1980 */
+    private static final int DOS_EPOCH_YEAR = 1980;
+
+    private static final int DOS_YEAR_SHIFT = 25;
+
+    private static final int DOS_MONTH_SHIFT = 21;
+
+    private static final int DOS_DAY_SHIFT = 16;
+
+    private static final int DOS_HOUR_SHIFT = 11;
+
+    private static final int DOS_MINUTE_SHIFT = 5;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingEntries;
+
+    private final int dosTime;
+
+    /** entries being deflated, in the order they were closed */
+    private final Deque<Future<Entry>> pendingEntries = new ArrayDeque<Future<Entry>>();
+
+    private final Set<String> names = new HashSet<String>();
+
+    private final List<Entry> writtenEntries = new ArrayList<Entry>();
+
+    private long position;
+
+    private boolean closed;
+
+    /**
+     * Create a ZIP site output deflating files with one thread per available processor.
+     *
+     * @param out the stream to write the archive to, closed with this output
+     */
+    public ZipSiteOutput( OutputStream out )
+    {
+        this( out, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Create a ZIP site output.
+     *
+     * @param out the stream to write the archive to, closed with this output
+     * @param threads the number of threads deflating files
+     */
+    public ZipSiteOutput( OutputStream out, int threads )
+    {
+        int workers = Math.max( 1, threads );
+
+        this.out = new BufferedOutputStream( out, 64 * 1024 );
+        this.executor = Executors.newFixedThreadPool( workers, new ZipThreadFactory() );
+        this.maxPendingEntries = 2 * workers;
+        this.dosTime = toDosTime( System.currentTimeMillis() );
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The file is added to the archive once the stream is closed.
+     */
+    public OutputStream newOutputStream( final String path )
+        throws IOException
+    {
+        synchronized ( this )
+        {
+            checkOpen();
+
+            if ( !names.add( path ) )
+            {
+                throw new IOException( "Archive entry " + path + " already exists" );
+            }
+        }
+
+        return new ByteArrayOutputStream()
+        {
+            private boolean entryClosed;
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                if ( !entryClosed )
+                {
+                    entryClosed = true;
+                    addEntry( path, buf, count );
+                }
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    public synchronized boolean exists( String path )
+    {
+        return names.contains( path );
+    }
+
+    /**
+     * @return <code>null</code>: files are written to an archive
+     */
+    public File getDirectory()
+    {
+        return null;
+    }
+
+    private void addEntry( final String path, final byte[] content, final int length )
+        throws IOException
+    {
+        synchronized ( this )
+        {
+            checkOpen();
+
+            pendingEntries.add( executor.submit( new Callable<Entry>()
+            {
+                public Entry call()
+                    throws IOException
+                {
+                    return deflate( path, content, length );
+                }
+            } ) );
+
+            // write entries deflated so far, and bound the memory held by entries waiting to be written
+            while ( !pendingEntries.isEmpty()
+                && ( pendingEntries.peek().isDone() || pendingEntries.size() > maxPendingEntries ) )
+            {
+                writeEntry( waitFor( pendingEntries.poll() ) );
+            }
+        }
+    }
+
+    /**
+     * Write pending entries and the central directory, then close the archive stream. The archive stream is closed
+     * even if the archive can't be completed.
+     *
+     * @throws IOException if the archive can't be written
+     */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            synchronized ( this )
+            {
+                if ( closed )
+                {
+                    return;
+                }
+                closed = true;
+
+                while ( !pendingEntries.isEmpty() )
+                {
+                    writeEntry( waitFor( pendingEntries.poll() ) );
+                }
+
+                writeCentralDirectory();
+            }
+
+            out.close();
+        }
+        finally
+        {
+            executor.shutdownNow();
+
+            // no-op once closed above
+            IOUtil.close( out );
+        }
+    }
+
+    private void checkOpen()
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Site archive already closed" );
+        }
+    }
+
+    private static Entry waitFor( Future<Entry> future )
+        throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException( "Interrupted while deflating site archive entry" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( "Unable to deflate site archive entry: " + e.getCause().getMessage(),
+                                   e.getCause() );
+        }
+    }
+
+    private static Entry deflate( String path, byte[] content, int length )
+        throws IOException
+    {
+        CRC32 crc = new CRC32();
+        crc.update( content, 0, length );
+
+        // raw deflate data, without zlib header: ZIP entries data
+        Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+        try
+        {
+            deflater.setInput( content, 0, length );
+            deflater.finish();
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream( Math.max( 64, length / 2 ) );
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while ( !deflater.finished() )
+            {
+                data.write( buffer, 0, deflater.deflate( buffer ) );
+            }
+
+            return new Entry( path.getBytes( "UTF-8" ), crc.getValue(), length, data.toByteArray() );
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Write an entry local header and data. Entry sizes are lower than 2 GB: only offsets may need ZIP64.
+     */
+    private void writeEntry( Entry entry )
+        throws IOException
+    {
+        entry.offset = position;
+
+        writeInt( LOCAL_HEADER_SIGNATURE );
+        writeShort( VERSION );
+        writeShort( UTF8_FLAG );
+        writeShort( DEFLATED );
+        writeInt( dosTime );
+        writeInt( entry.crc );
+        writeInt( entry.data.length );
+        writeInt( entry.size );
+        writeShort( entry.name.length );
+        writeShort( 0 );
+        write( entry.name );
+        write( entry.data );
+
+        // only central directory information is kept
+        entry.data = null;
+        writtenEntries.add( entry );
+    }
+
+    private void writeCentralDirectory()
+        throws IOException
+    {
+        long centralDirectoryOffset = position;
+
+        for ( Entry entry : writtenEntries )
+        {
+            boolean zip64 = entry.offset >= ZIP64_MAGIC;
+
+            writeInt( CENTRAL_HEADER_SIGNATURE );
+            writeShort( VERSION_ZIP64 );
+            writeShort( zip64 ? VERSION_ZIP64 : VERSION );
+            writeShort( UTF8_FLAG );
+            writeShort( DEFLATED );
+            writeInt( dosTime );
+            writeInt( entry.crc );
+            writeInt( entry.compressedSize );
+            writeInt( entry.size );
+            writeShort( entry.name.length );
+            writeShort( zip64 ? 12 : 0 );
+            // comment length, disk number, internal and external attributes
+            writeShort( 0 );
+            writeShort( 0 );
+            writeShort( 0 );
+            writeInt( 0 );
+            writeInt( zip64 ? ZIP64_MAGIC : entry.offset );
+            write( entry.name );
+            if ( zip64 )
+            {
+                // ZIP64 extended information extra field, with the local header offset only
+                writeShort( 0x0001 );
+                writeShort( 8 );
+                writeLong( entry.offset );
+            }
+        }
+
+        long centralDirectorySize = position - centralDirectoryOffset;
+        long count = writtenEntries.size();
+
+        if ( count >= ZIP64_ENTRIES_MAGIC || centralDirectoryOffset >= ZIP64_MAGIC
+            || centralDirectorySize >= ZIP64_MAGIC )
+        {
+            long zip64EndOffset = position;
+
+            // ZIP64 end of central directory record
+            writeInt( ZIP64_END_SIGNATURE );
+            writeLong( ZIP64_END_SIZE );
+            writeShort( VERSION_ZIP64 );
+            writeShort( VERSION_ZIP64 );
+            writeInt( 0 );
+            writeInt( 0 );
+            writeLong( count );
+            writeLong( count );
+            writeLong( centralDirectorySize );
+            writeLong( centralDirectoryOffset );
+
+            // ZIP64 end of central directory locator
+            writeInt( ZIP64_LOCATOR_SIGNATURE );
+            writeInt( 0 );
+            writeLong( zip64EndOffset );
+            writeInt( 1 );
+        }
+
+        // end of central directory record
+        writeInt( END_SIGNATURE );
+        writeShort( 0 );
+        writeShort( 0 );
+        writeShort( (int) Math.min( count, ZIP64_ENTRIES_MAGIC ) );
+        writeShort( (int) Math.min( count, ZIP64_ENTRIES_MAGIC ) );
+        writeInt( Math.min( centralDirectorySize, ZIP64_MAGIC ) );
+        writeInt( Math.min( centralDirectoryOffset, ZIP64_MAGIC ) );
+        writeShort( 0 );
+    }
+
+    private void writeShort( int value )
+        throws IOException
+    {
+        out.write( value & BYTE_MASK );
+        out.write( ( value >>> 8 ) & BYTE_MASK );
+        position += 2;
+    }
+
+    private void writeInt( long value )
+        throws IOException
+    {
+        writeShort( (int) ( value & SHORT_MASK ) );
+        writeShort( (int) ( ( value >>> 16 ) & SHORT_MASK ) );
+    }
+
+    private void writeLong( long value )
+        throws IOException
+    {
+        writeInt( value & ZIP64_MAGIC );
+        writeInt( value >>> 32 );
+    }
+
+    private void write( byte[] bytes )
+        throws IOException
+    {
+        out.write( bytes );
+        position += bytes.length;
+    }
+
+    /**
+     * Convert a time to MS-DOS date and time, as used in ZIP headers: date in high 16 bits, time in low 16 bits.
+     */
+    private static int toDosTime( long time )
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis( time );
+
+        int year = calendar.get( Calendar.YEAR );
+        if ( year < DOS_EPOCH_YEAR )
+        {
+            // 1980-01-01 00:00
+            return ( 1 << DOS_MONTH_SHIFT ) | ( 1 << DOS_DAY_SHIFT );
+        }
+
+        return ( year - DOS_EPOCH_YEAR ) << DOS_YEAR_SHIFT | ( calendar.get( Calendar.MONTH ) + 1 ) << DOS_MONTH_SHIFT
+            | calendar.get( Calendar.DAY_OF_MONTH ) << DOS_DAY_SHIFT
+            | calendar.get( Calendar.HOUR_OF_DAY ) << DOS_HOUR_SHIFT
+            | calendar.get( Calendar.MINUTE ) << DOS_MINUTE_SHIFT | calendar.get( Calendar.SECOND ) >> 1;
+    }
+
+    /**
+     * A deflated archive entry.
+     */
+    private static class Entry
+    {
+        private final byte[] name;
+
+        private final long crc;
+
+        private final int size;
+
+        private final int compressedSize;
+
+        private byte[] data;
+
+        private long offset;
+
+        Entry( byte[] name, long crc, int size, byte[] data )
+        {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = data.length;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Creates daemon threads deflating archive entries.
+     */
+    private static class ZipThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "doxia-site-renderer-zip-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package org.apache.maven.doxia.siterenderer.sink;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Body content store of {@link SiteRendererSink}: content is appended to fixed size chunks, that are kept for reuse
+ * after {@link #reset()}. <code>$relativePath</code> placeholders are detected while writing and only their offsets
+ * are recorded: they are resolved once, when the body is emitted with {@link #writeTo(Writer, String)}.
+ *
+ * @since 1.8.2
+ */
+final class BodyWriter
+    extends Writer
+{
+    /**
+     * The placeholder replaced with the relative path to the site base directory when the body is emitted.
+     */
+    static final String RELATIVE_PATH = "$relativePath";
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final List<char[]> chunks = new ArrayList<char[]>();
+
+    /** total number of characters stored in chunks */
+    private int length;
+
+    /** offsets of the placeholders found in content, in increasing order */
+    private int[] placeholders = new int[16];
+
+    private int placeholderCount;
+
+    /** number of placeholder characters matched by the last characters written, not stored yet */
+    private int matched;
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( int c )
+    {
+        if ( matched == 0 && c != '$' )
+        {
+            store( (char) c );
+        }
+        else
+        {
+            match( (char) c );
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( char[] cbuf, int off, int len )
+    {
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
+        {
+            char c = cbuf[i];
+
+            if ( matched > 0 || c == '$' )
+            {
+                store( cbuf, start, i - start );
+                match( c );
+                start = i + 1;
+            }
+        }
+
+        store( cbuf, start, end - start );
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write( String str, int off, int len )
+    {
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
+        {
+            char c = str.charAt( i );
+
+            if ( matched > 0 || c == '$' )
+            {
+                store( str, start, i - start );
+                match( c );
+                start = i + 1;
+            }
+        }
+
+        store( str, start, end - start );
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush()
+    {
+        // nop
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+        // nop
+    }
+
+    /**
+     * Discard the content, keeping allocated chunks for the next content.
+     */
+    void reset()
+    {
+        length = 0;
+        placeholderCount = 0;
+        matched = 0;
+    }
+
+    /**
+     * Get the number of characters that can be stored in chunks allocated so far.
+     *
+     * @return the capacity
+     */
+    int capacity()
+    {
+        return chunks.size() * CHUNK_SIZE;
+    }
+
+    /**
+     * Get the length of the body, once placeholders are resolved.
+     *
+     * @param relativePath the value of the placeholders, or <code>null</code> to keep them as-is
+     * @return the resolved body length
+     */
+    int length( String relativePath )
+    {
+        int placeholderLength = ( relativePath == null ) ? RELATIVE_PATH.length() : relativePath.length();
+        return length + placeholderCount * placeholderLength + matched;
+    }
+
+    /**
+     * Emit the body content, with placeholders resolved.
+     *
+     * @param out the writer to write the content to
+     * @param relativePath the value of the placeholders, or <code>null</code> to keep them as-is
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo( Writer out, String relativePath )
+        throws IOException
+    {
+        String placeholder = ( relativePath == null ) ? RELATIVE_PATH : relativePath;
+
+        int offset = 0;
+        for ( int i = 0; i < placeholderCount; i++ )
+        {
+            writeChunks( out, offset, placeholders[i] );
+            out.write( placeholder );
+            offset = placeholders[i];
+        }
+        writeChunks( out, offset, length );
+
+        if ( matched > 0 )
+        {
+            // the content ends with the beginning of the placeholder
+            out.write( RELATIVE_PATH, 0, matched );
+        }
+    }
+
+    /**
+     * Get the body content, with placeholders resolved.
+     *
+     * @param relativePath the value of the placeholders, or <code>null</code> to keep them as-is
+     * @return the body content
+     */
+    String toString( String relativePath )
+    {
+        StringBuilder sb = new StringBuilder( length( relativePath ) );
+        try
+        {
+            writeTo( new StringBuilderWriter( sb ), relativePath );
+        }
+        catch ( IOException e )
+        {
+            // can't happen with a StringBuilder
+            throw new IllegalStateException( e );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Update the placeholder matching state with a character that is either a <code>$</code> or a character
+     * following the beginning of a placeholder.
+     */
+    private void match( char c )
+    {
+        if ( c == RELATIVE_PATH.charAt( matched ) )
+        {
+            if ( ++matched == RELATIVE_PATH.length() )
+            {
+                addPlaceholder();
+                matched = 0;
+            }
+            return;
+        }
+
+        // not a placeholder: characters matched until now are plain content
+        store( RELATIVE_PATH, 0, matched );
+        matched = 0;
+
+        if ( c == '$' )
+        {
+            matched = 1;
+        }
+        else
+        {
+            store( c );
+        }
+    }
+
+    private void addPlaceholder()
+    {
+        if ( placeholderCount == placeholders.length )
+        {
+            placeholders = Arrays.copyOf( placeholders, placeholderCount * 2 );
+        }
+        placeholders[placeholderCount++] = length;
+    }
+
+    private char[] chunk( int index )
+    {
+        if ( index == chunks.size() )
+        {
+            chunks.add( new char[CHUNK_SIZE] );
+        }
+        return chunks.get( index );
+    }
+
+    private void store( char c )
+    {
+        chunk( length / CHUNK_SIZE )[length % CHUNK_SIZE] = c;
+        length++;
+    }
+
+    private void store( char[] cbuf, int off, int len )
+    {
+        while ( len > 0 )
+        {
+            int pos = length % CHUNK_SIZE;
+            int n = Math.min( len, CHUNK_SIZE - pos );
+            System.arraycopy( cbuf, off, chunk( length / CHUNK_SIZE ), pos, n );
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void store( String str, int off, int len )
+    {
+        while ( len > 0 )
+        {
+            int pos = length % CHUNK_SIZE;
+            int n = Math.min( len, CHUNK_SIZE - pos );
+            str.getChars( off, off + n, chunk( length / CHUNK_SIZE ), pos );
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void writeChunks( Writer out, int start, int end )
+        throws IOException
+    {
+        int offset = start;
+        while ( offset < end )
+        {
+            int pos = offset % CHUNK_SIZE;
+            int n = Math.min( end - offset, CHUNK_SIZE - pos );
+            out.write( chunks.get( offset / CHUNK_SIZE ), pos, n );
+            offset += n;
+        }
+    }
+
+    /**
+     * Unsynchronized writer to a StringBuilder.
+     */
+    private static class StringBuilderWriter
+        extends Writer
+    {
+        private final StringBuilder sb;
+
+        StringBuilderWriter( StringBuilder sb )
+        {
+            this.sb = sb;
+        }
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            sb.append( cbuf, off, len );
+        }
+
+        @Override
+        public void write( String str, int off, int len )
+        {
+            sb.append( str, off, off + len );
+        }
+
+        @Override
+        public void flush()
+        {
+            // nop
+        }
+
+        @Override
+        public void close()
+        {
+            // nop
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.maven.doxia.siterenderer.sink;
  * under the License.
  */
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -26,7 +27,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.html.HTML.Attribute;
+import javax.swing.text.html.HTML.Tag;
 
 import org.apache.maven.doxia.module.xhtml.XhtmlSink;
 import org.apache.maven.doxia.sink.Sink;
@@ -52,7 +55,7 @@ public class SiteRendererSink
 
     private String title = "";
 
-    private List<String> authors = new ArrayList<String>();
+    private final List<String> authors = new ArrayList<String>();
 
     private final StringWriter headWriter;
 
@@ -66,10 +69,15 @@ public class SiteRendererSink
 
     private Set<String> anchorsInSectionTitle;
 
-    private final Writer writer;
+    private final BodyWriter bodyWriter;
 
     private RenderingContext renderingContext;
 
+    /** Mirror of the private <code>AbstractXmlSink</code> flag, that can't be restored when the sink is reused. */
+    private boolean firstTag = true;
+
+    private boolean insertNewline = true;
+
     /**
      * Construct a new SiteRendererSink for a document.
      *
@@ -77,24 +85,117 @@ public class SiteRendererSink
      */
     public SiteRendererSink( RenderingContext renderingContext )
     {
-        this( new StringWriter(), renderingContext );
+        this( new BodyWriter(), renderingContext );
     }
 
     /**
      * Construct a new SiteRendererSink for a document.
      *
-     * @param writer the writer for the sink.
+     * @param bodyWriter the body writer for the sink.
      * @param renderingContext the document's RenderingContext.
      */
-    private SiteRendererSink( StringWriter writer, RenderingContext renderingContext )
+    private SiteRendererSink( BodyWriter bodyWriter, RenderingContext renderingContext )
     {
-        super( writer );
+        super( bodyWriter );
 
-        this.writer = writer;
+        this.bodyWriter = bodyWriter;
         this.headWriter = new StringWriter();
         this.renderingContext = renderingContext;
     }
 
+    /**
+     * Reset the sink to render another document, keeping allocated buffers. Contents of the previous document,
+     * including the authors list, must not be used anymore.
+     *
+     * @param renderingContext the RenderingContext of the next document
+     * @since 1.8.2
+     */
+    public void reset( RenderingContext renderingContext )
+    {
+        this.renderingContext = renderingContext;
+
+        date = "";
+        title = "";
+        authors.clear();
+        headWriter.getBuffer().setLength( 0 );
+        bodyWriter.reset();
+
+        sectionTitleBuffer = null;
+        sectionTitleWriteBuffer = null;
+        sectionHasID = false;
+        isSectionTitle = false;
+        anchorsInSectionTitle = null;
+
+        // state set by the XhtmlBaseSink and AbstractXmlSink constructors, not restored by init()
+        setInsertNewline( true );
+        firstTag = true;
+
+        init();
+    }
+
+    /**
+     * Get the number of characters the buffers of this sink can hold without growing.
+     *
+     * @return the buffers capacity
+     */
+    int getBufferCapacity()
+    {
+        return bodyWriter.capacity() + headWriter.getBuffer().capacity();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The body writer holds no resource and is kept open, for the sink to be
+     * {@link #reset(RenderingContext) reset} and reused.
+     */
+    @Override
+    public void close()
+    {
+        flush();
+
+        firstTag = true;
+
+        init();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setInsertNewline( boolean insertNewline )
+    {
+        super.setInsertNewline( insertNewline );
+
+        this.insertNewline = insertNewline;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * No newline is inserted before the first tag of a document, like with a new sink, even if the sink is reused.
+     */
+    @Override
+    protected void writeStartTag( Tag t, MutableAttributeSet att, boolean isSimpleTag )
+    {
+        if ( firstTag && insertNewline )
+        {
+            super.setInsertNewline( false );
+            try
+            {
+                super.writeStartTag( t, att, isSimpleTag );
+            }
+            finally
+            {
+                super.setInsertNewline( true );
+            }
+        }
+        else
+        {
+            super.writeStartTag( t, att, isSimpleTag );
+        }
+
+        firstTag = false;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void title_()
@@ -271,44 +372,50 @@ public class SiteRendererSink
         super.text( text );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * <code>$relativePath</code> placeholders in body content are not replaced here but recorded by the body writer,
+     * to be resolved once when the body is emitted.
+     */
     @Override
     protected void write( String text )
     {
-        String txt = text;
-
         if ( isHeadFlag() )
         {
-            headWriter.write( unifyEOLs( txt ) );
+            headWriter.write( unifyEOLs( text ) );
 
             return;
         }
 
-        if ( renderingContext != null )
-        {
-            String relativePathToBasedir = renderingContext.getRelativePath();
-
-            if ( relativePathToBasedir == null )
-            {
-                txt = StringUtils.replace( txt, "$relativePath", "." );
-            }
-            else
-            {
-                txt = StringUtils.replace( txt, "$relativePath", relativePathToBasedir );
-            }
-        }
-
         if ( sectionTitleWriteBuffer != null )
         {
             // this implies we're inside a section title, collect text events for anchor generation
-            sectionTitleWriteBuffer.append( txt );
+            sectionTitleWriteBuffer.append( text );
         }
         else
         {
-            super.write( txt );
+            super.write( text );
         }
     }
 
+    /**
+     * Get the value of <code>$relativePath</code> placeholders in body content.
+     *
+     * @return the relative path to the site base directory, or <code>null</code> if placeholders must be kept as-is
+     */
+    private String getRelativePathValue()
+    {
+        if ( renderingContext == null )
+        {
+            return null;
+        }
+
+        String relativePathToBasedir = renderingContext.getRelativePath();
+
+        return ( relativePathToBasedir == null ) ? "." : relativePathToBasedir;
+    }
+
     // DocumentContent interface
 
     /** {@inheritDoc} */
@@ -332,7 +439,21 @@ public class SiteRendererSink
     /** {@inheritDoc} */
     public String getBody()
     {
-        return writer.toString();
+        return bodyWriter.toString( getRelativePathValue() );
+    }
+
+    /**
+     * Write the html body of the document with <code>$relativePath</code> placeholders kept as-is, to be resolved
+     * later for the document location.
+     *
+     * @param writer the writer to write the document body to
+     * @throws IOException if an I/O error occurs
+     * @since 1.8.2
+     */
+    public void writeUnresolvedBody( Writer writer )
+        throws IOException
+    {
+        bodyWriter.writeTo( writer, null );
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,115 @@
+package org.apache.maven.doxia.siterenderer.sink;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.doxia.siterenderer.RenderingContext;
+
+/**
+ * Pool of {@link SiteRendererSink} instances, to reuse their buffers when rendering many documents. Sinks are
+ * released once their content has been merged into the site template, possibly by another thread than the one that
+ * parsed the document: the pool is shared by all threads.
+ * <p>The number of pooled sinks is bounded, and sinks whose buffers grew over a size cap are not kept, for one large
+ * document to not retain memory for the rest of the rendering.</p>
+ *
+ * @since 1.8.2
+ */
+public class SiteRendererSinkPool
+{
+    /**
+     * Default maximum number of pooled sinks.
+     */
+    public static final int DEFAULT_MAX_SINKS = 32;
+
+    /**
+     * Default maximum buffers capacity of a pooled sink, in characters.
+     */
+    public static final int DEFAULT_MAX_BUFFER_CAPACITY = 1024 * 1024;
+
+    private final Queue<SiteRendererSink> sinks = new ConcurrentLinkedQueue<SiteRendererSink>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int maxSinks;
+
+    private final int maxBufferCapacity;
+
+    /**
+     * Create a pool with default limits.
+     */
+    public SiteRendererSinkPool()
+    {
+        this( DEFAULT_MAX_SINKS, DEFAULT_MAX_BUFFER_CAPACITY );
+    }
+
+    /**
+     * @param maxSinks the maximum number of pooled sinks
+     * @param maxBufferCapacity the maximum buffers capacity of a pooled sink, in characters
+     */
+    public SiteRendererSinkPool( int maxSinks, int maxBufferCapacity )
+    {
+        this.maxSinks = maxSinks;
+        this.maxBufferCapacity = maxBufferCapacity;
+    }
+
+    /**
+     * Get a sink for a document, reset from the pool or new if the pool is empty.
+     *
+     * @param renderingContext the document's RenderingContext
+     * @return a sink, to {@link #release(SiteRendererSink) release} once its content is not used anymore
+     */
+    public SiteRendererSink acquire( RenderingContext renderingContext )
+    {
+        SiteRendererSink sink = sinks.poll();
+        if ( sink == null )
+        {
+            return new SiteRendererSink( renderingContext );
+        }
+
+        size.decrementAndGet();
+        sink.reset( renderingContext );
+        return sink;
+    }
+
+    /**
+     * Return a sink to the pool: its content must not be used anymore.
+     *
+     * @param sink the sink
+     */
+    public void release( SiteRendererSink sink )
+    {
+        if ( sink.getBufferCapacity() > maxBufferCapacity )
+        {
+            return;
+        }
+
+        if ( size.incrementAndGet() > maxSinks )
+        {
+            size.decrementAndGet();
+            return;
+        }
+
+        sinks.offer( sink );
+    }
+}
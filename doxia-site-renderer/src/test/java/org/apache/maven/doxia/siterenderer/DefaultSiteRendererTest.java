@@ -34,24 +34,33 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.doxia.Doxia;
 import org.apache.maven.doxia.site.decoration.DecorationModel;
 import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
 import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
+import org.apache.maven.doxia.sitetools.FlightRecording;
 import org.apache.maven.doxia.xsd.AbstractXmlValidator;
 import org.codehaus.plexus.PlexusTestCase;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
 import org.xml.sax.EntityResolver;
@@ -193,6 +202,353 @@ public class DefaultSiteRendererTest
         validatePages();
     }
 
+    /**
+     * @throws Exception if something goes wrong.
+     */
+    public void testRenderConcurrently()
+        throws Exception
+    {
+        File serialOutput = getTestFile( "target/output-serial" );
+        File concurrentOutput = getTestFile( "target/output-concurrent" );
+        FileUtils.deleteDirectory( serialOutput );
+        FileUtils.deleteDirectory( concurrentOutput );
+
+        DecorationModel decoration = new DecorationXpp3Reader()
+            .read( new FileReader( getTestFile( "src/test/resources/site/site.xml" ) ) );
+
+        SiteRenderingContext ctxt = getSiteRenderingContext( decoration, "src/test/resources/site", false );
+        ctxt.setRootDirectory( getTestFile( "" ) );
+        renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, serialOutput );
+
+        ctxt = getSiteRenderingContext( decoration, "src/test/resources/site", false );
+        ctxt.setRootDirectory( getTestFile( "" ) );
+        ctxt.setRenderingThreads( 4 );
+        renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, concurrentOutput );
+
+        List<String> files = FileUtils.getFileNames( serialOutput, "**/*.html", null, false );
+        assertFalse( files.isEmpty() );
+        assertEquals( files.size(), FileUtils.getFileNames( concurrentOutput, "**/*.html", null, false ).size() );
+
+        for ( String file : files )
+        {
+            assertEquals( "concurrent rendering of " + file,
+                          FileUtils.fileRead( new File( serialOutput, file ), "UTF-8" ),
+                          FileUtils.fileRead( new File( concurrentOutput, file ), "UTF-8" ) );
+        }
+    }
+
+    /**
+     * @throws Exception if something goes wrong.
+     */
+    public void testRenderToArchive()
+        throws Exception
+    {
+        File fileOutput = getTestFile( "target/output-archive-files" );
+        File archive = getTestFile( "target/output-archive.zip" );
+        FileUtils.deleteDirectory( fileOutput );
+
+        DecorationModel decoration = new DecorationXpp3Reader()
+            .read( new FileReader( getTestFile( "src/test/resources/site/site.xml" ) ) );
+
+        SiteRenderingContext ctxt = getSiteRenderingContext( decoration, "src/test/resources/site", false );
+        ctxt.setRootDirectory( getTestFile( "" ) );
+        renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, fileOutput );
+
+        ctxt = getSiteRenderingContext( decoration, "src/test/resources/site", false );
+        ctxt.setRootDirectory( getTestFile( "" ) );
+        ctxt.setRenderingThreads( 4 );
+        SiteOutput output = new ZipSiteOutput( new FileOutputStream( archive ), 2 );
+        try
+        {
+            renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, output );
+            renderer.copyResources( ctxt, output );
+        }
+        finally
+        {
+            output.close();
+        }
+
+        List<String> files = FileUtils.getFileNames( fileOutput, "**/*.html", null, false );
+        assertFalse( files.isEmpty() );
+
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            for ( String file : files )
+            {
+                ZipEntry entry = zip.getEntry( file.replace( File.separatorChar, '/' ) );
+                assertNotNull( "archived " + file, entry );
+                assertEquals( "archived " + file, FileUtils.fileRead( new File( fileOutput, file ), "UTF-8" ),
+                              IOUtil.toString( zip.getInputStream( entry ), "UTF-8" ) );
+            }
+            assertNotNull( zip.getEntry( "css/site.css" ) );
+            // no incremental rendering into an archive
+            assertNull( zip.getEntry( RenderManifest.MANIFEST_LOCATION ) );
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * @throws Exception if something goes wrong.
+     */
+    public void testLocateDocumentFilesCaseClash()
+        throws Exception
+    {
+        File siteDirectory = getTestFile( "target/case-clash/src/site" );
+        FileUtils.deleteDirectory( siteDirectory );
+        new File( siteDirectory, "apt" ).mkdirs();
+        new File( siteDirectory, "xdoc" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8", "Index" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/page.apt" ), "UTF-8", "Page" );
+        FileUtils.fileWrite( new File( siteDirectory, "xdoc/Page.xml" ), "UTF-8", "<document/>" );
+
+        SiteRenderingContext ctxt = new SiteRenderingContext();
+        ctxt.addSiteDirectory( siteDirectory );
+        ctxt.setRootDirectory( getTestFile( "target/case-clash" ) );
+
+        try
+        {
+            Map<String, DocumentRenderer> files = renderer.locateDocumentFiles( ctxt );
+
+            // case clash is only a warning on case-sensitive file systems
+            assertFalse( Os.isFamily( Os.FAMILY_WINDOWS ) );
+            assertEquals( 3, files.size() );
+            assertTrue( files.containsKey( "page.html" ) );
+            assertTrue( files.containsKey( "Page.html" ) );
+        }
+        catch ( RendererException e )
+        {
+            assertTrue( Os.isFamily( Os.FAMILY_WINDOWS ) );
+            assertTrue( e.getMessage().contains( "clashes with existing" ) );
+        }
+    }
+
+    /**
+     * @throws Exception if something goes wrong.
+     */
+    public void testLocateDocumentFilesExcludes()
+        throws Exception
+    {
+        File siteDirectory = getTestFile( "target/locate-excludes/src/site" );
+        File generatedSiteDirectory = getTestFile( "target/locate-excludes/target/generated-site" );
+        FileUtils.deleteDirectory( getTestFile( "target/locate-excludes" ) );
+        new File( siteDirectory, "apt/sub" ).mkdirs();
+        new File( siteDirectory, "apt/drafts" ).mkdirs();
+        new File( siteDirectory, "apt/.svn" ).mkdirs();
+        new File( siteDirectory, "resources" ).mkdirs();
+        new File( generatedSiteDirectory, "xdoc" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8", "Index" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/sub/page.APT" ), "UTF-8", "Page" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/velocity.apt.vm" ), "UTF-8", "Velocity" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/drafts/draft.apt" ), "UTF-8", "Draft" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/.svn/svn.apt" ), "UTF-8", "Svn" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/notes.txt" ), "UTF-8", "Notes" );
+        FileUtils.fileWrite( new File( siteDirectory, "resources/resource.apt" ), "UTF-8", "Resource" );
+        FileUtils.fileWrite( new File( generatedSiteDirectory, "xdoc/generated.xml" ), "UTF-8", "<document/>" );
+
+        SiteRenderingContext ctxt = new SiteRenderingContext();
+        ctxt.addSiteDirectory( siteDirectory );
+        ctxt.addSiteDirectory( generatedSiteDirectory );
+        ctxt.setRootDirectory( getTestFile( "target/locate-excludes" ) );
+        ctxt.setModuleExcludes( Collections.singletonMap( "apt", "drafts/**" ) );
+
+        Map<String, DocumentRenderer> files = renderer.locateDocumentFiles( ctxt );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "index.html", "sub/page.html", "velocity.html",
+                                                          "generated.html" ) ), files.keySet() );
+        assertEquals( "true", files.get( "velocity.html" ).getRenderingContext().getAttribute( "velocity" ) );
+        assertNull( files.get( "index.html" ).getRenderingContext().getAttribute( "velocity" ) );
+        assertEquals( "xdoc", files.get( "generated.html" ).getRenderingContext().getParserId() );
+    }
+
+    public void testParseCache()
+        throws Exception
+    {
+        File baseDirectory = getTestFile( "target/parse-cache" );
+        FileUtils.deleteDirectory( baseDirectory );
+        File siteDirectory = new File( baseDirectory, "src/site" );
+        new File( siteDirectory, "apt" ).mkdirs();
+        File source = new File( siteDirectory, "apt/index.apt" );
+        FileUtils.fileWrite( source, "UTF-8", " ------\n Parsed title\n ------\n\nParsed content\n" );
+        File cacheDirectory = new File( baseDirectory, "parse-cache" );
+        File outputDirectory = new File( baseDirectory, "output" );
+
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( "First" );
+        SiteRenderingContext ctxt = getSiteRenderingContext( decoration, "target/parse-cache/src/site", false );
+        ctxt.setRootDirectory( baseDirectory );
+        ctxt.setParseCacheDirectory( cacheDirectory );
+
+        Map<String, DocumentRenderer> documents = renderer.locateDocumentFiles( ctxt, true );
+        renderer.render( documents.values(), ctxt, outputDirectory );
+
+        String content = FileUtils.fileRead( new File( outputDirectory, "index.html" ), "UTF-8" );
+        assertTrue( content.contains( "First &#x2013; Parsed title" ) );
+        assertTrue( content.contains( "Parsed content" ) );
+        assertEquals( 1, cacheDirectory.list().length );
+
+        // replace the cached parse result, to check that it is used instead of parsing the source again
+        RenderingContext renderingContext = documents.get( "index.html" ).getRenderingContext();
+        SiteRendererSink sink = new SiteRendererSink( renderingContext );
+        sink.head();
+        sink.title();
+        sink.text( "Cached title" );
+        sink.title_();
+        sink.head_();
+        sink.link( "$relativePath/cached.html" );
+        sink.text( "Cached content" );
+        sink.link_();
+        sink.close();
+        String key = ParseCache.getKey( source, ( (Doxia) lookup( Doxia.ROLE ) ).getParser( "apt" ),
+                                        ctxt.getInputEncoding(), ctxt.isValidate() );
+        new ParseCache( cacheDirectory ).store( renderingContext, key, sink );
+
+        // only the decoration changed: the document is not parsed again
+        decoration.setName( "Second" );
+        renderer.render( documents.values(), ctxt, outputDirectory );
+
+        content = FileUtils.fileRead( new File( outputDirectory, "index.html" ), "UTF-8" );
+        assertTrue( content.contains( "Second &#x2013; Cached title" ) );
+        assertTrue( content.contains( "cached.html\">Cached content</a>" ) );
+        assertFalse( content.contains( "$relativePath" ) );
+
+        // validation enabled: the result parsed without validation is not used
+        ctxt.setValidate( true );
+        renderer.render( documents.values(), ctxt, outputDirectory );
+
+        content = FileUtils.fileRead( new File( outputDirectory, "index.html" ), "UTF-8" );
+        assertTrue( content.contains( "Second &#x2013; Parsed title" ) );
+        ctxt.setValidate( false );
+
+        // source changed: the document is parsed again
+        FileUtils.fileWrite( source, "UTF-8", " ------\n New title\n ------\n\nNew content\n" );
+        renderer.render( documents.values(), ctxt, outputDirectory );
+
+        content = FileUtils.fileRead( new File( outputDirectory, "index.html" ), "UTF-8" );
+        assertTrue( content.contains( "Second &#x2013; New title" ) );
+        assertTrue( content.contains( "New content" ) );
+        assertEquals( 1, cacheDirectory.list().length );
+    }
+
+    public void testFlightRecorderEvents()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( getTestFile( "target/flight-recorder" ) );
+        File siteDirectory = getTestFile( "target/flight-recorder/src/site" );
+        new File( siteDirectory, "apt" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8", " ------\n Title\n ------\n" );
+
+        SiteRenderingContext ctxt =
+            getSiteRenderingContext( new DecorationModel(), "target/flight-recorder/src/site", false );
+        ctxt.setRootDirectory( getTestFile( "target/flight-recorder" ) );
+
+        FlightRecording recording =
+            FlightRecording.start( "RenderDocument", "ParseDocument", "MergeDocumentIntoSite" );
+        if ( recording == null )
+        {
+            // JFR not available
+            return;
+        }
+
+        List<String[]> events;
+        try
+        {
+            renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt,
+                             getTestFile( "target/flight-recorder/output" ) );
+        }
+        finally
+        {
+            events = recording.stop();
+        }
+
+        Set<String> names = new HashSet<String>();
+        for ( String[] event : events )
+        {
+            names.add( event[0] );
+            assertEquals( event[0], "src/site/apt/index.apt", event[1] );
+            assertEquals( event[0], "apt", event[2] );
+        }
+        assertEquals( new HashSet<String>( Arrays.asList( "RenderDocument", "ParseDocument",
+                                                          "MergeDocumentIntoSite" ) ), names );
+    }
+
+    public void testRenderingStatistics()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( getTestFile( "target/rendering-statistics" ) );
+        File siteDirectory = getTestFile( "target/rendering-statistics/src/site" );
+        new File( siteDirectory, "apt" ).mkdirs();
+        File source = new File( siteDirectory, "apt/index.apt" );
+        FileUtils.fileWrite( source, "UTF-8", " ------\n Title\n ------\n\nContent\n" );
+        File outputDirectory = getTestFile( "target/rendering-statistics/output" );
+
+        SiteRenderingContext ctxt =
+            getSiteRenderingContext( new DecorationModel(), "target/rendering-statistics/src/site", false );
+        ctxt.setRootDirectory( getTestFile( "target/rendering-statistics" ) );
+        File stateDirectory = getTestFile( "target/rendering-statistics/state" );
+        ctxt.setStateDirectory( stateDirectory );
+        RenderingStatistics statistics = new RenderingStatistics();
+        ctxt.setRenderingStatistics( statistics );
+
+        renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, outputDirectory );
+
+        RenderingStatistics.DocumentStatistics document = statistics.getDocument( "index.html" );
+        assertEquals( "apt", document.getParserId() );
+        assertEquals( source.length(), document.getBytesIn() );
+        assertEquals( new File( outputDirectory, "index.html" ).length(), document.getBytesOut() );
+        assertTrue( document.getTime( RenderingStatistics.Stage.PARSE ) > 0 );
+        assertTrue( document.getTime( RenderingStatistics.Stage.MERGE ) > 0 );
+        assertTrue( document.getTime( RenderingStatistics.Stage.WRITE ) > 0 );
+        assertEquals( 1, statistics.getParserStatistics().get( "apt" ).getDocumentCount() );
+
+        // the report is beside the output directory, not published with the site
+        String report =
+            FileUtils.fileRead( getTestFile( "target/rendering-statistics/output-render-report.json" ), "UTF-8" );
+        assertTrue( report, report.contains( "\"output\": \"index.html\"" ) );
+        assertFalse( new File( outputDirectory, "output-render-report.json" ).exists() );
+        assertFalse( new File( stateDirectory, "output-render-report.json" ).exists() );
+
+        File reportFile = getTestFile( "target/rendering-statistics/reports/render.json" );
+        ctxt.setRenderReportFile( reportFile );
+        renderer.render( renderer.locateDocumentFiles( ctxt, true ).values(), ctxt, outputDirectory );
+
+        assertTrue( FileUtils.fileRead( reportFile, "UTF-8" ).contains( "\"output\": \"index.html\"" ) );
+    }
+
+    public void testParseThenDecorate()
+        throws Exception
+    {
+        File siteDirectory = getTestFile( "target/parse-decorate/src/site" );
+        FileUtils.deleteDirectory( siteDirectory );
+        new File( siteDirectory, "apt" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8",
+                             " ------\n Parsed title\n ------\n\nParsed content\n" );
+
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( "First" );
+        SiteRenderingContext ctxt = getSiteRenderingContext( decoration, "target/parse-decorate/src/site", false );
+        ctxt.setRootDirectory( getTestFile( "target/parse-decorate" ) );
+
+        RenderingContext renderingContext =
+            renderer.locateDocumentFiles( ctxt, true ).get( "index.html" ).getRenderingContext();
+        DocumentContent content = renderer.parseDocument( renderingContext, ctxt );
+        assertEquals( "Parsed title", content.getTitle() );
+
+        // the same parsed content can be decorated multiple times
+        StringWriter first = new StringWriter();
+        renderer.mergeDocumentIntoSite( first, content, ctxt );
+        decoration.setName( "Second" );
+        StringWriter second = new StringWriter();
+        renderer.mergeDocumentIntoSite( second, content, ctxt );
+
+        assertTrue( first.toString().contains( "First &#x2013; Parsed title" ) );
+        assertTrue( second.toString().contains( "Second &#x2013; Parsed title" ) );
+        assertTrue( second.toString().contains( "Parsed content" ) );
+    }
+
     public void testExternalReport()
         throws Exception
     {
@@ -266,6 +622,61 @@ public class DefaultSiteRendererTest
         assertEquals( expectedResult, renderResult );
     }
 
+    public void testTemplatePropertiesUpdatedInPlace()
+        throws Exception
+    {
+        File templateFile = getTestFile( "target/template-properties/site.vm" );
+        FileUtils.mkdir( templateFile.getParent() );
+        FileUtils.fileWrite( templateFile, "UTF-8", "$greeting $dateRevision" );
+
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put( "greeting", "Hello" );
+
+        SiteRenderingContext siteRenderingContext =
+            renderer.createContextForTemplate( templateFile, attributes, new DecorationModel(), "title",
+                                               Locale.ENGLISH );
+        RenderingContext context = new RenderingContext( new File( "" ), "document.html", "generator" );
+        String dateRevision = new SimpleDateFormat( "yyyyMMdd" ).format( new Date() );
+
+        StringWriter writer = new StringWriter();
+        renderer.mergeDocumentIntoSite( writer, new SiteRendererSink( context ), siteRenderingContext );
+        assertEquals( "Hello " + dateRevision, writer.toString() );
+
+        // same map, updated content
+        attributes.put( "greeting", "Bye" );
+
+        writer = new StringWriter();
+        renderer.mergeDocumentIntoSite( writer, new SiteRendererSink( context ), siteRenderingContext );
+        assertEquals( "Bye " + dateRevision, writer.toString() );
+    }
+
+    public void testTemplatePropertiesOverrideDocumentValues()
+        throws Exception
+    {
+        File templateFile = getTestFile( "target/template-properties/override.vm" );
+        FileUtils.mkdir( templateFile.getParent() );
+        FileUtils.fileWrite( templateFile, "UTF-8", "$relativePath $currentFileName $shortTitle $esc.html( '<' )" );
+
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put( "relativePath", "overridden" );
+
+        SiteRenderingContext siteRenderingContext =
+            renderer.createContextForTemplate( templateFile, attributes, new DecorationModel(), "title",
+                                               Locale.ENGLISH );
+        RenderingContext context = new RenderingContext( new File( "" ), "document.html", "generator" );
+        SiteRendererSink sink = new SiteRendererSink( context );
+        sink.head();
+        sink.title();
+        sink.text( "Title" );
+        sink.title_();
+        sink.head_();
+
+        // site values are chained to the document context: document values put after them still take precedence
+        StringWriter writer = new StringWriter();
+        renderer.mergeDocumentIntoSite( writer, sink, siteRenderingContext );
+        assertEquals( "overridden document.html Title &lt;", writer.toString() );
+    }
+
     public void testVelocityToolManagerForSkin()
         throws Exception
     {
@@ -295,14 +706,124 @@ public class DefaultSiteRendererTest
         assertEquals( expectedResult, renderResult );
     }
 
+    public void testCopySkinResources()
+        throws Exception
+    {
+        File outputDirectory = getTestFile( "target/output-skin-resources" );
+        File stateDirectory = getTestFile( "target/output-skin-resources-state" );
+        FileUtils.deleteDirectory( outputDirectory );
+        FileUtils.deleteDirectory( stateDirectory );
+        File css = new File( outputDirectory, "css/skin.css" );
+        File siteCss = new File( outputDirectory, "css/site.css" );
+
+        Artifact skin = new DefaultArtifact( "org.group", "resources-skin", "1.0", null, "jar", "", null );
+        skin.setFile( createSkinJar( "target/test-classes/resources-skin-1.0.jar", "/* skin 1.0 */" ) );
+        SiteRenderingContext context = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(),
+                                                                      new DecorationModel(), "", Locale.ENGLISH );
+        context.setStateDirectory( stateDirectory );
+        renderer.copyResources( context, outputDirectory );
+
+        assertEquals( "/* skin 1.0 */", FileUtils.fileRead( css, "UTF-8" ) );
+        assertEquals( "/* skin 1.0 */", FileUtils.fileRead( siteCss, "UTF-8" ) );
+        assertTrue( new File( stateDirectory, SkinResourcesExtractor.MANIFEST_LOCATION ).isFile() );
+        assertFalse( new File( outputDirectory, SkinResourcesExtractor.MANIFEST_LOCATION ).exists() );
+
+        // site resource replacing a skin resource is kept
+        FileUtils.fileWrite( siteCss, "UTF-8", "/* site */" );
+
+        // new skin version: unmodified extracted resources are updated
+        skin = new DefaultArtifact( "org.group", "resources-skin", "1.1", null, "jar", "", null );
+        skin.setFile( createSkinJar( "target/test-classes/resources-skin-1.1.jar", "/* skin 1.1 */" ) );
+        context = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(), new DecorationModel(),
+                                                 "", Locale.ENGLISH );
+        context.setStateDirectory( stateDirectory );
+        renderer.copyResources( context, outputDirectory );
+
+        assertEquals( "/* skin 1.1 */", FileUtils.fileRead( css, "UTF-8" ) );
+        assertEquals( "/* site */", FileUtils.fileRead( siteCss, "UTF-8" ) );
+    }
+
+    public void testCopyResourcesToMemory()
+        throws Exception
+    {
+        File siteDirectory = getTestFile( "target/output-memory-resources/src/site" );
+        FileUtils.deleteDirectory( siteDirectory );
+        FileUtils.mkdir( new File( siteDirectory, "resources/css" ).getPath() );
+        FileUtils.fileWrite( new File( siteDirectory, "resources/css/site.css" ), "UTF-8", "/* site */" );
+
+        Artifact skin = new DefaultArtifact( "org.group", "resources-skin", "1.0", null, "jar", "", null );
+        skin.setFile( createSkinJar( "target/test-classes/resources-skin-1.0.jar", "/* skin 1.0 */" ) );
+        SiteRenderingContext context = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(),
+                                                                      new DecorationModel(), "", Locale.ENGLISH );
+        context.addSiteDirectory( siteDirectory );
+
+        MemorySiteOutput output = new MemorySiteOutput();
+        renderer.copyResources( context, output );
+
+        // site resources take precedence over skin resources
+        assertEquals( "/* site */", new String( output.getContent( "css/site.css" ), "UTF-8" ) );
+        assertEquals( "/* skin 1.0 */", new String( output.getContent( "css/skin.css" ), "UTF-8" ) );
+        assertFalse( output.exists( "css/" ) );
+        assertFalse( output.exists( SkinResourcesExtractor.MANIFEST_LOCATION ) );
+    }
+
+    private File createSkinJar( String name, String css )
+        throws IOException
+    {
+        File jar = getTestFile( name );
+        JarOutputStream jarOS = new JarOutputStream( new FileOutputStream( jar ) );
+        try
+        {
+            jarOS.putNextEntry( new ZipEntry( "css/" ) );
+            jarOS.closeEntry();
+            jarOS.putNextEntry( new ZipEntry( "css/skin.css" ) );
+            jarOS.write( css.getBytes( "UTF-8" ) );
+            jarOS.closeEntry();
+            jarOS.putNextEntry( new ZipEntry( "css/site.css" ) );
+            jarOS.write( css.getBytes( "UTF-8" ) );
+            jarOS.closeEntry();
+        }
+        finally
+        {
+            IOUtil.close( jarOS );
+        }
+        return jar;
+    }
+
     public void testMatchVersion()
         throws Exception
     {
-        DefaultSiteRenderer r = (DefaultSiteRenderer) renderer;
+        DefaultSkinRegistry r = (DefaultSkinRegistry) lookup( SkinRegistry.ROLE );
         assertTrue( r.matchVersion( "1.7", "1.7" ) );
         assertFalse( r.matchVersion( "1.7", "1.8" ) );
     }
 
+    public void testSkinRegistry()
+        throws Exception
+    {
+        Artifact skin = new DefaultArtifact( "org.group", "artifact", "1.1", null, "jar", "", null );
+        skin.setFile( skinJar );
+
+        SiteRenderingContext first = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(),
+                                                                    new DecorationModel(), "first", Locale.ENGLISH );
+        SiteRenderingContext second = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(),
+                                                                     new DecorationModel(), "second", Locale.FRENCH );
+
+        assertNotNull( first.getTemplateClassLoader() );
+        assertSame( first.getTemplateClassLoader(), second.getTemplateClassLoader() );
+
+        SkinRegistry skinRegistry = (SkinRegistry) lookup( SkinRegistry.ROLE );
+        RegisteredSkin registeredSkin = skinRegistry.getSkin( skin );
+        assertTrue( registeredSkin.hasTemplate() );
+        assertSame( first.getTemplateClassLoader(), registeredSkin.getTemplateClassLoader() );
+        assertEquals( RenderManifest.digest( skinJar ), registeredSkin.getChecksum() );
+
+        skinRegistry.close();
+        SiteRenderingContext afterClose = renderer.createContextForSkin( skin, Collections.<String, Object>emptyMap(),
+                                                                         new DecorationModel(), "after", Locale.ENGLISH );
+        assertNotSame( first.getTemplateClassLoader(), afterClose.getTemplateClassLoader() );
+    }
+
     private SiteRenderingContext getSiteRenderingContext( DecorationModel decoration, String siteDir, boolean validate )
     {
         SiteRenderingContext ctxt = new SiteRenderingContext();
@@ -0,0 +1,158 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.apache.maven.doxia.sitetools.ValidatingReader;
+import org.codehaus.plexus.util.IOUtil;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Tests the {@link EntityCatalog}.
+ */
+public class EntityCatalogTest
+    extends TestCase
+{
+    private static final String CATALOG = "/org/apache/maven/doxia/siterenderer/catalog/";
+
+    private static final String XHTML_PUBLIC_ID = "-//W3C//DTD XHTML 1.0 Transitional//EN";
+
+    private static final String XHTML_SYSTEM_ID = "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd";
+
+    private static String read( InputSource source )
+        throws Exception
+    {
+        InputStream in = source.getByteStream();
+        try
+        {
+            return IOUtil.toString( in, "UTF-8" );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    public void testBundledEntities()
+        throws Exception
+    {
+        EntityCatalog catalog = new EntityCatalog();
+
+        InputSource source = catalog.resolveEntity( XHTML_PUBLIC_ID, XHTML_SYSTEM_ID );
+        assertEquals( XHTML_SYSTEM_ID, source.getSystemId() );
+        assertTrue( read( source ).contains( "Extensible HTML version 1.0 Transitional DTD" ) );
+        assertEquals( 0, catalog.getHitCount() );
+        assertEquals( 1, catalog.getMissCount() );
+
+        // by system id only, from memory
+        source = catalog.resolveEntity( null, XHTML_SYSTEM_ID );
+        assertTrue( read( source ).contains( "Extensible HTML version 1.0 Transitional DTD" ) );
+        assertEquals( 1, catalog.getHitCount() );
+        assertEquals( 1, catalog.getMissCount() );
+
+        catalog.resolveEntity( "-//W3C//ENTITIES Latin 1 for XHTML//EN", "xhtml-lat1.ent" );
+        assertEquals( 1, catalog.getHitCount() );
+        assertEquals( 2, catalog.getMissCount() );
+    }
+
+    public void testXmlNamespaceSchema()
+        throws Exception
+    {
+        EntityCatalog catalog = new EntityCatalog();
+
+        // imported by the xdoc schema
+        InputSource source = catalog.resolveEntity( null, "http://www.w3.org/2001/xml.xsd" );
+        assertTrue( read( source ).contains( "specialAttrs" ) );
+        assertEquals( 1, catalog.getMissCount() );
+    }
+
+    public void testRemoteEntityFailsFast()
+        throws Exception
+    {
+        EntityCatalog catalog = new EntityCatalog();
+
+        try
+        {
+            catalog.resolveEntity( "-//Unknown//DTD//EN", "http://unknown.invalid/dtd/" );
+            fail( "unknown remote entity should not be resolved" );
+        }
+        catch ( SAXException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "remote resolution is disabled" ) );
+        }
+        assertEquals( 0, catalog.getMissCount() );
+    }
+
+    public void testAddEntity()
+        throws Exception
+    {
+        EntityCatalog catalog = new EntityCatalog();
+
+        File dtd = new File( getClass().getResource( CATALOG + "xhtml-special.ent" ).toURI() );
+        catalog.addEntity( "-//Test//DTD//EN", dtd.toURI().toURL() );
+
+        assertTrue( read( catalog.resolveEntity( "-//Test//DTD//EN", "http://unknown.invalid/dtd/" ) )
+            .contains( "Special characters for XHTML" ) );
+        assertEquals( 1, catalog.getMissCount() );
+    }
+
+    public void testLocalEntity()
+        throws Exception
+    {
+        EntityCatalog catalog = new EntityCatalog();
+
+        File dtd = new File( getClass().getResource( CATALOG + "xhtml-symbol.ent" ).toURI() );
+        String systemId = dtd.toURI().toURL().toExternalForm();
+
+        assertTrue( read( catalog.resolveEntity( null, systemId ) ).contains( "Mathematical, Greek and Symbolic" ) );
+        read( catalog.resolveEntity( null, systemId ) );
+        assertEquals( 1, catalog.getHitCount() );
+        assertEquals( 1, catalog.getMissCount() );
+    }
+
+    public void testValidateXhtmlDocument()
+        throws Exception
+    {
+        String document = "<?xml version=\"1.0\"?>\n<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" "
+            + "\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Test</title></head>"
+            + "<body><p>&eacute;&nbsp;&hellip;</p></body></html>";
+
+        // DTD and entities resolved offline from the entity catalog
+        ValidatingReader reader =
+            new ValidatingReader( new StringReader( document ), "test", new EntityCatalog(), new SystemStreamLog() );
+        try
+        {
+            assertEquals( document, IOUtil.toString( reader ) );
+            reader.finish();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
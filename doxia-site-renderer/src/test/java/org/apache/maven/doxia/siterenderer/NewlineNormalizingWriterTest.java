@@ -0,0 +1,87 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+public class NewlineNormalizingWriterTest
+    extends TestCase
+{
+    private static final String EOL = "<EOL>";
+
+    public void testNormalizeNewline() throws Exception
+    {
+        String[] texts = { "Hello \r world", "Hello \n world", "Hello \r\n world", "Hello world\r", "Hello world\n",
+            "Hello world\r\n", "\rHello world", "\nHello world", "\r\nHello world", "a\r\r\nb\n\n\r", "" };
+
+        for ( String text : texts )
+        {
+            String expected = text.replaceAll( "\r?\n", EOL );
+
+            assertEquals( expected, normalizeNewline( text, 1 ) );
+            assertEquals( expected, normalizeNewline( text, 2 ) );
+            assertEquals( expected, normalizeNewline( text, text.length() + 1 ) );
+        }
+    }
+
+    public void testLargeContent() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            sb.append( "line " ).append( i ).append( ( i % 2 == 0 ) ? "\r\n" : "\n" );
+        }
+        String text = sb.toString();
+
+        assertEquals( text.replaceAll( "\r?\n", EOL ), normalizeNewline( text, 10000 ) );
+    }
+
+    /**
+     * Write text to a newline normalizing writer, with chunks of given size alternatively written as String and as
+     * char array.
+     */
+    private String normalizeNewline( String text, int chunkSize ) throws IOException
+    {
+        StringWriter sw = new StringWriter();
+        Writer writer = new NewlineNormalizingWriter( sw, EOL );
+
+        boolean asString = true;
+        for ( int off = 0; off < text.length(); off += chunkSize )
+        {
+            int len = Math.min( chunkSize, text.length() - off );
+            if ( asString )
+            {
+                writer.write( text, off, len );
+            }
+            else
+            {
+                writer.write( text.toCharArray(), off, len );
+            }
+            asString = !asString;
+        }
+        writer.close();
+
+        return sw.toString();
+    }
+}
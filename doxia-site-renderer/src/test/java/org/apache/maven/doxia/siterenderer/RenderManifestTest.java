@@ -0,0 +1,101 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test of the render manifest used for incremental rendering.
+ */
+public class RenderManifestTest
+    extends PlexusTestCase
+{
+    private SiteRenderingContext newSiteRenderingContext( String name )
+    {
+        SiteRenderingContext context = new SiteRenderingContext();
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( name );
+        context.setDecoration( decoration );
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put( "outputEncoding", "UTF-8" );
+        context.setTemplateProperties( properties );
+        return context;
+    }
+
+    public void testSiteInputs()
+        throws Exception
+    {
+        String inputs = RenderManifest.getSiteInputs( newSiteRenderingContext( "site" ) );
+
+        assertEquals( inputs, RenderManifest.getSiteInputs( newSiteRenderingContext( "site" ) ) );
+        assertFalse( inputs.equals( RenderManifest.getSiteInputs( newSiteRenderingContext( "other site" ) ) ) );
+
+        SiteRenderingContext context = newSiteRenderingContext( "site" );
+        context.setTemplateName( "other.vm" );
+        assertFalse( inputs.equals( RenderManifest.getSiteInputs( context ) ) );
+    }
+
+    public void testSaveAndLoad()
+        throws Exception
+    {
+        File stateDirectory = getTestFile( "target/render-manifest" );
+        FileUtils.deleteDirectory( stateDirectory );
+
+        File source = getTestFile( "src/test/resources/site/apt/apt.apt" );
+
+        RenderManifest manifest = RenderManifest.load( stateDirectory, "site" );
+        String fingerprint = manifest.getFingerprint( source );
+        assertFalse( manifest.isUpToDate( "apt.html", fingerprint ) );
+
+        manifest.update( "apt.html", fingerprint );
+        manifest.save();
+        assertTrue( new File( stateDirectory, RenderManifest.MANIFEST_LOCATION ).isFile() );
+
+        manifest = RenderManifest.load( stateDirectory, "site" );
+        assertTrue( manifest.isUpToDate( "apt.html", manifest.getFingerprint( source ) ) );
+
+        manifest = RenderManifest.load( stateDirectory, "changed site" );
+        assertFalse( manifest.isUpToDate( "apt.html", manifest.getFingerprint( source ) ) );
+    }
+
+    public void testStateDirectory()
+    {
+        File outputDirectory = getTestFile( "target/render-manifest-output" );
+        SiteRenderingContext context = newSiteRenderingContext( "site" );
+
+        // state is not published with the site
+        File stateDirectory = RenderManifest.getStateDirectory( context, outputDirectory );
+        assertFalse( stateDirectory.getAbsolutePath().startsWith( outputDirectory.getAbsolutePath() ) );
+        assertEquals( getTestFile( "target/doxia-site-renderer-state/render-manifest-output" ), stateDirectory );
+        assertEquals( stateDirectory, RenderManifest.getStateDirectory( context, outputDirectory ) );
+        File otherOutputDirectory = getTestFile( "target/render-manifest-other" );
+        assertFalse( stateDirectory.equals( RenderManifest.getStateDirectory( context, otherOutputDirectory ) ) );
+
+        context.setStateDirectory( getTestFile( "target/render-manifest-state" ) );
+        assertEquals( getTestFile( "target/render-manifest-state" ),
+                      RenderManifest.getStateDirectory( context, outputDirectory ) );
+    }
+}
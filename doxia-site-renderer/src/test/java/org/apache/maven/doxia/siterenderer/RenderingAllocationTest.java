@@ -0,0 +1,239 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.doxia.site.decoration.AllocationMeter;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Allocation regression tests of the rendering hot path: bytes allocated per rendered page, per merge into the site
+ * template and per sink event are checked against the thresholds recorded in
+ * <code>allocation-budget.properties</code>.
+ */
+public class RenderingAllocationTest
+    extends PlexusTestCase
+{
+    private static final int WARMUP = 50;
+
+    private static final int ITERATIONS = 100;
+
+    private Properties budget;
+
+    private Renderer renderer;
+
+    private SiteRenderingContext siteContext;
+
+    private RenderingContext renderingContext;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        budget = new Properties();
+        InputStream in = getClass().getResourceAsStream( "allocation-budget.properties" );
+        try
+        {
+            budget.load( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        renderer = (Renderer) lookup( Renderer.ROLE );
+
+        File siteDirectory = getTestFile( "target/allocation/site" );
+        new SiteCorpusGenerator().setPages( 1 ).setSections( 5 ).setTableRows( 20 ).generate( siteDirectory );
+
+        siteContext = new SiteRenderingContext();
+        siteContext.setTemplateName( "org/apache/maven/doxia/siterenderer/resources/default-site.vm" );
+        siteContext.setTemplateClassLoader( getClassLoader() );
+        siteContext.setUsingDefaultTemplate( true );
+        Map<String, Object> templateProperties = new HashMap<String, Object>();
+        templateProperties.put( "outputEncoding", "UTF-8" );
+        siteContext.setTemplateProperties( templateProperties );
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( "Allocation" );
+        siteContext.setDecoration( decoration );
+        siteContext.setRootDirectory( getTestFile( "target/allocation" ) );
+        siteContext.addSiteDirectory( siteDirectory );
+
+        renderingContext = renderer.locateDocumentFiles( siteContext ).get( "page0.html" ).getRenderingContext();
+    }
+
+    public void testRenderDocument()
+        throws Exception
+    {
+        if ( !AllocationMeter.isSupported() )
+        {
+            return;
+        }
+
+        for ( int i = 0; i < WARMUP; i++ )
+        {
+            renderer.renderDocument( new NullWriter(), renderingContext, siteContext );
+        }
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            renderer.renderDocument( new NullWriter(), renderingContext, siteContext );
+        }
+
+        assertBudget( "renderDocument", ( AllocationMeter.getAllocatedBytes() - allocated ) / ITERATIONS );
+    }
+
+    public void testMergeDocumentIntoSite()
+        throws Exception
+    {
+        if ( !AllocationMeter.isSupported() )
+        {
+            return;
+        }
+
+        DocumentContent content = renderer.parseDocument( renderingContext, siteContext );
+
+        for ( int i = 0; i < WARMUP; i++ )
+        {
+            renderer.mergeDocumentIntoSite( new NullWriter(), content, siteContext );
+        }
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            renderer.mergeDocumentIntoSite( new NullWriter(), content, siteContext );
+        }
+
+        assertBudget( "mergeDocumentIntoSite", ( AllocationMeter.getAllocatedBytes() - allocated ) / ITERATIONS );
+    }
+
+    public void testSiteRendererSink()
+    {
+        if ( !AllocationMeter.isSupported() )
+        {
+            return;
+        }
+
+        int sections = 100;
+        for ( int i = 0; i < WARMUP; i++ )
+        {
+            sinkEvents( sections );
+        }
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        long events = 0;
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            events += sinkEvents( sections );
+        }
+
+        assertBudget( "sinkEvent", ( AllocationMeter.getAllocatedBytes() - allocated ) / events );
+    }
+
+    /**
+     * Emit events of a typical document into a new sink.
+     *
+     * @return the number of sink events
+     */
+    private int sinkEvents( int sections )
+    {
+        SiteRendererSink sink = new SiteRendererSink( renderingContext );
+        int events = 0;
+
+        sink.head();
+        sink.title();
+        sink.text( "Allocation" );
+        sink.title_();
+        sink.head_();
+        sink.body();
+        events += 6;
+        for ( int s = 0; s < sections; s++ )
+        {
+            sink.section1();
+            sink.sectionTitle1();
+            sink.text( "Section" );
+            sink.sectionTitle1_();
+            sink.paragraph();
+            sink.text( "Doxia is a content generation framework, with <markup> & entities to escape." );
+            sink.paragraph_();
+            sink.list();
+            sink.listItem();
+            sink.link( "./index.html" );
+            sink.text( "a link" );
+            sink.link_();
+            sink.listItem_();
+            sink.list_();
+            sink.verbatim( null );
+            sink.text( "int i = 0;" );
+            sink.verbatim_();
+            sink.section1_();
+            events += 18;
+        }
+        sink.body_();
+        sink.close();
+        events += 1;
+
+        return events;
+    }
+
+    private void assertBudget( String operation, long bytes )
+    {
+        long threshold = Long.parseLong( budget.getProperty( operation + ".bytes" ) );
+        assertTrue( operation + " allocated " + bytes + " bytes, threshold is " + threshold, bytes <= threshold );
+    }
+
+    /**
+     * Writer discarding its content, so that only rendering allocations are measured.
+     */
+    private static class NullWriter
+        extends Writer
+    {
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            // discard
+        }
+
+        @Override
+        public void flush()
+        {
+            // no op
+        }
+
+        @Override
+        public void close()
+        {
+            // no op
+        }
+    }
+}
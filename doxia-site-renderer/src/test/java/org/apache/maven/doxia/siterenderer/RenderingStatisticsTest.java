@@ -0,0 +1,95 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link RenderingStatistics}.
+ */
+public class RenderingStatisticsTest
+    extends TestCase
+{
+    private RenderingStatistics statistics;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        statistics = new RenderingStatistics();
+        record( "apt/fast.apt", "apt", 1000000, 100 );
+        record( "apt/slow.apt", "apt", 5000000, 200 );
+        record( "xdoc/medium.xml", "xdoc", 3000000, 300 );
+    }
+
+    private void record( String source, String parserId, long parseTime, long bytesIn )
+    {
+        String extension = source.substring( source.lastIndexOf( '.' ) + 1 );
+        RenderingStatistics.DocumentStatistics document =
+            statistics.getDocument( new RenderingContext( new File( "src/site" ), source, parserId, extension ) );
+        document.addTime( RenderingStatistics.Stage.PARSE, parseTime );
+        document.addTime( RenderingStatistics.Stage.MERGE, 500000 );
+        document.setBytesIn( bytesIn );
+    }
+
+    public void testSlowestDocuments()
+    {
+        List<RenderingStatistics.DocumentStatistics> slowest = statistics.getSlowestDocuments( 2 );
+
+        assertEquals( 2, slowest.size() );
+        assertEquals( "apt/slow.html", slowest.get( 0 ).getOutputName() );
+        assertEquals( 5500000, slowest.get( 0 ).getTotalTime() );
+        assertEquals( "xdoc/medium.html", slowest.get( 1 ).getOutputName() );
+    }
+
+    public void testParserStatistics()
+    {
+        Map<String, RenderingStatistics.DocumentStatistics> parsers = statistics.getParserStatistics();
+
+        assertEquals( 2, parsers.size() );
+        RenderingStatistics.DocumentStatistics apt = parsers.get( "apt" );
+        assertEquals( 2, apt.getDocumentCount() );
+        assertEquals( 6000000, apt.getTime( RenderingStatistics.Stage.PARSE ) );
+        assertEquals( 1000000, apt.getTime( RenderingStatistics.Stage.MERGE ) );
+        assertEquals( 300, apt.getBytesIn() );
+    }
+
+    public void testJsonReport()
+        throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        statistics.writeJson( writer, 1 );
+        String json = writer.toString();
+
+        assertTrue( json, json.startsWith( "{\n  \"total\": {\"documents\": 3, \"bytesIn\": 600, \"bytesOut\": 0, "
+            + "\"total\": 10.500, \"read\": 0.000, \"velocity\": 0.000, \"validation\": 0.000, \"parse\": 9.000, "
+            + "\"merge\": 1.500, \"write\": 0.000}" ) );
+        assertTrue( json, json.contains( "\"apt\": {\"documents\": 2, " ) );
+        assertTrue( json, json.contains( "\"slowest\": [\n    {\"output\": \"apt/slow.html\", \"source\": " ) );
+        assertFalse( json, json.contains( "medium.html" ) );
+    }
+}
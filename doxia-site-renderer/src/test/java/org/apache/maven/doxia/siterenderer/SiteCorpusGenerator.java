@@ -0,0 +1,275 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Generates reproducible synthetic site source trees of configurable size, for scaling tests: APT, Markdown, xdoc,
+ * FML and Velocity APT documents, spread over a deep directory tree, with many sections and large tables.
+ */
+public class SiteCorpusGenerator
+{
+    private static final String[] FORMATS = { "apt", "markdown", "xdoc", "fml", "apt.vm" };
+
+    private static final String TEXT = "Doxia is a content generation framework which provides powerful techniques "
+        + "for generating static and dynamic content";
+
+    private int pages = 1000;
+
+    private int depth = 4;
+
+    private int pagesPerDirectory = 20;
+
+    private int sections = 5;
+
+    private int tableRows = 20;
+
+    private long seed = 42;
+
+    /**
+     * @param pages the number of pages to generate, default 1000
+     * @return this generator
+     */
+    public SiteCorpusGenerator setPages( int pages )
+    {
+        this.pages = pages;
+        return this;
+    }
+
+    /**
+     * @param depth the maximum directory nesting depth, default 4
+     * @return this generator
+     */
+    public SiteCorpusGenerator setDepth( int depth )
+    {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @param pagesPerDirectory the number of pages per directory, default 20
+     * @return this generator
+     */
+    public SiteCorpusGenerator setPagesPerDirectory( int pagesPerDirectory )
+    {
+        this.pagesPerDirectory = pagesPerDirectory;
+        return this;
+    }
+
+    /**
+     * @param sections the maximum number of sections per page, default 5
+     * @return this generator
+     */
+    public SiteCorpusGenerator setSections( int sections )
+    {
+        this.sections = sections;
+        return this;
+    }
+
+    /**
+     * @param tableRows the maximum number of rows of the table in each section, default 20
+     * @return this generator
+     */
+    public SiteCorpusGenerator setTableRows( int tableRows )
+    {
+        this.tableRows = tableRows;
+        return this;
+    }
+
+    /**
+     * @param seed the random seed: the same seed generates the same site
+     * @return this generator
+     */
+    public SiteCorpusGenerator setSeed( long seed )
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Generate the site sources, replacing previous content of the site directory.
+     *
+     * @param siteDirectory the site directory, like <code>src/site</code>
+     * @return the number of generated pages
+     * @throws IOException if a file can't be written
+     */
+    public int generate( File siteDirectory )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( siteDirectory );
+
+        Random random = new Random( seed );
+        for ( int i = 0; i < pages; i++ )
+        {
+            String format = FORMATS[i % FORMATS.length];
+            String path = getDirectory( i / pagesPerDirectory ) + "page" + i;
+            int pageSections = 1 + random.nextInt( sections );
+            int rows = 1 + random.nextInt( tableRows );
+
+            String module = format.endsWith( ".vm" ) ? format.substring( 0, format.length() - 3 ) : format;
+            File file = new File( siteDirectory, module + '/' + path + '.' + getExtension( format ) );
+            file.getParentFile().mkdirs();
+            FileUtils.fileWrite( file, "UTF-8", createDocument( format, "Page " + i, pageSections, rows ) );
+        }
+
+        return pages;
+    }
+
+    /**
+     * Directory of a group of pages: group index digits in base <code>pagesPerDirectory</code> give the directory
+     * path, up to <code>depth</code> levels.
+     */
+    private String getDirectory( int group )
+    {
+        StringBuilder sb = new StringBuilder();
+        int remaining = group;
+        for ( int level = 0; level < depth && remaining > 0; level++ )
+        {
+            sb.append( "dir" ).append( level ).append( '-' ).append( remaining % pagesPerDirectory ).append( '/' );
+            remaining /= pagesPerDirectory;
+        }
+        return sb.toString();
+    }
+
+    private static String getExtension( String format )
+    {
+        if ( "markdown".equals( format ) )
+        {
+            return "md";
+        }
+        if ( "xdoc".equals( format ) )
+        {
+            return "xml";
+        }
+        return format;
+    }
+
+    private static String createDocument( String format, String title, int sections, int rows )
+    {
+        if ( "apt".equals( format ) )
+        {
+            return apt( title, sections, rows, false );
+        }
+        if ( "apt.vm".equals( format ) )
+        {
+            return apt( title, sections, rows, true );
+        }
+        if ( "markdown".equals( format ) )
+        {
+            return markdown( title, sections, rows );
+        }
+        if ( "xdoc".equals( format ) )
+        {
+            return xdoc( title, sections, rows );
+        }
+        return fml( title, sections, rows );
+    }
+
+    private static String apt( String title, int sections, int rows, boolean velocity )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( " -----\n " ).append( title ).append( "\n -----\n\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "Section " ).append( s ).append( "\n\n  " ).append( TEXT ).append( ".\n\n" );
+            if ( velocity )
+            {
+                sb.append( "  Rendered as ${currentFileName}.\n\n" );
+                sb.append( "#foreach( $i in [1..5] )\n  * item $i\n\n#end\n  []\n\n" );
+            }
+            else
+            {
+                sb.append( "  * item with {{{./index.html}a link}}\n\n  * <<bold>> item\n\n  []\n\n" );
+            }
+            sb.append( "*----+----+----+\n" );
+            for ( int r = 0; r < rows; r++ )
+            {
+                sb.append( "| " ).append( r ).append( " | " ).append( s ).append( " | cell |\n*----+----+----+\n" );
+            }
+            sb.append( "\n+----+\nint s = " ).append( s ).append( ";\n+----+\n\n" );
+        }
+        return sb.toString();
+    }
+
+    private static String markdown( String title, int sections, int rows )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "# " ).append( title ).append( "\n\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "## Section " ).append( s ).append( "\n\n" ).append( TEXT ).append( ".\n\n" );
+            sb.append( "* item with [a link](./index.html)\n* **bold** item\n\n" );
+            sb.append( "| a | b | c |\n|---|---|---|\n" );
+            for ( int r = 0; r < rows; r++ )
+            {
+                sb.append( "| " ).append( r ).append( " | " ).append( s ).append( " | cell |\n" );
+            }
+            sb.append( "\n    int s = " ).append( s ).append( ";\n\n" );
+        }
+        return sb.toString();
+    }
+
+    private static String xdoc( String title, int sections, int rows )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<document>\n<properties><title>" ).append( title )
+            .append( "</title></properties>\n<body>\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "<section name=\"Section " ).append( s ).append( "\">\n<p>" ).append( TEXT )
+                .append( ".</p>\n<ul><li>item with <a href=\"./index.html\">a link</a></li>"
+                    + "<li><b>bold</b> item</li></ul>\n<table>\n" );
+            for ( int r = 0; r < rows; r++ )
+            {
+                sb.append( "<tr><td>" ).append( r ).append( "</td><td>" ).append( s )
+                    .append( "</td><td>cell</td></tr>\n" );
+            }
+            sb.append( "</table>\n<source>int s = " ).append( s ).append( ";</source>\n</section>\n" );
+        }
+        sb.append( "</body>\n</document>\n" );
+        return sb.toString();
+    }
+
+    private static String fml( String title, int sections, int rows )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<faqs title=\"" ).append( title ).append( "\">\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "<part id=\"part" ).append( s ).append( "\">\n<title>Part " ).append( s )
+                .append( "</title>\n" );
+            for ( int r = 0; r < rows; r++ )
+            {
+                sb.append( "<faq id=\"faq" ).append( s ).append( '-' ).append( r ).append( "\">\n<question>Question " )
+                    .append( r ).append( "?</question>\n<answer><p>" ).append( TEXT )
+                    .append( ".</p></answer>\n</faq>\n" );
+            }
+            sb.append( "</part>\n" );
+        }
+        sb.append( "</faqs>\n" );
+        return sb.toString();
+    }
+}
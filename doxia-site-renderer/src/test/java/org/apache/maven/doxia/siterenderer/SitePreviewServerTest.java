@@ -0,0 +1,143 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Tests the {@link SitePreviewServer}.
+ */
+public class SitePreviewServerTest
+    extends PlexusTestCase
+{
+    private SitePreviewServer server;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        File siteDirectory = getTestFile( "target/site-preview/src/site" );
+        FileUtils.deleteDirectory( siteDirectory );
+        new File( siteDirectory, "apt/sub" ).mkdirs();
+        new File( siteDirectory, "resources/images" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8",
+                             " ------\n Index\n ------\n\nIndex content\n" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/sub/page.apt" ), "UTF-8",
+                             " ------\n Page\n ------\n\nPage content\n" );
+        FileUtils.fileWrite( new File( siteDirectory, "resources/images/test.svg" ), "UTF-8", "<svg/>" );
+
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( "Preview" );
+
+        SiteRenderingContext ctxt = new SiteRenderingContext();
+        ctxt.setTemplateName( "default-site.vm" );
+        ctxt.setTemplateClassLoader( getClassLoader() );
+        ctxt.setUsingDefaultTemplate( true );
+        Map<String, String> templateProp = new HashMap<String, String>();
+        templateProp.put( "outputEncoding", "UTF-8" );
+        ctxt.setTemplateProperties( templateProp );
+        ctxt.setDecoration( decoration );
+        ctxt.addSiteDirectory( siteDirectory );
+        ctxt.setRootDirectory( getTestFile( "target/site-preview" ) );
+
+        server = new SitePreviewServer( (Renderer) lookup( Renderer.ROLE ), (SkinRegistry) lookup( SkinRegistry.ROLE ),
+                                        ctxt, new InetSocketAddress( "localhost", 0 ) );
+        server.enableLogging( new SystemStreamLog() );
+        server.start();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        server.close();
+
+        super.tearDown();
+    }
+
+    private HttpURLConnection get( String path )
+        throws Exception
+    {
+        return (HttpURLConnection) new URL( "http://localhost:" + server.getPort() + path ).openConnection();
+    }
+
+    private String read( HttpURLConnection connection )
+        throws Exception
+    {
+        InputStream in = connection.getInputStream();
+        try
+        {
+            return IOUtil.toString( in, "UTF-8" );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    public void testDocuments()
+        throws Exception
+    {
+        HttpURLConnection connection = get( "/" );
+        assertEquals( 200, connection.getResponseCode() );
+        assertEquals( "text/html; charset=UTF-8", connection.getContentType() );
+        String content = read( connection );
+        assertTrue( content.contains( "Preview &#x2013; Index" ) );
+        assertTrue( content.contains( "Index content" ) );
+
+        // cached page
+        assertEquals( content, read( get( "/index.html" ) ) );
+
+        assertTrue( read( get( "/sub/page.html" ) ).contains( "Page content" ) );
+    }
+
+    public void testResources()
+        throws Exception
+    {
+        HttpURLConnection connection = get( "/images/test.svg" );
+        assertEquals( "image/svg+xml", connection.getContentType() );
+        assertEquals( "<svg/>", read( connection ) );
+
+        // default template resources, served from the classpath
+        assertEquals( 200, get( "/css/maven-base.css" ).getResponseCode() );
+        assertEquals( "text/css", get( "/css/site.css" ).getContentType() );
+    }
+
+    public void testNotFound()
+        throws Exception
+    {
+        assertEquals( 404, get( "/missing.html" ).getResponseCode() );
+        assertEquals( 403, get( "/../pom.xml" ).getResponseCode() );
+    }
+}
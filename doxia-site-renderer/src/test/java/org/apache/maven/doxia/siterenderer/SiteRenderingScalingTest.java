@@ -0,0 +1,125 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.doxia.site.decoration.AllocationMeter;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Scaling test: locates and renders a generated site, and fails when wall-clock time or allocated bytes per page
+ * go over the budget recorded in <code>scaling-budget.properties</code>.
+ * <p>The site has 1000 pages by default, set the <code>doxia.scaling.pages</code> system property to test larger
+ * sites, up to 100k pages.</p>
+ */
+public class SiteRenderingScalingTest
+    extends PlexusTestCase
+{
+    private static final String OUTPUT = "target/scaling";
+
+    private Properties budget;
+
+    private Renderer renderer;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        renderer = (Renderer) lookup( Renderer.ROLE );
+
+        budget = new Properties();
+        InputStream in = getClass().getResourceAsStream( "scaling-budget.properties" );
+        try
+        {
+            budget.load( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    public void testLocateAndRender()
+        throws Exception
+    {
+        int pages = Integer.getInteger( "doxia.scaling.pages", 1000 );
+        File siteDirectory = getTestFile( OUTPUT + "/site" );
+        new SiteCorpusGenerator().setPages( pages ).generate( siteDirectory );
+
+        SiteRenderingContext context = new SiteRenderingContext();
+        context.setTemplateName( "org/apache/maven/doxia/siterenderer/resources/default-site.vm" );
+        context.setTemplateClassLoader( getClassLoader() );
+        context.setUsingDefaultTemplate( true );
+        Map<String, Object> templateProperties = new HashMap<String, Object>();
+        templateProperties.put( "outputEncoding", "UTF-8" );
+        context.setTemplateProperties( templateProperties );
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( "Scaling" );
+        context.setDecoration( decoration );
+        context.setRootDirectory( getTestFile( OUTPUT ) );
+        context.addSiteDirectory( siteDirectory );
+
+        long allocated = AllocationMeter.getAllocatedBytes();
+        long start = System.nanoTime();
+        Map<String, DocumentRenderer> documents = renderer.locateDocumentFiles( context );
+        long locateTime = System.nanoTime() - start;
+        long locateAllocated = AllocationMeter.getAllocatedBytes() - allocated;
+
+        assertEquals( pages, documents.size() );
+
+        File outputDirectory = getTestFile( OUTPUT + "/output" );
+        allocated = AllocationMeter.getAllocatedBytes();
+        start = System.nanoTime();
+        renderer.render( documents.values(), context, outputDirectory );
+        long renderTime = System.nanoTime() - start;
+        long renderAllocated = AllocationMeter.getAllocatedBytes() - allocated;
+
+        assertTrue( new File( outputDirectory, "page0.html" ).exists() );
+
+        assertBudget( "locate", pages, locateTime, locateAllocated );
+        assertBudget( "render", pages, renderTime, renderAllocated );
+    }
+
+    private void assertBudget( String phase, int pages, long time, long allocated )
+    {
+        long millisPerPage = time / 1000000L / pages;
+        long millisBudget = Long.parseLong( budget.getProperty( phase + ".millisPerPage" ) );
+        assertTrue( phase + " took " + millisPerPage + " ms per page, budget is " + millisBudget,
+                    millisPerPage <= millisBudget );
+
+        if ( AllocationMeter.isSupported() )
+        {
+            long bytesPerPage = allocated / pages;
+            long bytesBudget = Long.parseLong( budget.getProperty( phase + ".bytesPerPage" ) );
+            assertTrue( phase + " allocated " + bytesPerPage + " bytes per page, budget is " + bytesBudget,
+                        bytesPerPage <= bytesBudget );
+        }
+    }
+}
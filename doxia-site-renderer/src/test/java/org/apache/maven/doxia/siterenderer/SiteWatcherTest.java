@@ -0,0 +1,216 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests the {@link SiteWatcher}.
+ */
+public class SiteWatcherTest
+    extends PlexusTestCase
+{
+    private File siteDirectory;
+
+    private File siteDescriptor;
+
+    private File outputDirectory;
+
+    private SiteWatcher watcher;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        final File baseDirectory = getTestFile( "target/site-watcher" );
+        FileUtils.deleteDirectory( baseDirectory );
+        siteDirectory = new File( baseDirectory, "src/site" );
+        new File( siteDirectory, "apt" ).mkdirs();
+        siteDescriptor = new File( siteDirectory, "site.xml" );
+        outputDirectory = new File( baseDirectory, "output" );
+
+        FileUtils.fileWrite( siteDescriptor, "UTF-8", "First" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8",
+                             " ------\n Index\n ------\n\nIndex content\n" );
+        FileUtils.fileWrite( new File( siteDirectory, "apt/other.apt" ), "UTF-8",
+                             " ------\n Other\n ------\n\nOther content\n" );
+
+        final Renderer renderer = (Renderer) lookup( Renderer.ROLE );
+
+        watcher = new SiteWatcher( renderer, new SiteWatcher.ContextFactory()
+        {
+            public SiteRenderingContext createSiteRenderingContext()
+                throws IOException
+            {
+                // the site descriptor is simply the decoration name
+                String name = FileUtils.fileRead( siteDescriptor, "UTF-8" );
+                if ( "Broken".equals( name ) )
+                {
+                    throw new IOException( "Broken site descriptor" );
+                }
+                DecorationModel decoration = new DecorationModel();
+                decoration.setName( name );
+
+                SiteRenderingContext ctxt = new SiteRenderingContext();
+                ctxt.setTemplateName( "default-site.vm" );
+                ctxt.setTemplateClassLoader( getClassLoader() );
+                ctxt.setUsingDefaultTemplate( true );
+                Map<String, String> templateProp = new HashMap<String, String>();
+                templateProp.put( "outputEncoding", "UTF-8" );
+                ctxt.setTemplateProperties( templateProp );
+                ctxt.setDecoration( decoration );
+                ctxt.addSiteDirectory( siteDirectory );
+                ctxt.setRootDirectory( baseDirectory );
+                return ctxt;
+            }
+        }, outputDirectory );
+        watcher.enableLogging( new SystemStreamLog() );
+        watcher.addContextFile( siteDescriptor );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        watcher.close();
+
+        super.tearDown();
+    }
+
+    private String readOutput( String name )
+        throws IOException
+    {
+        return FileUtils.fileRead( new File( outputDirectory, name ), "UTF-8" );
+    }
+
+    public void testSourceChange()
+        throws Exception
+    {
+        watcher.render();
+        assertTrue( readOutput( "index.html" ).contains( "Index content" ) );
+        File other = new File( outputDirectory, "other.html" );
+        assertTrue( other.delete() );
+
+        FileUtils.fileWrite( new File( siteDirectory, "apt/index.apt" ), "UTF-8",
+                             " ------\n Index\n ------\n\nChanged content\n" );
+        assertTrue( watcher.processChanges( 10, TimeUnit.SECONDS ) );
+
+        assertTrue( readOutput( "index.html" ).contains( "Changed content" ) );
+        // only the changed document is rendered again
+        assertFalse( other.exists() );
+    }
+
+    public void testNewSource()
+        throws Exception
+    {
+        watcher.render();
+
+        new File( siteDirectory, "apt/sub" ).mkdirs();
+        FileUtils.fileWrite( new File( siteDirectory, "apt/sub/new.apt" ), "UTF-8",
+                             " ------\n New\n ------\n\nNew content\n" );
+        while ( !new File( outputDirectory, "sub/new.html" ).exists() )
+        {
+            assertTrue( watcher.processChanges( 10, TimeUnit.SECONDS ) );
+        }
+
+        assertTrue( readOutput( "sub/new.html" ).contains( "New content" ) );
+    }
+
+    public void testDeletedSource()
+        throws Exception
+    {
+        watcher.render();
+        File other = new File( outputDirectory, "other.html" );
+        assertTrue( other.exists() );
+
+        assertTrue( new File( siteDirectory, "apt/other.apt" ).delete() );
+        while ( other.exists() )
+        {
+            assertTrue( watcher.processChanges( 10, TimeUnit.SECONDS ) );
+        }
+
+        assertTrue( readOutput( "index.html" ).contains( "Index content" ) );
+    }
+
+    public void testWatchAfterError()
+        throws Exception
+    {
+        watcher.render();
+
+        final Exception[] watchError = new Exception[1];
+        Thread watching = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    watcher.watch();
+                }
+                catch ( Exception e )
+                {
+                    watchError[0] = e;
+                }
+            }
+        } );
+        watching.start();
+
+        // the error is logged, next changes are still processed
+        FileUtils.fileWrite( siteDescriptor, "UTF-8", "Broken" );
+        Thread.sleep( 1000 );
+        FileUtils.fileWrite( siteDescriptor, "UTF-8", "Fixed" );
+        long timeout = System.currentTimeMillis() + 10000;
+        while ( !readOutput( "index.html" ).contains( "Fixed &#x2013; Index" ) )
+        {
+            assertTrue( System.currentTimeMillis() < timeout );
+            Thread.sleep( 100 );
+        }
+
+        // closing the watcher stops watching
+        watcher.close();
+        watching.join( 10000 );
+        assertFalse( watching.isAlive() );
+        assertNull( watchError[0] );
+    }
+
+    public void testContextChange()
+        throws Exception
+    {
+        watcher.render();
+        assertTrue( readOutput( "index.html" ).contains( "First &#x2013; Index" ) );
+
+        FileUtils.fileWrite( siteDescriptor, "UTF-8", "Second" );
+        assertTrue( watcher.processChanges( 10, TimeUnit.SECONDS ) );
+
+        // every document decorated again
+        assertTrue( readOutput( "index.html" ).contains( "Second &#x2013; Index" ) );
+        assertTrue( readOutput( "other.html" ).contains( "Second &#x2013; Other" ) );
+    }
+}
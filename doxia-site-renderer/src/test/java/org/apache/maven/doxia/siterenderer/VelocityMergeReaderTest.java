@@ -0,0 +1,161 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ParseErrorException;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Tests the {@link VelocityMergeReader}.
+ */
+public class VelocityMergeReaderTest
+    extends PlexusTestCase
+{
+    private File templateDirectory;
+
+    private VelocityEngine engine;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        templateDirectory = getTestFile( "target/test-output/velocity-merge" );
+        FileUtils.deleteDirectory( templateDirectory );
+        templateDirectory.mkdirs();
+
+        engine = new VelocityEngine();
+        engine.setProperty( "file.resource.loader.path", templateDirectory.getAbsolutePath() );
+        engine.init();
+    }
+
+    public void testMerge()
+        throws Exception
+    {
+        // much bigger than the pipe buffer
+        FileUtils.fileWrite( new File( templateDirectory, "test.apt.vm" ), "UTF-8",
+                             "#foreach( $i in [1..20000] )\nline $i $name\n#end\n" );
+
+        VelocityContext context = new VelocityContext();
+        context.put( "name", "\u00e9t\u00e9" );
+
+        File processedContentFile = new File( templateDirectory, "processed/test.apt" );
+
+        VelocityMergeReader reader =
+            new VelocityMergeReader( engine, "test.apt.vm", "UTF-8", context, processedContentFile );
+        String content;
+        try
+        {
+            content = IOUtil.toString( reader );
+            reader.finish();
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        assertTrue( content.startsWith( "line 1 \u00e9t\u00e9\nline 2 \u00e9t\u00e9\n" ) );
+        assertTrue( content.endsWith( "line 20000 \u00e9t\u00e9\n" ) );
+        assertEquals( content, FileUtils.fileRead( processedContentFile, "UTF-8" ) );
+    }
+
+    public void testPartialRead()
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( templateDirectory, "test.apt.vm" ), "UTF-8",
+                             "#foreach( $i in [1..20000] )\nline $i\n#end\n" );
+
+        File processedContentFile = new File( templateDirectory, "processed/test.apt" );
+
+        VelocityMergeReader reader =
+            new VelocityMergeReader( engine, "test.apt.vm", "UTF-8", new VelocityContext(), processedContentFile );
+        assertTrue( reader.read( new char[100] ) > 0 );
+
+        // remaining content discarded without blocking the merge, but fully saved as processed content
+        reader.finish();
+
+        assertTrue( FileUtils.fileRead( processedContentFile, "UTF-8" ).endsWith( "line 20000\n" ) );
+    }
+
+    public void testMoreDocumentsThanMergers()
+        throws Exception
+    {
+        // bigger than the pipe buffer: each merge holds its merger until read
+        FileUtils.fileWrite( new File( templateDirectory, "test.apt.vm" ), "UTF-8",
+                             "$thread.currentThread().getName()\n#foreach( $i in [1..20000] )\nline $i\n#end\n" );
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        VelocityMergeReader[] readers = new VelocityMergeReader[2 * processors + 1];
+        for ( int i = 0; i < readers.length; i++ )
+        {
+            VelocityContext context = new VelocityContext();
+            context.put( "thread", Thread.currentThread() );
+            readers[i] = new VelocityMergeReader( engine, "test.apt.vm", "UTF-8", context, null );
+        }
+
+        // queued documents are merged once previous readers are consumed
+        Set<String> mergers = new HashSet<String>();
+        for ( VelocityMergeReader reader : readers )
+        {
+            String content = IOUtil.toString( reader );
+            reader.finish();
+
+            assertTrue( content.endsWith( "line 20000\n" ) );
+            mergers.add( content.substring( 0, content.indexOf( '\n' ) ) );
+        }
+
+        assertTrue( mergers.toString(), mergers.size() <= processors );
+        assertTrue( mergers.toString(), mergers.iterator().next().startsWith( "doxia-velocity-merge-" ) );
+    }
+
+    public void testMergeError()
+        throws Exception
+    {
+        FileUtils.fileWrite( new File( templateDirectory, "error.apt.vm" ), "UTF-8", "line\n#foreach( $i in \n" );
+
+        File processedContentFile = new File( templateDirectory, "processed/error.apt" );
+
+        VelocityMergeReader reader =
+            new VelocityMergeReader( engine, "error.apt.vm", "UTF-8", new VelocityContext(), processedContentFile );
+        try
+        {
+            IOUtil.toString( reader );
+            reader.finish();
+            fail( "Velocity parse error expected" );
+        }
+        catch ( ParseErrorException e )
+        {
+            assertFalse( processedContentFile.exists() );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
@@ -34,21 +34,23 @@ import org.xml.sax.SAXException;
 public class XhtmlEntityResolver
     implements EntityResolver
 {
+    private static final String CATALOG = "/org/apache/maven/doxia/siterenderer/catalog/";
+
     private static final String XHTML_PUBLIC_ID = "-//W3C//DTD XHTML 1.0 Transitional//EN";
 
-    private static final String DTD = "/dtd/xhtml1-transitional.dtd";
+    private static final String DTD = CATALOG + "xhtml1-transitional.dtd";
 
     private static final String LAT1_PUBLIC_ID = "-//W3C//ENTITIES Latin 1 for XHTML//EN";
 
-    private static final String LAT1 = "/dtd/xhtml-lat1.ent";
+    private static final String LAT1 = CATALOG + "xhtml-lat1.ent";
 
     private static final String SYMBOL_PUBLIC_ID = "-//W3C//ENTITIES Symbols for XHTML//EN";
 
-    private static final String SYMBOL = "/dtd/xhtml-symbol.ent";
+    private static final String SYMBOL = CATALOG + "xhtml-symbol.ent";
 
     private static final String SPECIAL_PUBLIC_ID = "-//W3C//ENTITIES Special for XHTML//EN";
 
-    private static final String SPECIAL = "/dtd/xhtml-special.ent";
+    private static final String SPECIAL = CATALOG + "xhtml-special.ent";
 
     /** {@inheritDoc} */
     public InputSource resolveEntity( String publicId, String systemId )
@@ -0,0 +1,248 @@
+package org.apache.maven.doxia.siterenderer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ZipSiteOutput}: archives written in parallel are read back by <code>java.util.zip</code>.
+ */
+public class ZipSiteOutputTest
+    extends TestCase
+{
+    private File archive;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        archive = File.createTempFile( "doxia-site", ".zip" );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        archive.delete();
+
+        super.tearDown();
+    }
+
+    public void testEntries()
+        throws IOException
+    {
+        ZipSiteOutput output = new ZipSiteOutput( new FileOutputStream( archive ), 4 );
+        try
+        {
+            for ( int i = 0; i < 100; i++ )
+            {
+                write( output, "dir" + ( i % 10 ) + "/page-" + i + ".html", content( i ) );
+            }
+            write( output, "r\u00e9sum\u00e9.html", "UTF-8 name" );
+            write( output, "empty.txt", "" );
+
+            assertTrue( output.exists( "dir0/page-0.html" ) );
+            assertFalse( output.exists( "dir0/page-1.html" ) );
+            assertNull( output.getDirectory() );
+        }
+        finally
+        {
+            output.close();
+        }
+
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            List<String> names = new ArrayList<String>();
+            for ( Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); )
+            {
+                names.add( e.nextElement().getName() );
+            }
+            assertEquals( 102, names.size() );
+            // entries are written in the order they were closed
+            assertEquals( "dir0/page-0.html", names.get( 0 ) );
+            assertEquals( "dir9/page-99.html", names.get( 99 ) );
+
+            for ( int i = 0; i < 100; i++ )
+            {
+                assertEquals( content( i ), read( zip, "dir" + ( i % 10 ) + "/page-" + i + ".html" ) );
+            }
+            assertEquals( "UTF-8 name", read( zip, "r\u00e9sum\u00e9.html" ) );
+            assertEquals( "", read( zip, "empty.txt" ) );
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    public void testDuplicateEntry()
+        throws IOException
+    {
+        ZipSiteOutput output = new ZipSiteOutput( new FileOutputStream( archive ), 1 );
+        try
+        {
+            write( output, "index.html", "first" );
+            try
+            {
+                output.newOutputStream( "index.html" );
+                fail( "archive entries can't be replaced" );
+            }
+            catch ( IOException e )
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+
+        try
+        {
+            output.newOutputStream( "other.html" );
+            fail( "archive already closed" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+
+    public void testCloseAfterWriteError()
+        throws IOException
+    {
+        final boolean[] failing = new boolean[1];
+        final boolean[] closed = new boolean[1];
+        OutputStream failingStream = new OutputStream()
+        {
+            @Override
+            public void write( int b )
+                throws IOException
+            {
+                if ( failing[0] )
+                {
+                    throw new IOException( "Disk full" );
+                }
+            }
+
+            @Override
+            public void close()
+            {
+                closed[0] = true;
+            }
+        };
+
+        ZipSiteOutput output = new ZipSiteOutput( failingStream, 1 );
+        write( output, "index.html", "content" );
+
+        failing[0] = true;
+        try
+        {
+            output.close();
+            fail( "write error expected" );
+        }
+        catch ( IOException e )
+        {
+            // the archive stream is not leaked
+            assertTrue( closed[0] );
+        }
+    }
+
+    /**
+     * More than 65535 entries require ZIP64 end of central directory records.
+     */
+    public void testZip64Entries()
+        throws IOException
+    {
+        int count = 70000;
+
+        ZipSiteOutput output = new ZipSiteOutput( new FileOutputStream( archive ) );
+        try
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                write( output, "p/" + i + ".html", Integer.toString( i ) );
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            assertEquals( count, zip.size() );
+            assertEquals( "0", read( zip, "p/0.html" ) );
+            assertEquals( Integer.toString( count - 1 ), read( zip, "p/" + ( count - 1 ) + ".html" ) );
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    private static String content( int i )
+    {
+        StringBuilder sb = new StringBuilder( "<html><body>" );
+        for ( int j = 0; j < i * 10; j++ )
+        {
+            sb.append( "<p>Paragraph " ).append( j ).append( "</p>\n" );
+        }
+        return sb.append( "</body></html>" ).toString();
+    }
+
+    private static void write( SiteOutput output, String path, String content )
+        throws IOException
+    {
+        OutputStream os = output.newOutputStream( path );
+        try
+        {
+            os.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    private static String read( ZipFile zip, String name )
+        throws IOException
+    {
+        ZipEntry entry = zip.getEntry( name );
+        assertNotNull( name, entry );
+        return IOUtil.toString( zip.getInputStream( entry ), "UTF-8" );
+    }
+}
@@ -0,0 +1,118 @@
+package org.apache.maven.doxia.siterenderer.sink;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.siterenderer.RenderingContext;
+
+public class BodyWriterTest
+    extends TestCase
+{
+    public void testRelativePath()
+        throws Exception
+    {
+        String[] texts = { "", "no placeholder", "$relativePath", "<a href=\"$relativePath/index.html\">",
+            "$$relativePath$relative$relativePath$", "$relativePathrelativePath", "ends with $relative", "$" };
+
+        for ( String text : texts )
+        {
+            String expected = text.replace( "$relativePath", "../.." );
+
+            assertEquals( expected, write( text, 1 ).toString( "../.." ) );
+            assertEquals( expected, write( text, 3 ).toString( "../.." ) );
+            assertEquals( expected, write( text, text.length() + 1 ).toString( "../.." ) );
+            assertEquals( text, write( text, 2 ).toString( null ) );
+
+            StringWriter sw = new StringWriter();
+            write( text, 5 ).writeTo( sw, "../.." );
+            assertEquals( expected, sw.toString() );
+            assertEquals( expected.length(), write( text, 5 ).length( "../.." ) );
+        }
+    }
+
+    public void testLargeContentAndReset()
+        throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 2000; i++ )
+        {
+            sb.append( "<a href=\"$relativePath/page" ).append( i ).append( ".html\">page " ).append( i );
+            sb.append( "</a>\n" );
+        }
+        String text = sb.toString();
+        String expected = text.replace( "$relativePath", "." );
+
+        BodyWriter writer = write( text, 1000 );
+        assertEquals( expected, writer.toString( "." ) );
+
+        writer.reset();
+        assertEquals( "", writer.toString( "." ) );
+
+        writer.write( text );
+        assertEquals( expected, writer.toString( "." ) );
+    }
+
+    public void testSink()
+        throws Exception
+    {
+        RenderingContext context = new RenderingContext( new File( "target" ), "dir/doc.apt" );
+        String relativePath = ( context.getRelativePath() == null ) ? "." : context.getRelativePath();
+
+        SiteRendererSink sink = new SiteRendererSink( context );
+        sink.link( "$relativePath/index.html" );
+        sink.text( "$relativePath" );
+        sink.link_();
+        sink.flush();
+
+        String body = sink.getBody();
+        assertFalse( body.contains( "$relativePath" ) );
+        assertTrue( body.contains( "href=\"" + relativePath + "/index.html\"" ) );
+        assertTrue( body.contains( ">" + relativePath + "</a>" ) );
+    }
+
+    /**
+     * Write text to a body writer, with chunks of given size alternatively written as String and as char array.
+     */
+    private BodyWriter write( String text, int chunkSize )
+    {
+        BodyWriter writer = new BodyWriter();
+
+        boolean asString = true;
+        for ( int off = 0; off < text.length(); off += chunkSize )
+        {
+            int len = Math.min( chunkSize, text.length() - off );
+            if ( asString )
+            {
+                writer.write( text, off, len );
+            }
+            else
+            {
+                writer.write( text.toCharArray(), off, len );
+            }
+            asString = !asString;
+        }
+
+        return writer;
+    }
+}
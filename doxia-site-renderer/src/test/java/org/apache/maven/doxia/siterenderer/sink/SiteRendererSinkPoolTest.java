@@ -0,0 +1,113 @@
+package org.apache.maven.doxia.siterenderer.sink;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.siterenderer.RenderingContext;
+
+/**
+ * Tests the {@link SiteRendererSinkPool} and {@link SiteRendererSink#reset(RenderingContext)}.
+ */
+public class SiteRendererSinkPoolTest
+    extends TestCase
+{
+    private final RenderingContext first = new RenderingContext( new File( "target" ), "first.apt" );
+
+    private final RenderingContext second = new RenderingContext( new File( "target" ), "dir/second.apt" );
+
+    public void testReset()
+    {
+        SiteRendererSinkPool pool = new SiteRendererSinkPool();
+
+        SiteRendererSink sink = pool.acquire( first );
+        render( sink, "First", "Author" );
+        assertEquals( "First", sink.getTitle() );
+        pool.release( sink );
+
+        SiteRendererSink reused = pool.acquire( second );
+        assertSame( sink, reused );
+        assertSame( second, reused.getRenderingContext() );
+        assertEquals( "", reused.getTitle() );
+        assertEquals( "", reused.getHead() );
+        assertEquals( "", reused.getBody() );
+        assertTrue( reused.getAuthors().isEmpty() );
+
+        SiteRendererSink fresh = new SiteRendererSink( second );
+        render( fresh, "Second", "Other" );
+        render( reused, "Second", "Other" );
+
+        assertEquals( fresh.getTitle(), reused.getTitle() );
+        assertEquals( fresh.getAuthors(), reused.getAuthors() );
+        assertEquals( fresh.getHead(), reused.getHead() );
+        assertEquals( fresh.getBody(), reused.getBody() );
+    }
+
+    public void testLimits()
+    {
+        SiteRendererSinkPool pool = new SiteRendererSinkPool( 1, 0 );
+
+        SiteRendererSink sink = pool.acquire( first );
+        render( sink, "First", "Author" );
+        pool.release( sink );
+
+        // buffers over the size cap: not pooled
+        assertNotSame( sink, pool.acquire( first ) );
+
+        pool = new SiteRendererSinkPool( 1, SiteRendererSinkPool.DEFAULT_MAX_BUFFER_CAPACITY );
+        SiteRendererSink a = pool.acquire( first );
+        SiteRendererSink b = pool.acquire( first );
+        pool.release( a );
+        pool.release( b );
+
+        // only one sink pooled
+        assertSame( a, pool.acquire( first ) );
+        assertNotSame( b, pool.acquire( first ) );
+    }
+
+    private static void render( SiteRendererSink sink, String title, String author )
+    {
+        sink.head();
+        sink.title();
+        sink.text( title );
+        sink.title_();
+        sink.author();
+        sink.text( author );
+        sink.author_();
+        sink.head_();
+        sink.body();
+        sink.section1();
+        sink.sectionTitle1();
+        sink.text( title );
+        sink.sectionTitle1_();
+        sink.paragraph();
+        sink.link( "$relativePath/index.html" );
+        sink.text( "index" );
+        sink.link_();
+        sink.paragraph_();
+        sink.section1_();
+        sink.body_();
+        sink.flush();
+        sink.close();
+    }
+}
@@ -0,0 +1,77 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.inheritance.DecorationModelInheritanceAssembler;
+import org.apache.maven.doxia.site.decoration.inheritance.DefaultDecorationModelInheritanceAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoration model inheritance: a child site inheriting menus, links and breadcrumbs from its parent, with links
+ * rebased from the parent to the child URL.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DecorationInheritanceBenchmark
+{
+    @Param( { "10", "100" } )
+    private int items;
+
+    private final DecorationModelInheritanceAssembler assembler = new DefaultDecorationModelInheritanceAssembler();
+
+    private DecorationModel parent;
+
+    private DecorationModel child;
+
+    @Setup
+    public void setUp()
+    {
+        parent = SiteFixture.createDecorationModel( "parent", 3, items );
+        child = SiteFixture.createDecorationModel( "child", 1, items );
+    }
+
+    @Benchmark
+    public DecorationModel assembleModelInheritance()
+    {
+        // inheritance modifies the child model
+        DecorationModel decoration = child.clone();
+        assembler.assembleModelInheritance( "child", decoration, parent.clone(), "https://example.org/parent/child",
+                                            "https://example.org/parent" );
+        return decoration;
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.siterenderer.DocumentRenderer;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Document files location in a large site: directory scanning and document renderers creation.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LocateDocumentFilesBenchmark
+{
+    private static final String[] FORMATS = { "apt", "xdoc", "fml", "markdown", "xhtml" };
+
+    @Param( { "1000", "10000" } )
+    private int documents;
+
+    private SiteFixture fixture;
+
+    private Renderer renderer;
+
+    private SiteRenderingContext siteContext;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        fixture = new SiteFixture();
+        renderer = fixture.getRenderer();
+
+        File siteDirectory = new File( fixture.getDirectory(), "site" );
+        for ( int i = 0; i < documents; i++ )
+        {
+            // 100 documents per directory
+            SiteFixture.writeDocument( siteDirectory, FORMATS[i % FORMATS.length], "dir" + ( i / 100 ) + "/doc" + i,
+                                       1 );
+        }
+        siteContext = fixture.createDefaultTemplateContext( siteDirectory );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        fixture.dispose();
+    }
+
+    @Benchmark
+    public Map<String, DocumentRenderer> locateDocumentFiles()
+        throws Exception
+    {
+        return renderer.locateDocumentFiles( siteContext );
+    }
+}
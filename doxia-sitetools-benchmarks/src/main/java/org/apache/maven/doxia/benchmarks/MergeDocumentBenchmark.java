@@ -0,0 +1,97 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.siterenderer.DocumentContent;
+import org.apache.maven.doxia.siterenderer.DocumentRenderer;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merge of an already parsed document into the site Velocity template, i.e. the decorate stage alone, with the
+ * default site template or with the Maven Fluido skin.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MergeDocumentBenchmark
+{
+    @Param( { "default", "fluido" } )
+    private String template;
+
+    private SiteFixture fixture;
+
+    private Renderer renderer;
+
+    private SiteRenderingContext siteContext;
+
+    private DocumentContent content;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        fixture = new SiteFixture();
+        renderer = fixture.getRenderer();
+
+        File siteDirectory = new File( fixture.getDirectory(), "site" );
+        SiteFixture.writeDocument( siteDirectory, "xdoc", "document", 20 );
+        siteContext = "fluido".equals( template ) ? fixture.createSkinContext( siteDirectory )
+                        : fixture.createDefaultTemplateContext( siteDirectory );
+
+        DocumentRenderer document = renderer.locateDocumentFiles( siteContext ).get( "document.html" );
+        content = renderer.parseDocument( document.getRenderingContext(), siteContext );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        fixture.dispose();
+    }
+
+    @Benchmark
+    public long mergeDocumentIntoSite()
+        throws Exception
+    {
+        SiteFixture.CountingWriter writer = new SiteFixture.CountingWriter();
+        renderer.mergeDocumentIntoSite( writer, content, siteContext );
+        return writer.getCount();
+    }
+}
@@ -0,0 +1,98 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.siterenderer.DocumentRenderer;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.RenderingContext;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full rendering of one document, parse and merge into the default site template, for each Doxia parser.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RenderDocumentBenchmark
+{
+    @Param( { "apt", "xdoc", "fml", "markdown", "xhtml" } )
+    private String format;
+
+    @Param( { "20" } )
+    private int sections;
+
+    private SiteFixture fixture;
+
+    private Renderer renderer;
+
+    private SiteRenderingContext siteContext;
+
+    private RenderingContext renderingContext;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        fixture = new SiteFixture();
+        renderer = fixture.getRenderer();
+
+        File siteDirectory = new File( fixture.getDirectory(), "site" );
+        SiteFixture.writeDocument( siteDirectory, format, "document", sections );
+        siteContext = fixture.createDefaultTemplateContext( siteDirectory );
+
+        DocumentRenderer document = renderer.locateDocumentFiles( siteContext ).get( "document.html" );
+        renderingContext = document.getRenderingContext();
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        fixture.dispose();
+    }
+
+    @Benchmark
+    public long renderDocument()
+        throws Exception
+    {
+        SiteFixture.CountingWriter writer = new SiteFixture.CountingWriter();
+        renderer.renderDocument( writer, renderingContext, siteContext );
+        return writer.getCount();
+    }
+}
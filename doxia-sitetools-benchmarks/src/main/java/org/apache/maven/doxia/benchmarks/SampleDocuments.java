@@ -0,0 +1,191 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Sample document sources in each benchmarked Doxia format, with sections, paragraphs, lists, tables and verbatim
+ * blocks, to exercise a representative share of parser and sink events.
+ */
+final class SampleDocuments
+{
+    private static final String TEXT = "Doxia is a content generation framework which provides powerful techniques "
+        + "for generating static and dynamic content, with <b>markup</b> & entities to escape.";
+
+    private SampleDocuments()
+    {
+        // no op
+    }
+
+    /**
+     * @param format the Doxia format
+     * @return the source file extension of the format
+     */
+    static String getExtension( String format )
+    {
+        if ( "xdoc".equals( format ) || "fml".equals( format ) )
+        {
+            return "xml";
+        }
+        if ( "markdown".equals( format ) )
+        {
+            return "md";
+        }
+        return format;
+    }
+
+    /**
+     * Create a document source.
+     *
+     * @param format the Doxia format
+     * @param title the document title
+     * @param sections the number of sections
+     * @return the document source
+     */
+    static String create( String format, String title, int sections )
+    {
+        if ( "apt".equals( format ) )
+        {
+            return apt( title, sections );
+        }
+        if ( "xdoc".equals( format ) )
+        {
+            return xdoc( title, sections );
+        }
+        if ( "fml".equals( format ) )
+        {
+            return fml( title, sections );
+        }
+        if ( "markdown".equals( format ) )
+        {
+            return markdown( title, sections );
+        }
+        if ( "xhtml".equals( format ) )
+        {
+            return xhtml( title, sections );
+        }
+        throw new IllegalArgumentException( "Unsupported format " + format );
+    }
+
+    private static String apt( String title, int sections )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( " -----\n " ).append( title ).append( "\n -----\n\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "Section " ).append( s ).append( "\n\n" );
+            sb.append( "  " ).append( TEXT.replace( "<b>markup</b>", "<<markup>>" ) ).append( "\n\n" );
+            sb.append( "* Subsection " ).append( s ).append( "\n\n" );
+            for ( int i = 0; i < 5; i++ )
+            {
+                sb.append( "  * item " ).append( i ).append( " with {{{./link" ).append( i )
+                    .append( ".html}a link}}\n\n" );
+            }
+            sb.append( "  []\n\n" );
+            sb.append( "*----+----+\n| a | b |\n*----+----+\n| 1 | 2 |\n*----+----+\n\n" );
+            sb.append( "+----+\nint i = " ).append( s ).append( ";\n+----+\n\n" );
+        }
+        return sb.toString();
+    }
+
+    private static String xdoc( String title, int sections )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<document>\n<properties><title>" ).append( title )
+            .append( "</title></properties>\n<body>\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "<section name=\"Section " ).append( s ).append( "\">\n<p>" ).append( escape( TEXT ) )
+                .append( "</p>\n<subsection name=\"Subsection " ).append( s ).append( "\">\n<ul>\n" );
+            for ( int i = 0; i < 5; i++ )
+            {
+                sb.append( "<li>item " ).append( i ).append( " with <a href=\"./link" ).append( i )
+                    .append( ".html\">a link</a></li>\n" );
+            }
+            sb.append( "</ul>\n<table><tr><th>a</th><th>b</th></tr><tr><td>1</td><td>2</td></tr></table>\n" );
+            sb.append( "<source>int i = " ).append( s ).append( ";</source>\n</subsection>\n</section>\n" );
+        }
+        sb.append( "</body>\n</document>\n" );
+        return sb.toString();
+    }
+
+    private static String fml( String title, int sections )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<faqs title=\"" ).append( title ).append( "\">\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "<part id=\"part" ).append( s ).append( "\">\n<title>Part " ).append( s )
+                .append( "</title>\n" );
+            for ( int i = 0; i < 5; i++ )
+            {
+                sb.append( "<faq id=\"faq" ).append( s ).append( '-' ).append( i ).append( "\">\n<question>Question " )
+                    .append( i ).append( "?</question>\n<answer><p>" ).append( escape( TEXT ) )
+                    .append( "</p></answer>\n</faq>\n" );
+            }
+            sb.append( "</part>\n" );
+        }
+        sb.append( "</faqs>\n" );
+        return sb.toString();
+    }
+
+    private static String markdown( String title, int sections )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "# " ).append( title ).append( "\n\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "## Section " ).append( s ).append( "\n\n" ).append( TEXT ).append( "\n\n" );
+            sb.append( "### Subsection " ).append( s ).append( "\n\n" );
+            for ( int i = 0; i < 5; i++ )
+            {
+                sb.append( "* item " ).append( i ).append( " with [a link](./link" ).append( i )
+                    .append( ".html)\n" );
+            }
+            sb.append( "\n| a | b |\n|---|---|\n| 1 | 2 |\n\n" );
+            sb.append( "    int i = " ).append( s ).append( ";\n\n" );
+        }
+        return sb.toString();
+    }
+
+    private static String xhtml( String title, int sections )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<html>\n<head><title>" ).append( title ).append( "</title></head>\n<body>\n" );
+        for ( int s = 0; s < sections; s++ )
+        {
+            sb.append( "<div class=\"section\">\n<h2>Section " ).append( s ).append( "</h2>\n<p>" )
+                .append( escape( TEXT ) ).append( "</p>\n<h3>Subsection " ).append( s ).append( "</h3>\n<ul>\n" );
+            for ( int i = 0; i < 5; i++ )
+            {
+                sb.append( "<li>item " ).append( i ).append( " with <a href=\"./link" ).append( i )
+                    .append( ".html\">a link</a></li>\n" );
+            }
+            sb.append( "</ul>\n<table><tr><th>a</th><th>b</th></tr><tr><td>1</td><td>2</td></tr></table>\n" );
+            sb.append( "<pre>int i = " ).append( s ).append( ";</pre>\n</div>\n" );
+        }
+        sb.append( "</body>\n</html>\n" );
+        return sb.toString();
+    }
+
+    private static String escape( String text )
+    {
+        return text.replace( "&", "&amp;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" );
+    }
+}
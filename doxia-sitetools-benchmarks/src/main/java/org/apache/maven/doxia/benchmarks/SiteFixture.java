@@ -0,0 +1,266 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.doxia.site.decoration.Body;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.LinkItem;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Shared benchmark setup: Plexus container, site rendering contexts, sample site sources.
+ */
+class SiteFixture
+{
+    private final DefaultPlexusContainer container;
+
+    private final File directory;
+
+    /**
+     * Start a Plexus container and create a temporary working directory.
+     *
+     * @throws Exception if the container can't be started
+     */
+    SiteFixture()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+        directory = File.createTempFile( "doxia-benchmark", "" );
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    /**
+     * @return the temporary working directory, deleted by {@link #dispose()}
+     */
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    Object lookup( String role )
+        throws Exception
+    {
+        return container.lookup( role );
+    }
+
+    Renderer getRenderer()
+        throws Exception
+    {
+        return (Renderer) lookup( Renderer.ROLE );
+    }
+
+    /**
+     * Create the rendering context of a site using the default site template.
+     */
+    SiteRenderingContext createDefaultTemplateContext( File siteDirectory )
+    {
+        SiteRenderingContext context = new SiteRenderingContext();
+        context.setTemplateName( "org/apache/maven/doxia/siterenderer/resources/default-site.vm" );
+        context.setTemplateClassLoader( Renderer.class.getClassLoader() );
+        context.setUsingDefaultTemplate( true );
+        context.setTemplateProperties( getTemplateProperties() );
+        context.setDecoration( createDecorationModel( "Benchmark", 3, 10 ) );
+        context.addSiteDirectory( siteDirectory );
+        return context;
+    }
+
+    /**
+     * Create the rendering context of a site using the Maven Fluido skin.
+     */
+    SiteRenderingContext createSkinContext( File siteDirectory )
+        throws Exception
+    {
+        File skinFile = new File( directory, "maven-fluido-skin.jar" );
+        if ( !skinFile.exists() )
+        {
+            InputStream in = getClass().getResourceAsStream( "/skins/maven-fluido-skin.jar" );
+            if ( in == null )
+            {
+                throw new IOException( "Maven Fluido skin not packaged with the benchmarks" );
+            }
+            OutputStream out = null;
+            try
+            {
+                out = new FileOutputStream( skinFile );
+                IOUtil.copy( in, out );
+            }
+            finally
+            {
+                IOUtil.close( out );
+                IOUtil.close( in );
+            }
+        }
+
+        Artifact skin =
+            new DefaultArtifact( "org.apache.maven.skins", "maven-fluido-skin", "1.7", null, "jar", "", null );
+        skin.setFile( skinFile );
+
+        SiteRenderingContext context =
+            getRenderer().createContextForSkin( skin, getTemplateProperties(),
+                                                createDecorationModel( "Benchmark", 3, 10 ), "Benchmark",
+                                                Locale.ENGLISH );
+        context.addSiteDirectory( siteDirectory );
+        return context;
+    }
+
+    private static Map<String, Object> getTemplateProperties()
+    {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put( "outputEncoding", "UTF-8" );
+        properties.put( "project", Collections.emptyMap() );
+        return properties;
+    }
+
+    /**
+     * Create a decoration model with menus, links and breadcrumbs.
+     *
+     * @param name the site name
+     * @param menus the number of menus
+     * @param items the number of items per menu
+     * @return the decoration model
+     */
+    static DecorationModel createDecorationModel( String name, int menus, int items )
+    {
+        DecorationModel decoration = new DecorationModel();
+        decoration.setName( name );
+
+        Body body = new Body();
+        for ( int m = 0; m < menus; m++ )
+        {
+            Menu menu = new Menu();
+            menu.setName( name + " menu " + m );
+            menu.setInherit( "top" );
+            for ( int i = 0; i < items; i++ )
+            {
+                MenuItem item = new MenuItem();
+                item.setName( "Item " + i );
+                item.setHref( "menu" + m + "/item" + i + ".html" );
+                menu.addItem( item );
+            }
+            body.addMenu( menu );
+        }
+        for ( int i = 0; i < items; i++ )
+        {
+            LinkItem link = new LinkItem();
+            link.setName( name + " link " + i );
+            link.setHref( "https://example.org/" + name + "/link" + i );
+            body.addLink( link );
+        }
+        LinkItem breadcrumb = new LinkItem();
+        breadcrumb.setName( name );
+        breadcrumb.setHref( "index.html" );
+        body.addBreadcrumb( breadcrumb );
+        decoration.setBody( body );
+
+        return decoration;
+    }
+
+    /**
+     * Write a sample document.
+     *
+     * @param siteDirectory the site directory
+     * @param format the Doxia format: <code>apt</code>, <code>xdoc</code>, <code>fml</code>, <code>markdown</code>
+     *            or <code>xhtml</code>
+     * @param name the document name, without extension
+     * @param sections the number of sections
+     * @return the source file
+     * @throws IOException if the document can't be written
+     */
+    static File writeDocument( File siteDirectory, String format, String name, int sections )
+        throws IOException
+    {
+        File file = new File( siteDirectory, format + '/' + name + '.' + SampleDocuments.getExtension( format ) );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, "UTF-8", SampleDocuments.create( format, name, sections ) );
+        return file;
+    }
+
+    /**
+     * Stop the container and delete the working directory.
+     */
+    void dispose()
+        throws IOException
+    {
+        container.dispose();
+        FileUtils.deleteDirectory( directory );
+    }
+
+    /**
+     * Writer counting written characters, without keeping them.
+     */
+    static class CountingWriter
+        extends Writer
+    {
+        private long count;
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            count += len;
+        }
+
+        @Override
+        public void write( String str, int off, int len )
+        {
+            count += len;
+        }
+
+        @Override
+        public void write( int c )
+        {
+            count++;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+    }
+}
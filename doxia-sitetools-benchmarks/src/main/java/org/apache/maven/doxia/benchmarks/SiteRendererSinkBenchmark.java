@@ -0,0 +1,138 @@
+package org.apache.maven.doxia.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.siterenderer.RenderingContext;
+import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sink event throughput of the {@link SiteRendererSink}, without any parser: sections, paragraphs, links, lists and
+ * tables, as emitted by parsers for a typical document.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SiteRendererSinkBenchmark
+{
+    private static final String TEXT = "Doxia is a content generation framework which provides powerful techniques "
+        + "for generating static and dynamic content, with <markup> & entities to escape.";
+
+    @Param( { "20", "200" } )
+    private int sections;
+
+    private final RenderingContext renderingContext =
+        new RenderingContext( new File( "src/site" ), "document.apt", "apt", "apt" );
+
+    @Benchmark
+    public int sinkEvents()
+    {
+        SiteRendererSink sink = new SiteRendererSink( renderingContext );
+
+        sink.head();
+        sink.title();
+        sink.text( "Benchmark" );
+        sink.title_();
+        sink.author();
+        sink.text( "Doxia" );
+        sink.author_();
+        sink.head_();
+
+        sink.body();
+        for ( int s = 0; s < sections; s++ )
+        {
+            section( sink, s );
+        }
+        sink.body_();
+
+        sink.flush();
+        sink.close();
+
+        return sink.getBody().length();
+    }
+
+    private static void section( Sink sink, int s )
+    {
+        sink.section1();
+        sink.sectionTitle1();
+        sink.text( "Section " + s );
+        sink.sectionTitle1_();
+
+        sink.paragraph();
+        sink.text( TEXT );
+        sink.paragraph_();
+
+        sink.list();
+        for ( int i = 0; i < 5; i++ )
+        {
+            sink.listItem();
+            sink.text( "item " + i + " with " );
+            sink.link( "./link" + i + ".html" );
+            sink.text( "a link" );
+            sink.link_();
+            sink.listItem_();
+        }
+        sink.list_();
+
+        sink.table();
+        sink.tableRows( null, false );
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text( "a" );
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text( "b" );
+        sink.tableHeaderCell_();
+        sink.tableRow_();
+        sink.tableRow();
+        sink.tableCell();
+        sink.text( "1" );
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text( "2" );
+        sink.tableCell_();
+        sink.tableRow_();
+        sink.tableRows_();
+        sink.table_();
+
+        sink.verbatim( null );
+        sink.text( "int i = " + s + ";" );
+        sink.verbatim_();
+
+        sink.section1_();
+    }
+}
@@ -0,0 +1,218 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Bounded character pipe between a writing thread and a reading thread: the writer blocks while the buffer is full,
+ * the reader blocks while the buffer is empty. Unlike <code>PipedWriter</code>/<code>PipedReader</code>, data is
+ * transferred in blocks and a reader that doesn't need more content can close its side: next writes are then
+ * discarded instead of blocking forever.
+ * <p>Shared by Doxia Sitetools renderers: not part of the API.</p>
+ *
+ * @since 1.8.2
+ */
+public class CharPipe
+{
+    private final char[] buffer;
+
+    private int readPosition;
+
+    private int count;
+
+    private boolean writerClosed;
+
+    private boolean readerClosed;
+
+    private final Reader reader = new Reader()
+    {
+        @Override
+        public int read( char[] cbuf, int off, int len )
+            throws IOException
+        {
+            return CharPipe.this.read( cbuf, off, len );
+        }
+
+        @Override
+        public void close()
+        {
+            closeReader();
+        }
+    };
+
+    private final Writer writer = new Writer()
+    {
+        @Override
+        public void write( char[] cbuf, int off, int len )
+            throws IOException
+        {
+            CharPipe.this.write( cbuf, off, len );
+        }
+
+        @Override
+        public void flush()
+        {
+            // nop: written content is immediately available to the reader
+        }
+
+        @Override
+        public void close()
+        {
+            closeWriter();
+        }
+    };
+
+    /**
+     * Create a pipe.
+     *
+     * @param capacity the buffer capacity, in characters
+     */
+    public CharPipe( int capacity )
+    {
+        this.buffer = new char[capacity];
+    }
+
+    /**
+     * Get the reading side of the pipe: it returns end of stream once the writer is closed and every written
+     * character was read.
+     *
+     * @return the reader
+     */
+    public Reader getReader()
+    {
+        return reader;
+    }
+
+    /**
+     * Get the writing side of the pipe.
+     *
+     * @return the writer
+     */
+    public Writer getWriter()
+    {
+        return writer;
+    }
+
+    private synchronized void write( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        if ( writerClosed )
+        {
+            throw new IOException( "Pipe closed" );
+        }
+
+        while ( len > 0 && !readerClosed )
+        {
+            while ( count == buffer.length && !readerClosed )
+            {
+                await();
+            }
+
+            if ( readerClosed )
+            {
+                break;
+            }
+
+            int writePosition = ( readPosition + count ) % buffer.length;
+            int n = Math.min( len, Math.min( buffer.length - count, buffer.length - writePosition ) );
+            System.arraycopy( cbuf, off, buffer, writePosition, n );
+            count += n;
+            off += n;
+            len -= n;
+
+            notifyAll();
+        }
+    }
+
+    private synchronized int read( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+
+        while ( count == 0 && !writerClosed && !readerClosed )
+        {
+            await();
+        }
+
+        if ( count == 0 )
+        {
+            return -1;
+        }
+
+        int n = Math.min( len, Math.min( count, buffer.length - readPosition ) );
+        System.arraycopy( buffer, readPosition, cbuf, off, n );
+        readPosition = ( readPosition + n ) % buffer.length;
+        count -= n;
+
+        notifyAll();
+
+        return n;
+    }
+
+    private void await()
+        throws InterruptedIOException
+    {
+        try
+        {
+            wait();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for pipe" );
+        }
+    }
+
+    /**
+     * Close the writing side: the reader will get end of stream once remaining content is read.
+     */
+    public synchronized void closeWriter()
+    {
+        writerClosed = true;
+        notifyAll();
+    }
+
+    /**
+     * Close the reading side: remaining and next written content is discarded.
+     */
+    public synchronized void closeReader()
+    {
+        readerClosed = true;
+        count = 0;
+        notifyAll();
+    }
+
+    /**
+     * Check if the reading side was closed, ie if written content is discarded.
+     *
+     * @return <code>true</code> if the reader was closed
+     */
+    public synchronized boolean isReaderClosed()
+    {
+        return readerClosed;
+    }
+}
@@ -0,0 +1,349 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java Flight Recorder event with a document path and a parser id. Event types are defined at runtime with
+ * <code>jdk.jfr.EventFactory</code> through reflection, since Doxia Sitetools targets JVMs without JFR: when JFR is
+ * not available, events do nothing. Whether an event type is enabled is checked again only when a recording starts or
+ * stops, so events cost almost nothing when not recording.
+ * <p>Events are recorded with <code>-XX:StartFlightRecording</code>, under the <code>Doxia</code> category.</p>
+ * <p>Shared by Doxia Sitetools components: not part of the API.</p>
+ *
+ * @since 1.8.2
+ */
+public final class FlightRecorderEvent
+{
+    private static final FlightRecorderEvent DISABLED = new FlightRecorderEvent( null );
+
+    private static final Jfr JFR = Jfr.load();
+
+    private final Object event;
+
+    private FlightRecorderEvent( Object event )
+    {
+        this.event = event;
+    }
+
+    /**
+     * Commit the event: its duration is the time elapsed since it began.
+     */
+    public void commit()
+    {
+        if ( event != null )
+        {
+            JFR.commit( event );
+        }
+    }
+
+    /**
+     * An event type.
+     */
+    public static final class Type
+    {
+        private final Object factory;
+
+        private final Object eventType;
+
+        /**
+         * Recording state generation the enabled check was done for, times 2, plus 1 if enabled: both values are
+         * updated at once.
+         */
+        private volatile long enabledState = -1;
+
+        /**
+         * Define an event type.
+         *
+         * @param name the event name, prefixed with <code>org.apache.maven.doxia.</code>
+         * @param label the event label
+         */
+        public Type( String name, String label )
+        {
+            this.factory = ( JFR == null ) ? null : JFR.createFactory( "org.apache.maven.doxia." + name, label );
+            this.eventType = ( factory == null ) ? null : JFR.getEventType( factory );
+        }
+
+        /**
+         * Begin an event.
+         *
+         * @param path the document path, or other resource processed
+         * @param parserId the parser id, or <code>null</code>
+         * @return the event, to commit at the end of the processing
+         */
+        public FlightRecorderEvent begin( String path, String parserId )
+        {
+            if ( eventType == null || !isEnabled() )
+            {
+                return DISABLED;
+            }
+
+            Object event = JFR.begin( factory, path, parserId );
+            return ( event == null ) ? DISABLED : new FlightRecorderEvent( event );
+        }
+
+        private boolean isEnabled()
+        {
+            if ( !JFR.isListening() )
+            {
+                return JFR.isEnabled( eventType );
+            }
+
+            long generation = JFR.getGeneration();
+            long state = enabledState;
+            if ( state >> 1 != generation )
+            {
+                // a concurrent check for an older generation is checked again on next event
+                boolean enabled = JFR.isEnabled( eventType );
+                state = ( generation << 1 ) | ( enabled ? 1 : 0 );
+                enabledState = state;
+            }
+            return ( state & 1 ) != 0;
+        }
+    }
+
+    /**
+     * Reflective access to the JFR API.
+     */
+    private static final class Jfr
+    {
+        private final Constructor<?> annotationElement;
+
+        private final Constructor<?> valueDescriptor;
+
+        private final Class<?> nameAnnotation;
+
+        private final Class<?> labelAnnotation;
+
+        private final Class<?> categoryAnnotation;
+
+        private final Method create;
+
+        private final Method newEvent;
+
+        private final Method getEventType;
+
+        private final Method isTypeEnabled;
+
+        private final Method isEnabled;
+
+        private final Method begin;
+
+        private final Method set;
+
+        private final Method commit;
+
+        /** Incremented each time a recording starts or stops, when listening. */
+        private final AtomicInteger generation = new AtomicInteger();
+
+        private volatile boolean listening;
+
+        private Jfr()
+            throws ReflectiveOperationException
+        {
+            Class<?> annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+            annotationElement = annotationElementClass.getConstructor( Class.class, Object.class );
+            valueDescriptor =
+                Class.forName( "jdk.jfr.ValueDescriptor" ).getConstructor( Class.class, String.class, List.class );
+            nameAnnotation = Class.forName( "jdk.jfr.Name" );
+            labelAnnotation = Class.forName( "jdk.jfr.Label" );
+            categoryAnnotation = Class.forName( "jdk.jfr.Category" );
+
+            Class<?> eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+            create = eventFactoryClass.getMethod( "create", List.class, List.class );
+            newEvent = eventFactoryClass.getMethod( "newEvent" );
+            getEventType = eventFactoryClass.getMethod( "getEventType" );
+            isTypeEnabled = Class.forName( "jdk.jfr.EventType" ).getMethod( "isEnabled" );
+
+            Class<?> eventClass = Class.forName( "jdk.jfr.Event" );
+            isEnabled = eventClass.getMethod( "isEnabled" );
+            begin = eventClass.getMethod( "begin" );
+            set = eventClass.getMethod( "set", int.class, Object.class );
+            commit = eventClass.getMethod( "commit" );
+        }
+
+        static Jfr load()
+        {
+            try
+            {
+                Jfr jfr = new Jfr();
+                jfr.listen();
+                return jfr;
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                // JFR not available
+                return null;
+            }
+            catch ( LinkageError e )
+            {
+                return null;
+            }
+        }
+
+        private void listen()
+        {
+            try
+            {
+                Class<?> listenerClass = Class.forName( "jdk.jfr.FlightRecorderListener" );
+                Object listener = Proxy.newProxyInstance( listenerClass.getClassLoader(), new Class<?>[] {
+                    listenerClass }, new InvocationHandler()
+                {
+                    public Object invoke( Object proxy, Method method, Object[] args )
+                    {
+                        if ( method.getDeclaringClass() == Object.class )
+                        {
+                            if ( "equals".equals( method.getName() ) )
+                            {
+                                return proxy == args[0];
+                            }
+                            return "hashCode".equals( method.getName() ) ? System.identityHashCode( proxy )
+                                            : "Doxia JFR listener";
+                        }
+
+                        // recorder initialized or recording state changed: enabled event types may have changed
+                        generation.incrementAndGet();
+                        return null;
+                    }
+                } );
+
+                Class.forName( "jdk.jfr.FlightRecorder" ).getMethod( "addListener", listenerClass ).invoke( null,
+                                                                                                           listener );
+                listening = true;
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                // check event types on each event
+            }
+            catch ( RuntimeException e )
+            {
+                // check event types on each event
+            }
+        }
+
+        boolean isListening()
+        {
+            return listening;
+        }
+
+        long getGeneration()
+        {
+            return generation.get();
+        }
+
+        Object getEventType( Object factory )
+        {
+            try
+            {
+                return getEventType.invoke( factory );
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                return null;
+            }
+        }
+
+        boolean isEnabled( Object eventType )
+        {
+            try
+            {
+                return (Boolean) isTypeEnabled.invoke( eventType );
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                return false;
+            }
+        }
+
+        Object createFactory( String name, String label )
+        {
+            try
+            {
+                List<Object> annotations = new ArrayList<Object>();
+                annotations.add( annotationElement.newInstance( nameAnnotation, name ) );
+                annotations.add( annotationElement.newInstance( labelAnnotation, label ) );
+                annotations.add( annotationElement.newInstance( categoryAnnotation, new String[] { "Doxia" } ) );
+
+                List<Object> fields = Arrays.asList( field( "path", "Path" ), field( "parserId", "Parser Id" ) );
+
+                return create.invoke( null, annotations, fields );
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                return null;
+            }
+            catch ( RuntimeException e )
+            {
+                return null;
+            }
+        }
+
+        private Object field( String name, String label )
+            throws ReflectiveOperationException
+        {
+            return valueDescriptor.newInstance( String.class, name,
+                                                Collections.singletonList( annotationElement.newInstance(
+                                                    labelAnnotation, label ) ) );
+        }
+
+        Object begin( Object factory, String path, String parserId )
+        {
+            try
+            {
+                Object event = newEvent.invoke( factory );
+                if ( !( (Boolean) isEnabled.invoke( event ) ) )
+                {
+                    // not recording
+                    return null;
+                }
+
+                set.invoke( event, 0, path );
+                set.invoke( event, 1, parserId );
+                begin.invoke( event );
+                return event;
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                return null;
+            }
+        }
+
+        void commit( Object event )
+        {
+            try
+            {
+                commit.invoke( event );
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                // ignore: events are informational
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.logging.Log;
+import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
+
+/**
+ * Pool of configured Doxia parser instances, safe for concurrent rendering: each parser is leased to one thread at a
+ * time. Released parsers are kept for reuse, to avoid a component lookup and configuration for every document.
+ * <p>Whether lookups return new parser instances or a shared one depends on the Plexus instantiation strategy of the
+ * parser: a shared instance already leased by another thread is waited for, which serializes parsing with this
+ * parser without corrupting its state.</p>
+ * <p>Shared by Doxia Sitetools renderers: not part of the API.</p>
+ *
+ * @since 1.8.2
+ */
+public class ParserPool
+{
+    private final Doxia doxia;
+
+    private final boolean emitComments;
+
+    private final Log log;
+
+    private final Map<String, Deque<Parser>> idleParsers = new HashMap<String, Deque<Parser>>();
+
+    private final Set<Parser> leasedParsers = Collections.newSetFromMap( new IdentityHashMap<Parser, Boolean>() );
+
+    /**
+     * @param doxia the Doxia component, to look up parsers
+     * @param emitComments whether parsers emit comments from source markup
+     * @param log the log parsers are enabled with
+     */
+    public ParserPool( Doxia doxia, boolean emitComments, Log log )
+    {
+        this.doxia = doxia;
+        this.emitComments = emitComments;
+        this.log = log;
+    }
+
+    /**
+     * Lease a configured parser, to {@link #release(String, Parser) release} once the document is parsed.
+     *
+     * @param parserId the parser id
+     * @return a parser used by no other thread until released
+     * @throws ParserNotFoundException if no parser exists for this id
+     * @throws InterruptedException if interrupted while waiting for a shared parser instance
+     */
+    public Parser acquire( String parserId )
+        throws ParserNotFoundException, InterruptedException
+    {
+        synchronized ( this )
+        {
+            Deque<Parser> idle = idleParsers.get( parserId );
+            while ( idle != null && !idle.isEmpty() )
+            {
+                Parser parser = idle.pop();
+                if ( leasedParsers.add( parser ) )
+                {
+                    return parser;
+                }
+                // shared instance leased again after a lookup: it will be back on release
+            }
+        }
+
+        Parser parser = doxia.getParser( parserId );
+
+        synchronized ( this )
+        {
+            while ( !leasedParsers.add( parser ) )
+            {
+                // shared instance, leased by another thread
+                wait();
+            }
+        }
+
+        parser.setEmitComments( emitComments );
+        parser.enableLogging( log );
+
+        return parser;
+    }
+
+    /**
+     * Release a parser leased with {@link #acquire(String)}.
+     *
+     * @param parserId the parser id
+     * @param parser the parser
+     */
+    public synchronized void release( String parserId, Parser parser )
+    {
+        leasedParsers.remove( parser );
+
+        Deque<Parser> idle = idleParsers.get( parserId );
+        if ( idle == null )
+        {
+            idle = new ArrayDeque<Parser>();
+            idleParsers.put( parserId, idle );
+        }
+        if ( !containsInstance( idle, parser ) )
+        {
+            idle.push( parser );
+        }
+
+        notifyAll();
+    }
+
+    private static boolean containsInstance( Deque<Parser> parsers, Parser parser )
+    {
+        for ( Parser p : parsers )
+        {
+            if ( p == parser )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
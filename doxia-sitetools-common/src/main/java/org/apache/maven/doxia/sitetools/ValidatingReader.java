@@ -0,0 +1,468 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.doxia.logging.Log;
+import org.apache.maven.doxia.parser.ParseException;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * <p>Reader validating XML content while it is consumed: every character read is copied through a bounded
+ * {@link CharPipe} to a Xerces validating SAX parser running in a background thread. The document is not copied in
+ * memory and grammars are cached in a pool shared by every validation, whatever the document or the thread.
+ * External DTDs, entities and schemas are resolved by the given resolver.</p>
+ * <p>Validations run in a pool of at most one thread per processor: a validation waiting for a thread blocks the
+ * reader once the pipe is full, until a running validation ends. Readers must then be created once every other
+ * resource needed to read the document is held, for example once the parser is acquired.</p>
+ * <p>Validation rules are the ones of Doxia <code>XmlValidator</code>. Once the document has been parsed, the
+ * validation result is reported by {@link #finish()}.</p>
+ * <p>Shared by Doxia Sitetools renderers: not part of the API.</p>
+ *
+ * @since 1.8.2
+ */
+public class ValidatingReader
+    extends FilterReader
+{
+    private static final int PIPE_CAPACITY = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int HEAD_BUFFER_SIZE = 1024;
+
+    private static final long VALIDATOR_KEEP_ALIVE_SECONDS = 60;
+
+    private static final String GRAMMAR_POOL_PROPERTY = "http://apache.org/xml/properties/internal/grammar-pool";
+
+    private static final String GRAMMAR_POOL_CLASS = "org.apache.xerces.util.XMLGrammarPoolImpl";
+
+    private static final String XERCES_PARSER_CLASS = "org.apache.xerces.parsers.SAXParser";
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    /** Grammars are thread-safe once loaded: one pool is shared by every document. */
+    private static final Object GRAMMAR_POOL = createGrammarPool();
+
+    private static final ExecutorService VALIDATORS = createValidators();
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Pattern PATTERN_DOCTYPE = Pattern.compile( "<!DOCTYPE([^>]*)>" );
+
+    /** Root element start tag, ie the first tag beginning with a letter. */
+    private static final Pattern PATTERN_TAG = Pattern.compile( "<([A-Za-z][A-Za-z_0-9]*)([^>]*)>" );
+
+    /** @see org/apache/xerces/impl/msg/XMLMessages.properties#MSG_ELEMENT_NOT_DECLARED */
+    private static final Pattern ELEMENT_TYPE_PATTERN =
+        Pattern.compile( "Element type \".*\" must be declared.", Pattern.DOTALL );
+
+    private final CharPipe pipe = new CharPipe( PIPE_CAPACITY );
+
+    private final EntityResolver entityResolver;
+
+    private final Log log;
+
+    private final Future<?> validation;
+
+    /** Written by the validator thread, read once the validation is done. */
+    private Exception validationError;
+
+    /** Written by the validator thread, read once the validation is done. */
+    private long validationCpuTime;
+
+    private boolean closed;
+
+    /**
+     * Start validating a document.
+     *
+     * @param source the document content
+     * @param resource the document name, for logging
+     * @param entityResolver the resolver of external entities
+     * @param log the logger
+     */
+    public ValidatingReader( Reader source, final String resource, EntityResolver entityResolver, Log log )
+    {
+        super( source );
+        this.entityResolver = entityResolver;
+        this.log = log;
+
+        validation = VALIDATORS.submit( new Runnable()
+        {
+            public void run()
+            {
+                validate( resource );
+            }
+        } );
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        int c = in.read();
+        if ( c >= 0 )
+        {
+            pipe.getWriter().write( c );
+        }
+        return c;
+    }
+
+    @Override
+    public int read( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        int n = in.read( cbuf, off, len );
+        if ( n > 0 )
+        {
+            pipe.getWriter().write( cbuf, off, n );
+        }
+        return n;
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        // skipped content must be validated too
+        char[] buffer = new char[(int) Math.min( n, BUFFER_SIZE )];
+        long skipped = 0;
+        while ( skipped < n )
+        {
+            int count = read( buffer, 0, (int) Math.min( n - skipped, buffer.length ) );
+            if ( count < 0 )
+            {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark( int readAheadLimit )
+        throws IOException
+    {
+        throw new IOException( "mark() not supported" );
+    }
+
+    @Override
+    public void reset()
+        throws IOException
+    {
+        throw new IOException( "reset() not supported" );
+    }
+
+    /**
+     * Close the source: content not read yet is sent to the validator before.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+
+        try
+        {
+            drain();
+        }
+        finally
+        {
+            pipe.closeWriter();
+            in.close();
+        }
+    }
+
+    /**
+     * Wait for the end of the validation, sending remaining content to the validator first if the reader was not
+     * closed. The source is not closed.
+     *
+     * @throws ParseException if the document is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public void finish()
+        throws ParseException, IOException
+    {
+        if ( !closed )
+        {
+            try
+            {
+                drain();
+            }
+            finally
+            {
+                pipe.closeWriter();
+            }
+        }
+
+        try
+        {
+            validation.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for XML validation" );
+        }
+        catch ( ExecutionException e )
+        {
+            // validate() catches everything but errors
+            throw (Error) e.getCause();
+        }
+
+        if ( validationError != null )
+        {
+            throw new ParseException( "Error validating the model: " + validationError.getMessage(),
+                                      validationError );
+        }
+    }
+
+    private void drain()
+        throws IOException
+    {
+        char[] buffer = new char[BUFFER_SIZE];
+        while ( !pipe.isReaderClosed() && read( buffer, 0, buffer.length ) >= 0 )
+        {
+            // content is copied to the validator by read()
+        }
+    }
+
+    private void validate( String resource )
+    {
+        long startCpuTime = getCurrentThreadCpuTime();
+        Reader reader = pipe.getReader();
+        try
+        {
+            // read the document head, to detect the doctype and the root element attributes
+            StringBuilder head = new StringBuilder();
+            char[] buffer = new char[HEAD_BUFFER_SIZE];
+            Matcher tag = PATTERN_TAG.matcher( head );
+            while ( !tag.reset().find() )
+            {
+                int n = reader.read( buffer );
+                if ( n < 0 )
+                {
+                    break;
+                }
+                head.append( buffer, 0, n );
+            }
+
+            boolean hasDoctype = PATTERN_DOCTYPE.matcher( head ).find();
+            boolean hasXsd = tag.reset().find() && tag.group( 2 ).contains( XML_NAMESPACE );
+
+            PushbackReader content = new PushbackReader( reader, Math.max( 1, head.length() ) );
+            content.unread( head.toString().toCharArray() );
+
+            log.debug( "Validating the content of " + resource + "..." );
+
+            getXmlReader( hasDoctype && hasXsd ).parse( new InputSource( content ) );
+        }
+        catch ( IOException e )
+        {
+            validationError = e;
+        }
+        catch ( SAXException e )
+        {
+            validationError = e;
+        }
+        catch ( RuntimeException e )
+        {
+            validationError = e;
+        }
+        finally
+        {
+            // validator threads are reused: only count the CPU time of this validation
+            validationCpuTime = getCurrentThreadCpuTime() - startCpuTime;
+
+            // don't block the document parser if validation ended before the end of the content
+            pipe.closeReader();
+        }
+    }
+
+    /**
+     * Get the CPU time used by the validation, once finished.
+     *
+     * @return the validator thread CPU time, in nanoseconds, or <code>0</code> if not supported by the JVM
+     */
+    public long getValidationCpuTime()
+    {
+        return validationCpuTime;
+    }
+
+    private XMLReader getXmlReader( boolean hasDtdAndXsd )
+        throws SAXException
+    {
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader( XERCES_PARSER_CLASS );
+        xmlReader.setFeature( "http://xml.org/sax/features/validation", true );
+        xmlReader.setFeature( "http://apache.org/xml/features/validation/schema", true );
+        if ( GRAMMAR_POOL != null )
+        {
+            xmlReader.setProperty( GRAMMAR_POOL_PROPERTY, GRAMMAR_POOL );
+        }
+        xmlReader.setErrorHandler( new MessagesErrorHandler( log, hasDtdAndXsd ) );
+        xmlReader.setEntityResolver( entityResolver );
+
+        return xmlReader;
+    }
+
+    private static long getCurrentThreadCpuTime()
+    {
+        try
+        {
+            return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            return 0;
+        }
+    }
+
+    private static ExecutorService createValidators()
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( threads, threads, VALIDATOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), new ValidatorThreadFactory() );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    private static Object createGrammarPool()
+    {
+        try
+        {
+            // Xerces internal API, used through reflection: the pool is optional
+            return Class.forName( GRAMMAR_POOL_CLASS ).newInstance();
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+        catch ( LinkageError e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Daemon validator threads: an unfinished validation doesn't prevent the JVM from exiting.
+     */
+    private static class ValidatorThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "doxia-xml-validator-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+    /**
+     * Same reporting as Doxia <code>XmlValidator</code>: warnings are logged, errors stop the validation.
+     */
+    private static class MessagesErrorHandler
+        implements ErrorHandler
+    {
+        private final Log log;
+
+        private final boolean hasDtdAndXsd;
+
+        MessagesErrorHandler( Log log, boolean hasDtdAndXsd )
+        {
+            this.log = log;
+            this.hasDtdAndXsd = hasDtdAndXsd;
+        }
+
+        public void warning( SAXParseException e )
+        {
+            log.warn( getMessage( "Warning:", e ) );
+        }
+
+        public void error( SAXParseException e )
+            throws SAXException
+        {
+            // Workaround for Xerces complaints when an XML with XSD needs also a <!DOCTYPE []> to specify entities
+            // like &nbsp;
+            if ( hasDtdAndXsd && ELEMENT_TYPE_PATTERN.matcher( e.getMessage() ).find() )
+            {
+                return;
+            }
+
+            throw new SAXException( getMessage( "Error:", e ), e );
+        }
+
+        public void fatalError( SAXParseException e )
+            throws SAXException
+        {
+            throw new SAXException( getMessage( "Fatal error:", e ), e );
+        }
+
+        private static String getMessage( String type, SAXParseException e )
+        {
+            StringBuilder message = new StringBuilder( type ).append( EOL );
+            message.append( "  Public ID: " ).append( e.getPublicId() ).append( EOL );
+            message.append( "  System ID: " ).append( e.getSystemId() ).append( EOL );
+            message.append( "  Line number: " ).append( e.getLineNumber() ).append( EOL );
+            message.append( "  Column number: " ).append( e.getColumnNumber() ).append( EOL );
+            message.append( "  Message: " ).append( e.getMessage() ).append( EOL );
+
+            return message.toString();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link FlightRecorderEvent}: events work whether JFR is available or not, and whether recording or not.
+ */
+public class FlightRecorderEventTest
+    extends TestCase
+{
+    public void testEvent()
+        throws Exception
+    {
+        FlightRecorderEvent.Type type = new FlightRecorderEvent.Type( "Test", "Test" );
+
+        FlightRecorderEvent event = type.begin( "apt/index.apt", "apt" );
+        assertNotNull( event );
+        event.commit();
+
+        // not recording: nothing is allocated
+        assertSame( event, type.begin( null, null ) );
+
+        FlightRecording recording = FlightRecording.start( "Test" );
+        if ( recording == null )
+        {
+            // JFR not available
+            return;
+        }
+
+        List<String[]> events;
+        try
+        {
+            type.begin( "apt/index.apt", "apt" ).commit();
+            type.begin( null, null ).commit();
+        }
+        finally
+        {
+            events = recording.stop();
+        }
+
+        assertEquals( 2, events.size() );
+        assertEquals( "Test", events.get( 0 )[0] );
+        assertEquals( "apt/index.apt", events.get( 0 )[1] );
+        assertEquals( "apt", events.get( 0 )[2] );
+        assertNull( events.get( 1 )[1] );
+        assertNull( events.get( 1 )[2] );
+
+        // recording stopped: disabled again
+        assertSame( type.begin( "apt/index.apt", "apt" ), type.begin( null, null ) );
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder recording of Doxia events, through reflection since tests also run on JVMs without JFR.
+ */
+public class FlightRecording
+{
+    private final Object recording;
+
+    private final List<String> names;
+
+    private FlightRecording( Object recording, String... names )
+    {
+        this.recording = recording;
+        this.names = Arrays.asList( names );
+    }
+
+    /**
+     * Start recording Doxia events.
+     *
+     * @param names the event names, without the <code>org.apache.maven.doxia.</code> prefix
+     * @return the recording, or <code>null</code> if JFR is not available
+     * @throws Exception if JFR is available but the recording can't be started
+     */
+    public static FlightRecording start( String... names )
+        throws Exception
+    {
+        Class<?> recordingClass;
+        try
+        {
+            recordingClass = Class.forName( "jdk.jfr.Recording" );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return null;
+        }
+
+        Object recording = recordingClass.newInstance();
+        for ( String name : names )
+        {
+            recordingClass.getMethod( "enable", String.class ).invoke( recording, "org.apache.maven.doxia." + name );
+        }
+        recordingClass.getMethod( "start" ).invoke( recording );
+        return new FlightRecording( recording, names );
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return the recorded events of the started names: name (without prefix), path and parser id
+     * @throws Exception if the recording can't be read
+     */
+    public List<String[]> stop()
+        throws Exception
+    {
+        Class<?> recordingClass = recording.getClass();
+        recordingClass.getMethod( "stop" ).invoke( recording );
+
+        File file = File.createTempFile( "doxia", ".jfr" );
+        try
+        {
+            recordingClass.getMethod( "dump", Path.class ).invoke( recording, file.toPath() );
+            recordingClass.getMethod( "close" ).invoke( recording );
+
+            Method readAllEvents = Class.forName( "jdk.jfr.consumer.RecordingFile" ).getMethod( "readAllEvents", Path.class );
+            Method getEventType = Class.forName( "jdk.jfr.consumer.RecordedEvent" ).getMethod( "getEventType" );
+            Method getName = Class.forName( "jdk.jfr.EventType" ).getMethod( "getName" );
+            Method getString =
+                Class.forName( "jdk.jfr.consumer.RecordedObject" ).getMethod( "getString", String.class );
+
+            List<String[]> events = new ArrayList<String[]>();
+            for ( Object event : (List<?>) readAllEvents.invoke( null, file.toPath() ) )
+            {
+                // event types enabled by default are recorded too
+                String name = (String) getName.invoke( getEventType.invoke( event ) );
+                name = name.substring( name.lastIndexOf( '.' ) + 1 );
+                if ( names.contains( name ) )
+                {
+                    events.add( new String[] { name, (String) getString.invoke( event, "path" ),
+                        (String) getString.invoke( event, "parserId" ) } );
+                }
+            }
+            return events;
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
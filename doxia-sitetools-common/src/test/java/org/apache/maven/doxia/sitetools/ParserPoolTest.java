@@ -0,0 +1,92 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.apache.maven.doxia.parser.Parser;
+import org.codehaus.plexus.PlexusTestCase;
+
+/**
+ * Tests the {@link ParserPool}.
+ */
+public class ParserPoolTest
+    extends PlexusTestCase
+{
+    private ParserPool pool;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        pool = new ParserPool( (Doxia) lookup( Doxia.ROLE ), false, new SystemStreamLog() );
+    }
+
+    public void testReuse()
+        throws Exception
+    {
+        Parser parser = pool.acquire( "apt" );
+        assertNotNull( parser );
+        pool.release( "apt", parser );
+
+        assertSame( parser, pool.acquire( "apt" ) );
+    }
+
+    public void testConcurrentLeases()
+        throws Exception
+    {
+        final Parser first = pool.acquire( "apt" );
+
+        final Parser[] second = new Parser[1];
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    second[0] = pool.acquire( "apt" );
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        thread.start();
+        thread.join( 1000 );
+
+        if ( thread.isAlive() )
+        {
+            // shared parser instance: leased once released
+            pool.release( "apt", first );
+            thread.join();
+            assertSame( first, second[0] );
+        }
+        else
+        {
+            assertNotNull( second[0] );
+            assertNotSame( first, second[0] );
+        }
+    }
+}
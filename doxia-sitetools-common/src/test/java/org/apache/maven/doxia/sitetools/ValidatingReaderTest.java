@@ -0,0 +1,145 @@
+package org.apache.maven.doxia.sitetools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.apache.maven.doxia.parser.AbstractXmlParser.CachedFileEntityResolver;
+import org.apache.maven.doxia.parser.ParseException;
+import org.codehaus.plexus.util.IOUtil;
+import org.xml.sax.EntityResolver;
+
+/**
+ * Tests the {@link ValidatingReader}.
+ */
+public class ValidatingReaderTest
+    extends TestCase
+{
+    private static final String DOCTYPE = "<?xml version=\"1.0\"?>\n"
+        + "<!DOCTYPE root [<!ELEMENT root (item*)><!ELEMENT item (#PCDATA)>]>\n";
+
+    private EntityResolver entityResolver;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        entityResolver = new CachedFileEntityResolver();
+    }
+
+    private static String createDocument( int items, String extraElement )
+    {
+        StringBuilder document = new StringBuilder( DOCTYPE ).append( "<root>\n" );
+        for ( int i = 0; i < items; i++ )
+        {
+            document.append( "<item>item " ).append( i ).append( "</item>\n" );
+            if ( i == items / 2 && extraElement != null )
+            {
+                document.append( extraElement );
+            }
+        }
+        return document.append( "</root>\n" ).toString();
+    }
+
+    private String readAndValidate( String document )
+        throws IOException, ParseException
+    {
+        ValidatingReader reader =
+            new ValidatingReader( new StringReader( document ), "test", entityResolver, new SystemStreamLog() );
+        try
+        {
+            String content = IOUtil.toString( reader );
+            reader.finish();
+            return content;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    public void testValidDocument()
+        throws Exception
+    {
+        // bigger than the pipe buffer
+        String document = createDocument( 10000, null );
+
+        assertEquals( document, readAndValidate( document ) );
+    }
+
+    public void testInvalidDocument()
+        throws Exception
+    {
+        try
+        {
+            readAndValidate( createDocument( 10000, "<other/>" ) );
+            fail( "invalid document should fail validation" );
+        }
+        catch ( ParseException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Error validating the model: Error:" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "\"other\"" ) );
+        }
+    }
+
+    public void testNotWellFormedDocument()
+        throws Exception
+    {
+        try
+        {
+            readAndValidate( DOCTYPE + "<root><item>text</root>" );
+            fail( "not well-formed document should fail validation" );
+        }
+        catch ( ParseException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Error validating the model: Fatal error:" ) );
+        }
+    }
+
+    public void testPartiallyReadDocument()
+        throws Exception
+    {
+        ValidatingReader reader =
+            new ValidatingReader( new StringReader( createDocument( 10000, "<other/>" ) ), "test", entityResolver,
+                                  new SystemStreamLog() );
+        try
+        {
+            assertTrue( reader.read( new char[100] ) > 0 );
+
+            // content not read by the parser is validated too
+            reader.finish();
+            fail( "invalid document should fail validation" );
+        }
+        catch ( ParseException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "\"other\"" ) );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}